@@ -0,0 +1,74 @@
+package org.project.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.project.cache.core.OrmCacheManager;
+import org.project.cache.util.TypedCacheKey;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de construir y hashear claves de cache, y de un hit de entidad por el camino con
+ * clave completa contra el camino por id primitivo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+    private static final int ENTITIES = 10_000;
+
+    public static class Order {
+        long id;
+    }
+
+    private OrmCacheManager cacheManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cacheManager = new OrmCacheManager();
+        for (long id = 0; id < ENTITIES; id++) {
+            Order order = new Order();
+            order.id = id;
+            cacheManager.putEntity(Order.class, id, order);
+        }
+    }
+
+    @Benchmark
+    public TypedCacheKey<Order> createEntityKey() {
+        return TypedCacheKey.createEntityKey(Order.class, ThreadLocalRandom.current().nextLong(ENTITIES));
+    }
+
+    @Benchmark
+    public int createAndHashEntityKey() {
+        return TypedCacheKey.createEntityKey(Order.class, ThreadLocalRandom.current().nextLong(ENTITIES)).hashCode();
+    }
+
+    @Benchmark
+    public int createAndHashQueryKey() {
+        return TypedCacheKey.createQueryKey("SELECT * FROM order WHERE customer = ?", Order.class).hashCode();
+    }
+
+    @Benchmark
+    public Object entityHitByObjectId() {
+        return cacheManager.getEntity(Order.class, ThreadLocalRandom.current().nextLong(ENTITIES)).orElse(null);
+    }
+
+    @Benchmark
+    public Order entityHitByLongId() {
+        return cacheManager.getEntityIfPresent(Order.class, ThreadLocalRandom.current().nextLong(ENTITIES));
+    }
+}
@@ -0,0 +1,131 @@
+package org.project.benchmarks;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.project.entityManager.configuration.EntityManagerConfig;
+import org.project.entityManager.entity.EntityManager;
+import org.project.orm.SmartORM;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Camino CRUD completo contra H2 en memoria: find con hit y con miss de cache, persist y
+ * merge. Mide lo que agrega el ORM (cache, mapeo, statements cacheados) sobre JDBC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityManagerBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    public static class Item {
+        Long id;
+        String name;
+        int quantity;
+        double price;
+
+        public Item() {
+        }
+    }
+
+    private final AtomicLong nextId = new AtomicLong(ROWS);
+    private Connection keepAlive;
+    private SmartORM orm;
+    private EntityManager entityManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+
+        //La base en memoria vive mientras haya una conexion abierta
+        keepAlive = dataSource.getConnection();
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE item (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(64), quantity INT, price DOUBLE)");
+            statement.execute("INSERT INTO item (id, name, quantity, price) SELECT X, 'item-' || X, X % 100, X * 1.5 FROM SYSTEM_RANGE(0, " + (ROWS - 1) + ")");
+            statement.execute("ALTER TABLE item ALTER COLUMN id RESTART WITH " + ROWS);
+        }
+
+        orm = new SmartORM(new EntityManagerConfig() {
+            @Override
+            public DataSource getDataSource() {
+                return dataSource;
+            }
+
+            @Override
+            public Duration getDefaultCacheTtl() {
+                return null;
+            }
+        });
+        entityManager = orm.createEntityManager();
+        //Calienta el cache de entidades para los hits
+        for (long id = 0; id < ROWS / 2; id++) entityManager.find(Item.class, id);
+        entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        entityManager.close();
+        orm.close();
+        keepAlive.close();
+    }
+
+    @Benchmark
+    public Item findCacheHit() {
+        Item item = entityManager.find(Item.class, ThreadLocalRandom.current().nextLong(ROWS / 2));
+        entityManager.clear();
+        return item;
+    }
+
+    @Benchmark
+    public Item findCacheMiss() {
+        //Ids de la mitad no cacheada; se invalida para que el proximo acceso vuelva a consultar
+        long id = ROWS / 2 + ThreadLocalRandom.current().nextLong(ROWS / 2);
+        Item item = entityManager.find(Item.class, id);
+        entityManager.clear();
+        orm.getCacheManager().invalidateEntity(Item.class, id);
+        return item;
+    }
+
+    @Benchmark
+    public Item persist() {
+        Item item = new Item();
+        item.name = "new-" + nextId.incrementAndGet();
+        item.quantity = 1;
+        item.price = 9.99;
+        entityManager.persist(item);
+        entityManager.clear();
+        return item;
+    }
+
+    @Benchmark
+    public Item merge() {
+        Item item = entityManager.find(Item.class, ThreadLocalRandom.current().nextLong(ROWS / 2));
+        item.quantity++;
+        Item merged = entityManager.merge(item);
+        entityManager.clear();
+        return merged;
+    }
+}
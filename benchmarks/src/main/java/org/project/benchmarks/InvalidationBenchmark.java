@@ -0,0 +1,76 @@
+package org.project.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.project.cache.core.OrmCacheManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invalidacion por tipo de entidad y por tabla sobre caches grandes. El cache se vuelve a
+ * llenar antes de cada invocacion (fuera de la medicion); la invalidacion de una clase no debe depender de
+ * cuantas entradas tienen las demas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class InvalidationBenchmark {
+
+    public static class Customer {
+    }
+
+    public static class Invoice {
+    }
+
+    @Param({"10000", "100000"})
+    public int entitiesPerClass;
+
+    private OrmCacheManager cacheManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cacheManager = new OrmCacheManager();
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        Customer customer = new Customer();
+        Invoice invoice = new Invoice();
+        for (long id = 0; id < entitiesPerClass; id++) {
+            cacheManager.putEntity(Customer.class, id, customer);
+            cacheManager.putEntity(Invoice.class, id, invoice);
+        }
+        for (int i = 0; i < 1_000; i++) {
+            cacheManager.putQueryResult("SELECT * FROM invoice WHERE n = " + i, Invoice.class, List.of(invoice));
+        }
+    }
+
+    @Benchmark
+    public void invalidateEntityType() {
+        cacheManager.invalidateEntityType(Customer.class);
+    }
+
+    @Benchmark
+    public void invalidateQueriesForTable() {
+        cacheManager.invalidateQueriesForTable("invoice");
+    }
+
+    @Benchmark
+    public void invalidateSingleEntity() {
+        cacheManager.invalidateEntity(Customer.class, entitiesPerClass / 2L);
+    }
+}
@@ -0,0 +1,106 @@
+package org.project.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.project.cache.util.SmartCache;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecturas de {@link SmartCache}: hits en L1, un conjunto de trabajo mas grande que L1
+ * (hits en L2 con promociones y desalojos), misses, y get con loader. Cada camino se
+ * mide con uno y con todos los hilos disponibles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmartCacheBenchmark {
+
+    @Param({"10000"})
+    public int firstLevelSize;
+
+    private SmartCache<Long, String> firstLevel;
+    private SmartCache<Long, String> twoLevels;
+    private String[] values;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = new String[firstLevelSize * 8];
+        for (int i = 0; i < values.length; i++) values[i] = "value-" + i;
+
+        firstLevel = new SmartCache<>(firstLevelSize, Duration.ofHours(1));
+        for (long i = 0; i < firstLevelSize / 2; i++) firstLevel.put(i, values[(int) i]);
+
+        //Ocho veces L1: la mayoria de las lecturas caen en L2
+        twoLevels = new SmartCache<>(firstLevelSize, Duration.ofHours(1));
+        for (long i = 0; i < values.length; i++) twoLevels.put(i, values[(int) i]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        firstLevel.invalidateAll();
+        twoLevels.invalidateAll();
+    }
+
+    @Benchmark
+    public String firstLevelHit() {
+        return firstLevel.getIfPresent(ThreadLocalRandom.current().nextLong(firstLevelSize / 2));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String firstLevelHitContended() {
+        return this.firstLevelHit();
+    }
+
+    @Benchmark
+    public String workingSetLargerThanFirstLevel() {
+        return twoLevels.getIfPresent(ThreadLocalRandom.current().nextLong(values.length));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String workingSetLargerThanFirstLevelContended() {
+        return this.workingSetLargerThanFirstLevel();
+    }
+
+    @Benchmark
+    public String miss() {
+        return firstLevel.getIfPresent(firstLevelSize + ThreadLocalRandom.current().nextLong(firstLevelSize));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String missContended() {
+        return this.miss();
+    }
+
+    @Benchmark
+    public String getWithLoader() {
+        long key = ThreadLocalRandom.current().nextLong(firstLevelSize);
+        return firstLevel.get(key, k -> values[k.intValue()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String getWithLoaderContended() {
+        return this.getWithLoader();
+    }
+}
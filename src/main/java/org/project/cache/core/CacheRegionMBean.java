@@ -0,0 +1,131 @@
+package org.project.cache.core;
+
+import org.project.cache.interfaces.CacheRegionMXBean;
+import org.project.cache.model.RemovalCause;
+import org.project.cache.util.CacheMetrics;
+import org.project.cache.util.OffHeapStore;
+import org.project.cache.util.SmartCache;
+
+/**
+ * Adaptador JMX de una region. Cada lectura de atributo toma un snapshot de los contadores.
+ */
+class CacheRegionMBean implements CacheRegionMXBean {
+
+    private final SmartCache<?, ?> cache;
+
+    CacheRegionMBean(SmartCache<?, ?> cache) {
+        this.cache = cache;
+    }
+
+    private CacheMetrics.Snapshot metrics() {
+        return cache.getMetrics();
+    }
+
+    @Override
+    public long getFirstLevelHitCount() {
+        return metrics().firstLevelHits();
+    }
+
+    @Override
+    public long getSecondLevelHitCount() {
+        return metrics().secondLevelHits();
+    }
+
+    @Override
+    public long getOffHeapHitCount() {
+        return metrics().offHeapHits();
+    }
+
+    @Override
+    public long getMissCount() {
+        return metrics().misses();
+    }
+
+    @Override
+    public double getHitRatio() {
+        return metrics().hitRatio();
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+        return metrics().loadSuccesses();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return metrics().loadFailures();
+    }
+
+    @Override
+    public double getAverageLoadPenaltyNanos() {
+        return metrics().averageLoadPenaltyNanos();
+    }
+
+    @Override
+    public long getLoadLatencyP50Nanos() {
+        return metrics().loadLatency().percentileNanos(0.5);
+    }
+
+    @Override
+    public long getLoadLatencyP99Nanos() {
+        return metrics().loadLatency().percentileNanos(0.99);
+    }
+
+    @Override
+    public long getDemotionCount() {
+        return metrics().demotions();
+    }
+
+    @Override
+    public long getExplicitRemovalCount() {
+        return metrics().evictions(RemovalCause.EXPLICIT);
+    }
+
+    @Override
+    public long getReplacedCount() {
+        return metrics().evictions(RemovalCause.REPLACED);
+    }
+
+    @Override
+    public long getSizeEvictionCount() {
+        return metrics().evictions(RemovalCause.SIZE);
+    }
+
+    @Override
+    public long getExpiredCount() {
+        return metrics().evictions(RemovalCause.EXPIRED);
+    }
+
+    @Override
+    public int getFirstLevelSize() {
+        return cache.getStats().firstLevelSize();
+    }
+
+    @Override
+    public int getSecondLevelSize() {
+        return cache.getStats().secondLevelSize();
+    }
+
+    @Override
+    public long getSecondLevelWeight() {
+        return cache.getSecondLevelWeight();
+    }
+
+    @Override
+    public int getOffHeapSize() {
+        OffHeapStore<?, ?> offHeap = cache.getOffHeapStore();
+        return offHeap != null ? offHeap.size() : 0;
+    }
+
+    @Override
+    public long getOffHeapUsedBytes() {
+        OffHeapStore<?, ?> offHeap = cache.getOffHeapStore();
+        return offHeap != null ? offHeap.getUsedBytes() : 0;
+    }
+
+    @Override
+    public long getOffHeapEvictionCount() {
+        OffHeapStore<?, ?> offHeap = cache.getOffHeapStore();
+        return offHeap != null ? offHeap.getEvictionCount() : 0;
+    }
+}
@@ -0,0 +1,165 @@
+package org.project.cache.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Foto de las claves calientes del cache, para volver a cargarlas al arrancar. Guarda por
+ * clase de entidad su tabla y los ids mas leidos, no los valores: al restaurar se leen de
+ * la base, asi nada de lo restaurado puede estar viejo. Las clases tambien sirven para
+ * reconstruir la region de metadata.
+ * <p>
+ * Solo viajan ids enteros, String o UUID; el resto se omite.
+ *
+ * @param createdAt cuando se tomo la foto
+ * @param entities  una entrada por clase, con los ids de mas a menos leido
+ */
+public record CacheSnapshot(Instant createdAt, List<EntityKeys> entities) {
+
+    private static final int MAGIC = 0x56435348;
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final byte ID_LONG = 1;
+    private static final byte ID_STRING = 2;
+    private static final byte ID_UUID = 3;
+
+    /**
+     * @param tableName tabla de la clase al tomar la foto; si cambio, los ids no valen
+     */
+    public record EntityKeys(String className, String tableName, List<Object> ids) {}
+
+    /**
+     * Toma la foto de las clases con metadata registrada, hasta maxEntriesPerClass ids por clase
+     */
+    public static CacheSnapshot capture(OrmCacheManager cacheManager, int maxEntriesPerClass) {
+        List<EntityKeys> entities = new ArrayList<>();
+        for (Map.Entry<Class<?>, List<Object>> hot : cacheManager.getHotEntityIds(maxEntriesPerClass).entrySet()) {
+            List<Object> ids = new ArrayList<>(hot.getValue().size());
+            for (Object id : hot.getValue()) {
+                if (id instanceof Long || id instanceof String || id instanceof UUID) ids.add(id);
+            }
+            entities.add(new EntityKeys(hot.getKey().getName(), cacheManager.tableOf(hot.getKey()), ids));
+        }
+        return new CacheSnapshot(Instant.now(), entities);
+    }
+
+    /**
+     * Escribe en un archivo temporal al lado y lo mueve encima, asi quien lea nunca ve
+     * un archivo a medias
+     */
+    public void write(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(FORMAT_VERSION);
+                out.writeLong(createdAt.toEpochMilli());
+                out.writeInt(entities.size());
+                for (EntityKeys keys : entities) {
+                    writeString(out, keys.className());
+                    writeString(out, keys.tableName());
+                    out.writeInt(keys.ids().size());
+                    for (Object id : keys.ids()) {
+                        writeId(out, id);
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Lee el archivo mapeado en memoria, sin copiarlo entero al heap
+     *
+     * @throws IOException si no existe, no es una foto o esta truncado
+     */
+    public static CacheSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                if (buffer.getInt() != MAGIC) throw new IOException("Not a cache snapshot: " + file);
+                if (buffer.get() != FORMAT_VERSION) throw new IOException("Unsupported cache snapshot version: " + file);
+
+                Instant createdAt = Instant.ofEpochMilli(buffer.getLong());
+                int classes = buffer.getInt();
+                List<EntityKeys> entities = new ArrayList<>(Math.min(classes, 1024));
+                for (int i = 0; i < classes; i++) {
+                    String className = readString(buffer);
+                    String tableName = readString(buffer);
+                    int count = buffer.getInt();
+                    //Cada id ocupa al menos 5 bytes: un conteo corrupto no reserva de mas
+                    List<Object> ids = new ArrayList<>(Math.min(count, buffer.remaining() / 5));
+                    for (int j = 0; j < count; j++) {
+                        ids.add(readId(buffer));
+                    }
+                    entities.add(new EntityKeys(className, tableName, ids));
+                }
+                return new CacheSnapshot(createdAt, entities);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new IOException("Truncated or corrupt cache snapshot: " + file, e);
+            }
+        }
+    }
+
+    public int entityCount() {
+        int count = 0;
+        for (EntityKeys keys : entities) count += keys.ids().size();
+        return count;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Bad string length " + length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeId(DataOutputStream out, Object id) throws IOException {
+        if (id instanceof Long value) {
+            out.writeByte(ID_LONG);
+            out.writeLong(value);
+        } else if (id instanceof UUID uuid) {
+            out.writeByte(ID_UUID);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        } else {
+            out.writeByte(ID_STRING);
+            writeString(out, (String) id);
+        }
+    }
+
+    private static Object readId(ByteBuffer buffer) {
+        return switch (buffer.get()) {
+            case ID_LONG -> buffer.getLong();
+            case ID_STRING -> readString(buffer);
+            case ID_UUID -> new UUID(buffer.getLong(), buffer.getLong());
+            default -> throw new IllegalArgumentException("Unknown id tag");
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package org.project.cache.core;
+
+import org.project.cache.interfaces.ValueCodec;
+import org.project.cache.model.CacheType;
+import org.project.cache.model.EntityMetadata;
+import org.project.cache.util.EntityCodec;
+import org.project.cache.util.TypedCacheKey;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Codec del nivel fuera del heap de las regiones de entidades. Usa un {@link EntityCodec}
+ * por clase, armado con la metadata registrada. Lo que no es una entidad (o una clase
+ * sin metadata o con campos no soportados) no se serializa y queda en el heap.
+ */
+class EntityValueCodec implements ValueCodec<TypedCacheKey<?>, Object> {
+
+    private final Function<Class<?>, Optional<EntityMetadata>> metadataLookup;
+    private final ConcurrentHashMap<Class<?>, Optional<EntityCodec>> codecs;
+
+    EntityValueCodec(Function<Class<?>, Optional<EntityMetadata>> metadataLookup) {
+        this.metadataLookup = metadataLookup;
+        this.codecs = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public byte[] encode(TypedCacheKey<?> key, Object value) {
+        if (key.getType() != CacheType.ENTITY || value.getClass() != key.getValueType()) return null;
+        EntityCodec codec = this.codecFor(key.getValueType());
+        return codec != null ? codec.encode(value) : null;
+    }
+
+    @Override
+    public Object decode(TypedCacheKey<?> key, ByteBuffer in) {
+        //Si el codec se descarto, lo guardado con el se trata como un miss
+        EntityCodec codec = codecs.getOrDefault(key.getValueType(), Optional.empty()).orElse(null);
+        return codec != null ? codec.decode(in) : null;
+    }
+
+    /**
+     * Descarta el codec de la clase; lo ya serializado con el deja de poder leerse
+     */
+    void forget(Class<?> entityClass) {
+        codecs.remove(entityClass);
+    }
+
+    private EntityCodec codecFor(Class<?> entityClass) {
+        Optional<EntityCodec> codec = codecs.get(entityClass);
+        if (codec != null) return codec.orElse(null);
+
+        //Sin metadata todavia no se memoriza nada, se vuelve a intentar en la proxima
+        EntityMetadata metadata = metadataLookup.apply(entityClass).orElse(null);
+        if (metadata == null) return null;
+        codec = Optional.ofNullable(EntityCodec.forMetadata(metadata));
+        Optional<EntityCodec> existing = codecs.putIfAbsent(entityClass, codec);
+        return (existing != null ? existing : codec).orElse(null);
+    }
+}
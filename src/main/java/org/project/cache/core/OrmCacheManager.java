@@ -1,27 +1,121 @@
 package org.project.cache.core;
 
 import org.project.cache.interfaces.EntityCache;
+import org.project.cache.interfaces.InvalidationTransport;
 import org.project.cache.interfaces.MetadataCache;
 import org.project.cache.interfaces.QueryCache;
+import org.project.cache.interfaces.Ticker;
+import org.project.cache.model.CacheRegionConfig;
 import org.project.cache.model.CacheType;
 import org.project.cache.model.EntityMetadata;
+import org.project.cache.model.InvalidationEvent;
+import org.project.cache.model.QueryStamp;
+import org.project.cache.util.CacheMetrics;
+import org.project.cache.util.InvalidationBus;
+import org.project.cache.util.OffHeapStore;
 import org.project.cache.util.SmartCache;
+import org.project.cache.util.TableVersions;
 import org.project.cache.util.TypedCacheKey;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.function.Supplier;
+
+/**
+ * Cache del ORM separado en una region por {@link CacheType}, cada una con su propio
+ * limite de entradas, TTL y politica. Ademas se pueden registrar regiones dedicadas para
+ * clases de entidad puntuales, asi una entidad muy consultada no compite con el resto.
+ * <p>
+ * Los resultados de consultas se guardan estampados con la version de las tablas que
+ * leen ({@link TableVersions}). Invalidar una tabla solo incrementa su version y los
+ * resultados obsoletos se descartan al leerlos.
+ * <p>
+ * Las lecturas no insertan nada en el cache, salvo getMetadata, que repone la metadata
+ * registrada si la region la descarto. {@link #loadEntity} unifica las cargas
+ * concurrentes de una misma entidad y, si la region lo tiene activado, recuerda por un
+ * tiempo corto los ids que no existen.
+ * <p>
+ * Una region con offHeapCapacityBytes guarda serializadas fuera del heap las entidades
+ * que desaloja su segundo nivel, con un codec derivado de la metadata registrada.
+ * <p>
+ * Con {@link #startInvalidationBus} los cambios locales (escrituras e invalidaciones, no las
+ * cargas) se publican agrupados a los demas nodos, y lo que publican ellos se aplica con
+ * {@link #applyInvalidations}.
+ */
 public class OrmCacheManager implements EntityCache, QueryCache, MetadataCache {
 
-    private final SmartCache<TypedCacheKey<?>, Object> cache;
-    private final ConcurrentHashMap<String, Set<String>> tableQueriesMap;
+    private static final Object ABSENT = new Object();
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
+    private final Map<CacheType, SmartCache<TypedCacheKey<?>, Object>> regions;
+    private final Map<CacheType, CacheRegionConfig> regionConfigs;
+    private final ConcurrentHashMap<Class<?>, SmartCache<TypedCacheKey<?>, Object>> entityRegions;
+    private final ConcurrentHashMap<Class<?>, CacheRegionConfig> entityRegionConfigs;
+    private final ConcurrentHashMap<String, Set<Class<?>>> tableEntityClasses;
+    private final ConcurrentHashMap<Class<?>, String> entityTables;
+    //La metadata se registra una sola vez: si la region la expira o la desaloja se vuelve a poner desde aca
+    private final ConcurrentHashMap<Class<?>, EntityMetadata> registeredMetadata;
+    private final TableVersions tableVersions;
+    private final List<ObjectName> registeredMBeans;
+    private final EntityValueCodec offHeapCodec;
+    private final ConcurrentHashMap<String, Optional<Class<?>>> classesByName;
+    private volatile InvalidationBus invalidationBus;
+
+    private record VersionedResult(List<?> results, QueryStamp stamp) {}
+
+    public OrmCacheManager() {
+        this(CacheRegionConfig.defaults((Duration) null));
+    }
 
+    /**
+     * @param defaultTtl TTL de todas las regiones, o null para usar el de cada {@link CacheType}
+     */
     public OrmCacheManager(Duration defaultTtl) {
-        this.cache = new SmartCache<>(1000, defaultTtl);
-        this.tableQueriesMap = new ConcurrentHashMap<>();
+        this(CacheRegionConfig.defaults(defaultTtl));
+    }
+
+    public OrmCacheManager(Map<CacheType, CacheRegionConfig> regionConfigs) {
+        this.offHeapCodec = new EntityValueCodec(this::getMetadata);
+        this.regions = new EnumMap<>(CacheType.class);
+        this.regionConfigs = new EnumMap<>(CacheType.class);
+        for (CacheType type : CacheType.values()) {
+            CacheRegionConfig config = regionConfigs.getOrDefault(type, CacheRegionConfig.defaults(type));
+            this.regionConfigs.put(type, config);
+            regions.put(type, createRegion(config, type.name()));
+        }
+        this.entityRegions = new ConcurrentHashMap<>();
+        this.entityRegionConfigs = new ConcurrentHashMap<>();
+        this.tableEntityClasses = new ConcurrentHashMap<>();
+        this.entityTables = new ConcurrentHashMap<>();
+        this.registeredMetadata = new ConcurrentHashMap<>();
+        this.tableVersions = new TableVersions();
+        this.registeredMBeans = new ArrayList<>();
+        this.classesByName = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Registra una region propia para una clase de entidad. Las entradas que ya
+     * estuvieran en la region ENTITY para esa clase se descartan.
+     */
+    public void configureEntityRegion(Class<?> entityClass, CacheRegionConfig config) {
+        entityRegionConfigs.put(entityClass, config);
+        entityRegions.put(entityClass, createRegion(config, entityClass.getName()));
+        regions.get(CacheType.ENTITY).invalidateGroup(entityClass);
     }
 
 
@@ -30,86 +124,293 @@ public class OrmCacheManager implements EntityCache, QueryCache, MetadataCache {
     @Override
     public <T> Optional<T> getEntity(Class<T> entityClass, Object id) {
         TypedCacheKey<T> key = TypedCacheKey.createEntityKey(entityClass, id);
-        return Optional.ofNullable(entityClass.cast(cache.get(key, k -> null)));
+        Object cached = entityRegion(entityClass).getIfPresent(key);
+        if (cached == null || cached == ABSENT) return Optional.empty();
+        return Optional.of(entityClass.cast(cached));
+    }
+
+    @Override
+    public <T> T getEntityIfPresent(Class<T> entityClass, long id) {
+        SmartCache<TypedCacheKey<?>, Object> cache = entityRegion(entityClass);
+        Object cached = cache.getIfPresent(entityClass, id);
+        if (cached == null) {
+            //Miss en la tabla primitiva: puede estar igual bajo la clave completa
+            cached = cache.getIfPresent(TypedCacheKey.createEntityKey(entityClass, id));
+        }
+        return cached == null || cached == ABSENT ? null : entityClass.cast(cached);
     }
 
     @Override
     public <T> void putEntity(Class<? extends T> entityClass, Object id, T entity) {
         TypedCacheKey<? extends T> key = TypedCacheKey.createEntityKey(entityClass, id);
-        cache.get(key, k -> entity);
+        entityRegion(entityClass).put(key, entity);
+        //Los otros nodos descartan su copia y la vuelven a cargar
+        this.publish(InvalidationEvent.entity(entityClass, id));
+    }
+
+    /**
+     * Guarda varias entidades de la misma clase, resolviendo la region una sola vez. Es
+     * para cargas: no se publica a los otros nodos.
+     */
+    public <T> void putEntities(Class<? extends T> entityClass, Map<?, ? extends T> entitiesById) {
+        SmartCache<TypedCacheKey<?>, Object> cache = entityRegion(entityClass);
+        entitiesById.forEach((id, entity) -> cache.put(TypedCacheKey.createEntityKey(entityClass, id), entity));
+    }
+
+    /**
+     * Aplica de una vez los efectos de una transaccion confirmada: guarda las entidades
+     * escritas, invalida las borradas y despues las consultas de cada tabla. Se publican a
+     * los otros nodos como cualquier otro cambio.
+     */
+    public void applyCommitted(Map<TypedCacheKey<?>, Object> written, Collection<TypedCacheKey<?>> invalidated,
+                               Collection<String> tableNames) {
+        written.forEach((key, entity) -> {
+            entityRegion(key.getValueType()).put(key, entity);
+            this.publish(InvalidationEvent.entity(key.getValueType(), key.getKey()));
+        });
+        for (TypedCacheKey<?> key : invalidated) {
+            entityRegion(key.getValueType()).invalidate(key);
+            this.publish(InvalidationEvent.entity(key.getValueType(), key.getKey()));
+        }
+        for (String tableName : tableNames) {
+            tableVersions.bump(tableName);
+            this.publish(InvalidationEvent.table(tableName));
+        }
+    }
+
+    /**
+     * Devuelve la entidad cacheada o la carga con el loader. Las cargas concurrentes del
+     * mismo id se unifican en una sola. Si el loader devuelve null y la region tiene
+     * negativeTtl, la ausencia se recuerda ese tiempo y no se vuelve a consultar.
+     */
+    public <T> T loadEntity(Class<T> entityClass, Object id, Supplier<T> loader) {
+        TypedCacheKey<T> key = TypedCacheKey.createEntityKey(entityClass, id);
+        SmartCache<TypedCacheKey<?>, Object> cache = entityRegion(entityClass);
+        Duration negativeTtl = entityRegionConfig(entityClass).negativeTtl();
+
+        Object value = cache.get(key, k -> {
+            T loaded = loader.get();
+            if (loaded == null && negativeTtl != null && !negativeTtl.isZero()) {
+                cache.put(key, ABSENT, negativeTtl);
+            }
+            return loaded;
+        });
+        return value == null || value == ABSENT ? null : entityClass.cast(value);
     }
 
     @Override
     public <T> void invalidateEntity(Class<T> entityClass, Object id) {
         TypedCacheKey<T> key = TypedCacheKey.createEntityKey(entityClass, id);
-        cache.invalidate(key);
+        entityRegion(entityClass).invalidate(key);
+        this.publish(InvalidationEvent.entity(entityClass, id));
     }
 
     @Override
     public void invalidateEntityType(Class<?> entityClass) {
-        this.invalidateByPrefix(CacheType.ENTITY + ":" + entityClass.getName());
+        entityRegion(entityClass).invalidateGroup(entityClass);
+        this.publish(InvalidationEvent.entityType(entityClass));
+    }
+
+    /**
+     * Invalida las entidades de todas las clases mapeadas a la tabla. La relacion
+     * tabla-clase se aprende de la metadata registrada con putMetadata.
+     */
+    public void invalidateEntitiesForTable(String tableName) {
+        Set<Class<?>> entityClasses = tableEntityClasses.get(tableName);
+        if (entityClasses != null) entityClasses.forEach(this::invalidateEntityType);
     }
 
     // MetadataCache implementation
 
+    /**
+     * Metadata registrada con putMetadata. Si la region la expiro o la desalojo se vuelve a
+     * poner, asi el codec fuera del heap sigue pudiendo leer lo que guardo con ella
+     */
     @Override
     public Optional<EntityMetadata> getMetadata(Class<?> entityClass) {
         TypedCacheKey<EntityMetadata> key = TypedCacheKey.createMetadataKey(entityClass);
-        return Optional.ofNullable((EntityMetadata) cache.get(key, k -> null));
+        SmartCache<TypedCacheKey<?>, Object> metadataRegion = region(CacheType.METADATA);
+        EntityMetadata cached = (EntityMetadata) metadataRegion.getIfPresent(key);
+        if (cached != null) return Optional.of(cached);
+
+        EntityMetadata registered = registeredMetadata.get(entityClass);
+        if (registered != null) metadataRegion.put(key, registered);
+        return Optional.ofNullable(registered);
     }
 
     @Override
     public void putMetadata(Class<?> entityClass, EntityMetadata metadata) {
         TypedCacheKey<EntityMetadata> key = TypedCacheKey.createMetadataKey(entityClass);
-        cache.get(key, k -> metadata);
+        //La anterior sale del registro: la region pudo haberla expirado
+        EntityMetadata previous = metadata == null
+                ? registeredMetadata.remove(entityClass)
+                : registeredMetadata.put(entityClass, metadata);
+        region(CacheType.METADATA).put(key, metadata);
+
+        //Lo serializado fuera del heap con la metadata anterior ya no se puede leer
+        if (previous != null && previous != metadata) {
+            offHeapCodec.forget(entityClass);
+            entityRegion(entityClass).invalidateGroup(entityClass);
+        }
+
+        if (metadata != null && metadata.getTableName() != null) {
+            entityTables.put(entityClass, metadata.getTableName());
+            tableEntityClasses.computeIfAbsent(metadata.getTableName(), t -> ConcurrentHashMap.newKeySet())
+                    .add(entityClass);
+        }
     }
 
     @Override
     public void invalidateMetadata(Class<?> entityClass) {
         TypedCacheKey<EntityMetadata> key = TypedCacheKey.createMetadataKey(entityClass);
-        cache.invalidate(key);
+        registeredMetadata.remove(entityClass);
+        region(CacheType.METADATA).invalidate(key);
     }
 
     // QueryCache implementation
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> Optional<List<T>> getQueryResult(String query, Class<T> entityClass) {
-        TypedCacheKey<List<T>> key = TypedCacheKey.createQueryKey(query, entityClass);
-        return Optional.ofNullable((List<T>) cache.get(key, k -> null));
+        return this.getQueryResult(query, NO_PARAMETERS, entityClass);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Optional<List<T>> getQueryResult(String query, Object[] parameters, Class<T> entityClass) {
+        TypedCacheKey<List<T>> key = TypedCacheKey.createQueryKey(query, parameters, entityClass);
+        SmartCache<TypedCacheKey<?>, Object> cache = region(CacheType.QUERY);
+        VersionedResult cached = (VersionedResult) cache.getIfPresent(key);
+        if (cached == null) return Optional.empty();
+
+        //Alguna tabla cambio despues de estampar el resultado
+        if (!tableVersions.isCurrent(cached.stamp())) {
+            cache.invalidate(key);
+            return Optional.empty();
+        }
+        return Optional.of((List<T>) cached.results());
     }
 
     @Override
     public <T> void putQueryResult(String query, Class<T> entityClass, List<T> results) {
-        TypedCacheKey<List<T>> key = TypedCacheKey.createQueryKey(query, entityClass);
-        cache.get(key, k -> results);
+        this.putQueryResult(query, entityClass, results, stampTables(List.of(tableOf(entityClass))));
+    }
+
+    @Override
+    public <T> void putQueryResult(String query, Class<T> entityClass, List<T> results, QueryStamp stamp) {
+        this.putQueryResult(query, NO_PARAMETERS, entityClass, results, stamp);
+    }
 
-        //Registrar la query para la tabla correspondiente
-        String tableName = entityClass.getSimpleName().toLowerCase();
-        tableQueriesMap.computeIfAbsent(tableName, k -> ConcurrentHashMap.newKeySet()).add(query);
+    @Override
+    public <T> void putQueryResult(String query, Object[] parameters, Class<T> entityClass, List<T> results,
+                                   QueryStamp stamp) {
+        TypedCacheKey<List<T>> key = TypedCacheKey.createQueryKey(query, parameters, entityClass);
+        region(CacheType.QUERY).put(key, new VersionedResult(results, stamp));
+    }
+
+    @Override
+    public QueryStamp stampTables(Collection<String> tableNames) {
+        return tableVersions.stamp(tableNames);
     }
 
     @Override
     public void invalidateQuery(String query) {
-        tableQueriesMap.values().stream()
-                .filter(queries -> queries.contains(query))
-                .forEach(queries -> queries.remove(query));
+        region(CacheType.QUERY).invalidateGroup(query);
+        this.publish(InvalidationEvent.query(query));
     }
 
     @Override
     public void invalidateQueriesForTable(String tableName) {
-        Set<String> queries = tableQueriesMap.get(tableName);
-        if (queries != null) {
-            queries.forEach(this::invalidateQuery);
-            queries.clear();
-        }
+        tableVersions.bump(tableName);
+        this.publish(InvalidationEvent.table(tableName));
+    }
+
+    /**
+     * Tabla de la entidad segun la metadata registrada; si todavia no hay metadata se
+     * usa el nombre simple de la clase en minusculas.
+     */
+    public String tableOf(Class<?> entityClass) {
+        String tableName = entityTables.get(entityClass);
+        return tableName != null ? tableName : entityClass.getSimpleName().toLowerCase();
     }
 
     // mEtodos utiles para mejorar el manejo
 
     public void clearCache() {
-        cache.invalidateAll();
-        tableQueriesMap.clear();
+        this.clearLocal();
+        this.publish(InvalidationEvent.clearAll());
+    }
+
+    // Invalidacion entre nodos
+
+    /**
+     * Empieza a publicar los cambios locales por el transporte y a aplicar los recibidos
+     */
+    public void startInvalidationBus(InvalidationTransport transport) {
+        this.startInvalidationBus(transport, InvalidationBus.DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param flushInterval cada cuanto se envian los eventos acumulados
+     */
+    public synchronized void startInvalidationBus(InvalidationTransport transport, Duration flushInterval) {
+        if (invalidationBus != null) throw new IllegalStateException("Invalidation bus already started");
+        InvalidationBus bus = new InvalidationBus(transport, this::applyInvalidations, flushInterval);
+        try {
+            bus.start();
+        } catch (IOException e) {
+            bus.close();
+            throw new IllegalStateException("Failed to start cache invalidation transport", e);
+        }
+        this.invalidationBus = bus;
+    }
+
+    /**
+     * Envia lo pendiente y cierra el transporte
+     */
+    public synchronized void closeInvalidationBus() {
+        InvalidationBus bus = invalidationBus;
+        if (bus == null) return;
+        invalidationBus = null;
+        bus.close();
+    }
+
+    public InvalidationBus getInvalidationBus() {
+        return invalidationBus;
+    }
+
+    /**
+     * Aplica invalidaciones de otro nodo sin volver a publicarlas. Las entidades se juntan
+     * por clase, asi la region se resuelve una vez y una clase invalidada entera no se
+     * recorre por id; las clases que este nodo no conoce se ignoran.
+     */
+    public void applyInvalidations(Collection<InvalidationEvent> events) {
+        Map<Class<?>, Set<TypedCacheKey<?>>> entityKeys = new HashMap<>();
+        Set<Class<?>> entityTypes = new HashSet<>();
+
+        for (InvalidationEvent event : events) {
+            switch (event.kind()) {
+                case CLEAR_ALL -> {
+                    //Lo demas del lote queda absorbido
+                    this.clearLocal();
+                    return;
+                }
+                case ENTITY -> this.resolveClass(event.name()).ifPresent(entityClass ->
+                        entityKeys.computeIfAbsent(entityClass, c -> new HashSet<>())
+                                .add(TypedCacheKey.createEntityKey(entityClass, event.id())));
+                case ENTITY_TYPE -> this.resolveClass(event.name()).ifPresent(entityTypes::add);
+                case TABLE -> tableVersions.bump(event.name());
+                case QUERY -> region(CacheType.QUERY).invalidateGroup(event.name());
+            }
+        }
+
+        for (Class<?> entityClass : entityTypes) {
+            entityRegion(entityClass).invalidateGroup(entityClass);
+            entityKeys.remove(entityClass);
+        }
+        entityKeys.forEach((entityClass, keys) -> {
+            SmartCache<TypedCacheKey<?>, Object> cache = entityRegion(entityClass);
+            keys.forEach(cache::invalidate);
+        });
     }
 
     /**
@@ -117,17 +418,14 @@ public class OrmCacheManager implements EntityCache, QueryCache, MetadataCache {
      */
     public <T> void setEntityTTL(Class<T> entityClass,Object id, Duration ttl) {
         TypedCacheKey<T> key = TypedCacheKey.createEntityKey(entityClass, id);
-        cache.setTTL(key, ttl);
+        entityRegion(entityClass).setTTL(key, ttl);
     }
 
     /**
      * Establece un TTL personalizado para un tipo de entidad
      */
     public void setEntityTypeTTL(Class<?> entityClass, Duration ttl) {
-        String prefix = CacheType.ENTITY + ":" + entityClass.getName();
-        cache.getKeys().stream()
-                .filter(key -> key.toString().startsWith(prefix))
-                .forEach(key -> cache.setTTL(key, ttl));
+        entityRegion(entityClass).setGroupTTL(entityClass, ttl);
     }
 
     /**
@@ -135,28 +433,153 @@ public class OrmCacheManager implements EntityCache, QueryCache, MetadataCache {
      */
     public <T> void setQueryTTL(String query, Class<T> entityClass, Duration ttl) {
         TypedCacheKey<List<T>> key = TypedCacheKey.createQueryKey(query, entityClass);
-        cache.setTTL(key, ttl);
+        region(CacheType.QUERY).setTTL(key, ttl);
     }
 
     //Utility
 
-    private void invalidateByPrefix(String prefix) {
-        cache.getKeys().stream()
-                .filter(key -> key.toString().startsWith(prefix))
-                .forEach(cache::invalidate);
+    private SmartCache<TypedCacheKey<?>, Object> createRegion(CacheRegionConfig config, String name) {
+        OffHeapStore<TypedCacheKey<?>, Object> offHeap = config.offHeapCapacityBytes() > 0
+                ? new OffHeapStore<>(config.offHeapCapacityBytes(), offHeapCodec)
+                : null;
+        SmartCache<TypedCacheKey<?>, Object> region = new SmartCache<>(
+                config.maxSize(),
+                config.maxSecondLevelWeight(),
+                config.weigher(),
+                config.secondLevelPolicy(),
+                config.ttl(),
+                Ticker.system(),
+                TypedCacheKey::getGroup,
+                offHeap
+        );
+        region.setName(name);
+        return region;
+    }
+
+    private void clearLocal() {
+        regions.values().forEach(SmartCache::invalidateAll);
+        entityRegions.values().forEach(SmartCache::invalidateAll);
+    }
+
+    private void publish(InvalidationEvent event) {
+        InvalidationBus bus = invalidationBus;
+        if (bus != null) bus.publish(event);
+    }
+
+    private Optional<Class<?>> resolveClass(String className) {
+        return classesByName.computeIfAbsent(className, name -> {
+            try {
+                return Optional.of(Class.forName(name, false, OrmCacheManager.class.getClassLoader()));
+            } catch (ClassNotFoundException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    private SmartCache<TypedCacheKey<?>, Object> region(CacheType type) {
+        return regions.get(type);
+    }
+
+    private CacheRegionConfig entityRegionConfig(Class<?> entityClass) {
+        CacheRegionConfig dedicated = entityRegionConfigs.get(entityClass);
+        return dedicated != null ? dedicated : regionConfigs.get(CacheType.ENTITY);
+    }
+
+    private SmartCache<TypedCacheKey<?>, Object> entityRegion(Class<?> entityClass) {
+        SmartCache<TypedCacheKey<?>, Object> dedicated = entityRegions.get(entityClass);
+        return dedicated != null ? dedicated : regions.get(CacheType.ENTITY);
+    }
+
+    /**
+     * Ids de las entidades cacheadas de cada clase con metadata registrada, de la mas a la
+     * menos leida, hasta limitPerClass por clase. Las clases sin entidades cacheadas aparecen
+     * con la lista vacia.
+     */
+    public Map<Class<?>, List<Object>> getHotEntityIds(int limitPerClass) {
+        Map<Class<?>, List<Object>> hot = new LinkedHashMap<>();
+        for (Class<?> entityClass : entityTables.keySet()) {
+            List<Object> ids = new ArrayList<>();
+            for (TypedCacheKey<?> key : entityRegion(entityClass).getHottestKeys(entityClass, limitPerClass, v -> v != ABSENT)) {
+                ids.add(key.getKey());
+            }
+            hot.put(entityClass, ids);
+        }
+        return hot;
     }
 
     public boolean isEntityCached(Class<?> entityClass, Object id) {
         TypedCacheKey<?> key = TypedCacheKey.createEntityKey(entityClass, id);
-        return cache.get(key, k -> null) != null;
+        Object cached = entityRegion(entityClass).getIfPresent(key);
+        return cached != null && cached != ABSENT;
     }
 
-    public Set<String> getQueriesForTable(String tableName) {
-        return tableQueriesMap.getOrDefault(tableName, ConcurrentHashMap.newKeySet());
+    /**
+     * Estadisticas sumadas de todas las regiones
+     */
+    public SmartCache.CacheStats getCacheStats() {
+        SmartCache.CacheStats total = new SmartCache.CacheStats(0, 0, 0, 0);
+        for (SmartCache<TypedCacheKey<?>, Object> region : regions.values()) {
+            total = total.plus(region.getStats());
+        }
+        for (SmartCache<TypedCacheKey<?>, Object> region : entityRegions.values()) {
+            total = total.plus(region.getStats());
+        }
+        return total;
     }
 
-    public SmartCache.CacheStats getCacheStats() {
-        return cache.getStats();
+    public SmartCache.CacheStats getCacheStats(CacheType type) {
+        return region(type).getStats();
+    }
+
+    public SmartCache.CacheStats getEntityCacheStats(Class<?> entityClass) {
+        return entityRegion(entityClass).getStats();
+    }
+
+    public CacheMetrics.Snapshot getMetrics(CacheType type) {
+        return region(type).getMetrics();
+    }
+
+    public CacheMetrics.Snapshot getEntityMetrics(Class<?> entityClass) {
+        return entityRegion(entityClass).getMetrics();
+    }
+
+    /**
+     * Registra un MXBean por region en el MBeanServer de la plataforma, bajo
+     * {@code org.project.cache:type=OrmCache,name=<name>,region=<region>}.
+     */
+    public synchronized void registerMBeans(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Map.Entry<CacheType, SmartCache<TypedCacheKey<?>, Object>> region : regions.entrySet()) {
+                this.registerMBean(server, name, region.getKey().name(), region.getValue());
+            }
+            for (Map.Entry<Class<?>, SmartCache<TypedCacheKey<?>, Object>> region : entityRegions.entrySet()) {
+                this.registerMBean(server, name, region.getKey().getName(), region.getValue());
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register cache MBeans", e);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registeredMBeans) {
+            try {
+                if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            } catch (JMException ignored) {
+                //Ya no estaba registrado
+            }
+        }
+        registeredMBeans.clear();
+    }
+
+    private void registerMBean(MBeanServer server, String name, String region,
+                               SmartCache<TypedCacheKey<?>, Object> cache) throws JMException {
+        ObjectName objectName = new ObjectName("org.project.cache:type=OrmCache,name="
+                + ObjectName.quote(name) + ",region=" + ObjectName.quote(region));
+        if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+        server.registerMBean(new CacheRegionMBean(cache), objectName);
+        registeredMBeans.add(objectName);
     }
 
 }
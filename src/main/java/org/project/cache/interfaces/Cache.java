@@ -7,6 +7,8 @@ import java.util.function.Function;
 public interface Cache<K, V> {
 
     V get(K key, Function<K, V> loader);
+    V getIfPresent(K key);
+    void put(K key, V value);
     void invalidate(K key);
     void invalidateAll();
     SmartCache.CacheStats getCacheStats();
@@ -0,0 +1,33 @@
+package org.project.cache.interfaces;
+
+/**
+ * Metricas de una region de cache expuestas por JMX.
+ */
+public interface CacheRegionMXBean {
+
+    long getFirstLevelHitCount();
+    long getSecondLevelHitCount();
+    long getOffHeapHitCount();
+    long getMissCount();
+    double getHitRatio();
+
+    long getLoadSuccessCount();
+    long getLoadFailureCount();
+    double getAverageLoadPenaltyNanos();
+    long getLoadLatencyP50Nanos();
+    long getLoadLatencyP99Nanos();
+
+    long getDemotionCount();
+    long getExplicitRemovalCount();
+    long getReplacedCount();
+    long getSizeEvictionCount();
+    long getExpiredCount();
+
+    int getFirstLevelSize();
+    int getSecondLevelSize();
+    long getSecondLevelWeight();
+    int getOffHeapSize();
+    long getOffHeapUsedBytes();
+    long getOffHeapEvictionCount();
+
+}
@@ -5,6 +5,11 @@ import java.util.Optional;
 public interface EntityCache {
 
     <T> Optional<T> getEntity(Class<T> entityClass, Object id);
+
+    /**
+     * Variante para ids numericos: un hit no construye la clave ni aloca. Devuelve null si no esta.
+     */
+    <T> T getEntityIfPresent(Class<T> entityClass, long id);
     <T> void putEntity(Class<? extends T> entityClass, Object id, T entity);
     <T> void invalidateEntity(Class<T> entityClass, Object id);
     void invalidateEntityType(Class<?> entityClass);
@@ -0,0 +1,28 @@
+package org.project.cache.interfaces;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Mueve mensajes de invalidacion entre los nodos. Solo transporta bytes: el formato y el
+ * agrupado son del {@link org.project.cache.util.InvalidationBus}. La entrega puede ser
+ * best-effort; un mensaje perdido deja una entrada vieja hasta su TTL.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /**
+     * Empieza a recibir. receiver se llama desde un hilo del transporte con cada mensaje,
+     * incluidos los propios si el medio los devuelve.
+     */
+    void start(Consumer<byte[]> receiver) throws IOException;
+
+    void send(byte[] message) throws IOException;
+
+    /**
+     * Tamano maximo de un mensaje; el bus parte los lotes mas grandes
+     */
+    int maxMessageBytes();
+
+    @Override
+    void close();
+}
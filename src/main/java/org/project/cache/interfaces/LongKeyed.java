@@ -0,0 +1,12 @@
+package org.project.cache.interfaces;
+
+/**
+ * Clave que puede representarse como un long dentro de su grupo (ej. el id numerico
+ * de una entidad). Permite buscarla en el cache sin construir la clave.
+ */
+public interface LongKeyed {
+
+    boolean hasLongKey();
+    long longKey();
+
+}
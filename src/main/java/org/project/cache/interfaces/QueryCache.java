@@ -1,12 +1,34 @@
 package org.project.cache.interfaces;
 
+import org.project.cache.model.QueryStamp;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface QueryCache {
 
     <T> Optional<List<T>> getQueryResult(String query, Class<T> entityClass);
+
+    /**
+     * Resultado de la consulta con esos parametros; cada juego de parametros tiene su entrada
+     */
+    <T> Optional<List<T>> getQueryResult(String query, Object[] parameters, Class<T> entityClass);
+
+    /**
+     * Guarda el resultado estampado con la version actual de la tabla de la entidad
+     */
     <T> void putQueryResult(String query, Class<T> entityClass, List<T> results);
+
+    /**
+     * Guarda el resultado con las versiones tomadas con {@link #stampTables} antes de ejecutar
+     * la consulta, asi una escritura concurrente nunca deja un resultado viejo como vigente.
+     */
+    <T> void putQueryResult(String query, Class<T> entityClass, List<T> results, QueryStamp stamp);
+
+    <T> void putQueryResult(String query, Object[] parameters, Class<T> entityClass, List<T> results, QueryStamp stamp);
+
+    QueryStamp stampTables(Collection<String> tableNames);
     void invalidateQuery(String query);
     void invalidateQueriesForTable(String tableName);
 
@@ -0,0 +1,14 @@
+package org.project.cache.interfaces;
+
+/**
+ * Fuente de tiempo monotona, en nanosegundos, usada para la expiracion del cache.
+ */
+@FunctionalInterface
+public interface Ticker {
+
+    long read();
+
+    static Ticker system() {
+        return System::nanoTime;
+    }
+}
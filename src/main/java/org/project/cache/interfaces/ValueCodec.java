@@ -0,0 +1,20 @@
+package org.project.cache.interfaces;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializa los valores que un cache guarda fuera del heap.
+ */
+public interface ValueCodec<K, V> {
+
+    /**
+     * @return los bytes del valor, o null si este valor no se puede guardar serializado
+     */
+    byte[] encode(K key, V value);
+
+    /**
+     * Reconstruye el valor a partir de lo que devolvio {@link #encode}
+     */
+    V decode(K key, ByteBuffer in);
+
+}
@@ -0,0 +1,18 @@
+package org.project.cache.interfaces;
+
+/**
+ * Calcula el peso de una entrada del segundo nivel de cache.
+ * Permite acotar el cache por bytes estimados en lugar de por cantidad de entradas.
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    int weigh(K key, V value);
+
+    /**
+     * Cada entrada pesa 1, el limite pasa a ser una cantidad de entradas.
+     */
+    static <K, V> Weigher<K, V> singleton() {
+        return (key, value) -> 1;
+    }
+}
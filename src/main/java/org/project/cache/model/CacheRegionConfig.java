@@ -0,0 +1,78 @@
+package org.project.cache.model;
+
+import org.project.cache.interfaces.Weigher;
+import org.project.cache.util.TypedCacheKey;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuracion de una region de {@link org.project.cache.core.OrmCacheManager}.
+ *
+ * @param maxSize              entradas en el primer nivel
+ * @param maxSecondLevelWeight peso maximo del segundo nivel, segun el weigher
+ * @param weigher              peso de cada entrada en el segundo nivel
+ * @param secondLevelPolicy    politica de eviccion del segundo nivel
+ * @param ttl                  tiempo de vida de las entradas
+ * @param negativeTtl          tiempo que se recuerda que una entidad no existe; cero lo desactiva
+ * @param offHeapCapacityBytes bytes del nivel fuera del heap donde van las entidades desalojadas
+ *                             del segundo nivel; cero lo desactiva
+ */
+public record CacheRegionConfig(int maxSize,
+                                long maxSecondLevelWeight,
+                                Weigher<TypedCacheKey<?>, Object> weigher,
+                                EvictionPolicy secondLevelPolicy,
+                                Duration ttl,
+                                Duration negativeTtl,
+                                long offHeapCapacityBytes) {
+
+    public static CacheRegionConfig defaults(CacheType type) {
+        return new CacheRegionConfig(
+                type.getDefaultMaxSize(),
+                type.getDefaultMaxSize() * 10L,
+                Weigher.singleton(),
+                type == CacheType.QUERY ? EvictionPolicy.FIFO : EvictionPolicy.LRU,
+                type.getDefaultTtl(),
+                Duration.ZERO,
+                0L
+        );
+    }
+
+    /**
+     * Configuracion por defecto de todas las regiones.
+     * @param ttlOverride si no es null, se usa como TTL de todas las regiones
+     */
+    public static Map<CacheType, CacheRegionConfig> defaults(Duration ttlOverride) {
+        Map<CacheType, CacheRegionConfig> configs = new EnumMap<>(CacheType.class);
+        for (CacheType type : CacheType.values()) {
+            CacheRegionConfig config = defaults(type);
+            configs.put(type, ttlOverride != null ? config.withTtl(ttlOverride) : config);
+        }
+        return configs;
+    }
+
+    public CacheRegionConfig withTtl(Duration ttl) {
+        return new CacheRegionConfig(maxSize, maxSecondLevelWeight, weigher, secondLevelPolicy, ttl, negativeTtl, offHeapCapacityBytes);
+    }
+
+    public CacheRegionConfig withMaxSize(int maxSize, long maxSecondLevelWeight) {
+        return new CacheRegionConfig(maxSize, maxSecondLevelWeight, weigher, secondLevelPolicy, ttl, negativeTtl, offHeapCapacityBytes);
+    }
+
+    public CacheRegionConfig withSecondLevelPolicy(EvictionPolicy secondLevelPolicy) {
+        return new CacheRegionConfig(maxSize, maxSecondLevelWeight, weigher, secondLevelPolicy, ttl, negativeTtl, offHeapCapacityBytes);
+    }
+
+    public CacheRegionConfig withWeigher(Weigher<TypedCacheKey<?>, Object> weigher) {
+        return new CacheRegionConfig(maxSize, maxSecondLevelWeight, weigher, secondLevelPolicy, ttl, negativeTtl, offHeapCapacityBytes);
+    }
+
+    public CacheRegionConfig withNegativeTtl(Duration negativeTtl) {
+        return new CacheRegionConfig(maxSize, maxSecondLevelWeight, weigher, secondLevelPolicy, ttl, negativeTtl, offHeapCapacityBytes);
+    }
+
+    public CacheRegionConfig withOffHeapCapacity(long offHeapCapacityBytes) {
+        return new CacheRegionConfig(maxSize, maxSecondLevelWeight, weigher, secondLevelPolicy, ttl, negativeTtl, offHeapCapacityBytes);
+    }
+}
@@ -4,17 +4,23 @@ import java.time.Duration;
 
 public enum CacheType {
 
-    METADATA(Duration.ofMinutes(30)),
-    QUERY(Duration.ofMinutes(5)),
-    ENTITY(Duration.ofHours(12));
+    METADATA(Duration.ofMinutes(30), 256),
+    QUERY(Duration.ofMinutes(5), 500),
+    ENTITY(Duration.ofHours(12), 1000);
 
     private final Duration defaultTtl;
+    private final int defaultMaxSize;
 
-    CacheType(Duration defaultTtl) {
+    CacheType(Duration defaultTtl, int defaultMaxSize) {
         this.defaultTtl = defaultTtl;
+        this.defaultMaxSize = defaultMaxSize;
     }
 
     public Duration getDefaultTtl() {
         return defaultTtl;
     }
+
+    public int getDefaultMaxSize() {
+        return defaultMaxSize;
+    }
 }
@@ -1,17 +1,68 @@
 package org.project.cache.model;
 
-import java.util.HashMap;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Modelo de columnas de una entidad, indexado por posicion. Las columnas son los campos
+ * que no son el id, en orden de declaracion; es el mismo orden de los parametros de los
+ * INSERT/UPDATE generados, asi los valores se copian directo a un arreglo de parametros.
+ */
 public class EntityMetadata {
 
-    private String tableName;
-    private String getIdColumn;
-    private Object id;
+    private final Class<?> entityClass;
+    private final String tableName;
+    private final List<FieldMetadata> fields;
+    private final FieldMetadata[] columns;
+    private final FieldMetadata idField;
+    private final MethodHandle constructor;
 
+    /**
+     * @param fields campos persistentes en orden de declaracion; como mucho uno marcado como id
+     */
+    public EntityMetadata(Class<?> entityClass, String tableName, List<FieldMetadata> fields) {
+        this.entityClass = entityClass;
+        this.tableName = tableName;
+        this.fields = List.copyOf(fields);
+        this.columns = this.fields.stream().filter(field -> !field.isId()).toArray(FieldMetadata[]::new);
+        this.idField = this.fields.stream().filter(FieldMetadata::isId).findFirst().orElse(null);
+        this.constructor = findConstructor(entityClass);
+    }
 
+    /**
+     * Valores de las columnas que no son el id, por nombre. Para los caminos de escritura
+     * usar {@link #extractColumnValues(Object, Object[], int)}.
+     */
     public <T> Map<String, Object> extractValues(T entity) {
-        return new HashMap<String, Object>();
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (FieldMetadata column : columns) {
+            values.put(column.getColumnName(), column.getValue(entity));
+        }
+        return values;
+    }
+
+    public <T> Object[] extractColumnValues(T entity) {
+        Object[] values = new Object[columns.length];
+        this.extractColumnValues(entity, values, 0);
+        return values;
+    }
+
+    /**
+     * Copia los valores de las columnas a target desde offset, en el orden de {@link #getColumn}
+     */
+    public <T> void extractColumnValues(T entity, Object[] target, int offset) {
+        for (int i = 0; i < columns.length; i++) {
+            target[offset + i] = columns[i].getValue(entity);
+        }
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
     }
 
     public String getTableName() {
@@ -19,14 +70,100 @@ public class EntityMetadata {
     }
 
     public String getIdColumn() {
-        return getIdColumn;
+        return idField != null ? idField.getColumnName() : null;
     }
 
-    public <T> void setId(T entity, Object id) {
+    public List<FieldMetadata> getFields() {
+        return fields;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public FieldMetadata getColumn(int index) {
+        return columns[index];
+    }
+
+    public FieldMetadata getIdField() {
+        return idField;
+    }
 
+    public <T> void setId(T entity, Object id) {
+        if (idField != null) idField.setValue(entity, id);
     }
 
     public <T> Object getId(T entity) {
-        return id;
+        return idField != null ? idField.getValue(entity) : null;
+    }
+
+    /**
+     * Si la entidad ya trae id. Un id primitivo no puede ser null: en 0 cuenta como sin
+     * asignar, igual que un null en un id de objeto.
+     */
+    public <T> boolean hasAssignedId(T entity) {
+        Object id = this.getId(entity);
+        if (id == null) return false;
+        if (!idField.getType().isPrimitive()) return true;
+        return !(id instanceof Number number) || number.longValue() != 0;
+    }
+
+    public boolean isInstantiable() {
+        return constructor != null;
+    }
+
+    /**
+     * Crea una instancia vacia con el constructor sin argumentos de la entidad
+     */
+    public Object newInstance() {
+        if (constructor == null) {
+            throw new IllegalStateException("Entity " + entityClass.getName() + " has no no-arg constructor");
+        }
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Cannot instantiate " + entityClass.getName(), t);
+        }
+    }
+
+    /**
+     * Copia de la entidad con los mismos valores en todos los campos, id incluido. Los
+     * arreglos se copian porque se pueden modificar en el lugar; el resto de los valores
+     * se comparten.
+     */
+    public <T> T copy(T entity) {
+        @SuppressWarnings("unchecked")
+        T copy = (T) this.newInstance();
+        this.copyState(entity, copy);
+        return copy;
+    }
+
+    /**
+     * Pasa los valores de todos los campos de source a target, como {@link #copy}
+     */
+    public <T> void copyState(T source, T target) {
+        for (FieldMetadata field : fields) {
+            field.setValue(target, copyValue(field.getValue(source)));
+        }
+    }
+
+    private static Object copyValue(Object value) {
+        if (value == null || !value.getClass().isArray()) return value;
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static MethodHandle findConstructor(Class<?> entityClass) {
+        try {
+            return MethodHandles.privateLookupIn(entityClass, MethodHandles.lookup())
+                    .findConstructor(entityClass, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,12 @@
+package org.project.cache.model;
+
+public enum EvictionPolicy {
+
+    /** Desaloja la entrada usada hace mas tiempo */
+    LRU,
+    /** Desaloja la entrada que entro primero al nivel */
+    FIFO,
+    /** Desaloja la entrada con menos hits entre una muestra de las mas viejas */
+    LFU
+
+}
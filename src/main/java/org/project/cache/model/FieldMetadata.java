@@ -1,4 +1,143 @@
 package org.project.cache.model;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Campo persistente de una entidad: el atributo Java y la columna a la que se mapea.
+ * <p>
+ * El acceso al campo se resuelve una sola vez a {@link MethodHandle}s, sin pasar por
+ * {@link Field#get}/{@link Field#set} en cada llamada. Los campos primitivos ademas
+ * tienen setters tipados (setLong, setInt, ...) que no boxean el valor.
+ */
 public class FieldMetadata {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Field field;
+    private final String columnName;
+    private final boolean id;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final MethodHandle primitiveSetter;
+
+    public FieldMetadata(Field field, String columnName, boolean id) {
+        this.field = field;
+        this.columnName = columnName;
+        this.id = id;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+            MethodHandle rawSetter = lookup.unreflectSetter(field);
+            this.getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+            this.setter = rawSetter.asType(SETTER_TYPE);
+            this.primitiveSetter = field.getType().isPrimitive()
+                    ? rawSetter.asType(MethodType.methodType(void.class, Object.class, field.getType()))
+                    : null;
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access field " + field.getName(), e);
+        }
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    public boolean isId() {
+        return id;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Object getValue(Object entity) {
+        try {
+            return (Object) getter.invokeExact(entity);
+        } catch (Throwable t) {
+            throw this.accessFailure(t);
+        }
+    }
+
+    public void setValue(Object entity, Object value) {
+        try {
+            setter.invokeExact(entity, value);
+        } catch (Throwable t) {
+            throw this.accessFailure(t);
+        }
+    }
+
+    // Setters sin boxing; solo para campos del primitivo correspondiente
+
+    public void setLong(Object entity, long value) {
+        try {
+            primitiveSetter.invokeExact(entity, value);
+        } catch (Throwable t) {
+            throw this.accessFailure(t);
+        }
+    }
+
+    public void setInt(Object entity, int value) {
+        try {
+            primitiveSetter.invokeExact(entity, value);
+        } catch (Throwable t) {
+            throw this.accessFailure(t);
+        }
+    }
+
+    public void setShort(Object entity, short value) {
+        try {
+            primitiveSetter.invokeExact(entity, value);
+        } catch (Throwable t) {
+            throw this.accessFailure(t);
+        }
+    }
+
+    public void setByte(Object entity, byte value) {
+        try {
+            primitiveSetter.invokeExact(entity, value);
+        } catch (Throwable t) {
+            throw this.accessFailure(t);
+        }
+    }
+
+    public void setDouble(Object entity, double value) {
+        try {
+            primitiveSetter.invokeExact(entity, value);
+        } catch (Throwable t) {
+            throw this.accessFailure(t);
+        }
+    }
+
+    public void setFloat(Object entity, float value) {
+        try {
+            primitiveSetter.invokeExact(entity, value);
+        } catch (Throwable t) {
+            throw this.accessFailure(t);
+        }
+    }
+
+    public void setBoolean(Object entity, boolean value) {
+        try {
+            primitiveSetter.invokeExact(entity, value);
+        } catch (Throwable t) {
+            throw this.accessFailure(t);
+        }
+    }
+
+    private RuntimeException accessFailure(Throwable t) {
+        if (t instanceof RuntimeException runtime) return runtime;
+        if (t instanceof Error error) throw error;
+        return new IllegalStateException("Cannot access field " + field.getName(), t);
+    }
 }
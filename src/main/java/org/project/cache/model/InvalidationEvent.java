@@ -0,0 +1,46 @@
+package org.project.cache.model;
+
+/**
+ * Cambio en el cache de un nodo que los demas nodos tienen que replicar invalidando.
+ * Las clases viajan por nombre; el id solo si es un entero, un String o un UUID.
+ *
+ * @param kind que se invalida
+ * @param name nombre de la clase (ENTITY, ENTITY_TYPE), de la tabla (TABLE) o el texto de
+ *             la consulta (QUERY); null en CLEAR_ALL
+ * @param id   id de la entidad en ENTITY; null en el resto
+ */
+public record InvalidationEvent(Kind kind, String name, Object id) {
+
+    public enum Kind {
+        /** Una entidad */
+        ENTITY,
+        /** Todas las entidades de una clase */
+        ENTITY_TYPE,
+        /** Las consultas que leen una tabla */
+        TABLE,
+        /** Los resultados de una consulta */
+        QUERY,
+        /** Todo el cache */
+        CLEAR_ALL
+    }
+
+    public static InvalidationEvent entity(Class<?> entityClass, Object id) {
+        return new InvalidationEvent(Kind.ENTITY, entityClass.getName(), id);
+    }
+
+    public static InvalidationEvent entityType(Class<?> entityClass) {
+        return new InvalidationEvent(Kind.ENTITY_TYPE, entityClass.getName(), null);
+    }
+
+    public static InvalidationEvent table(String tableName) {
+        return new InvalidationEvent(Kind.TABLE, tableName, null);
+    }
+
+    public static InvalidationEvent query(String query) {
+        return new InvalidationEvent(Kind.QUERY, query, null);
+    }
+
+    public static InvalidationEvent clearAll() {
+        return new InvalidationEvent(Kind.CLEAR_ALL, null, null);
+    }
+}
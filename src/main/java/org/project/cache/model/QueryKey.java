@@ -0,0 +1,27 @@
+package org.project.cache.model;
+
+import java.util.Arrays;
+
+/**
+ * Clave de un resultado de consulta: el SQL y sus parametros. Los parametros se comparan
+ * uno por uno con su tipo, asi "1" y 1 son claves distintas, y los arreglos por contenido.
+ */
+public record QueryKey(String sql, Object[] parameters) {
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof QueryKey that)) return false;
+        return sql.equals(that.sql) && Arrays.deepEquals(parameters, that.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sql.hashCode() + Arrays.deepHashCode(parameters);
+    }
+
+    @Override
+    public String toString() {
+        return parameters.length == 0 ? sql : sql + " " + Arrays.deepToString(parameters);
+    }
+}
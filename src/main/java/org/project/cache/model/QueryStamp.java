@@ -0,0 +1,27 @@
+package org.project.cache.model;
+
+import java.util.Arrays;
+
+/**
+ * Versiones de las tablas leidas por una consulta, tomadas antes de ejecutarla.
+ * Un resultado cacheado es valido mientras ninguna de esas tablas cambie de version.
+ */
+public record QueryStamp(String[] tables, long[] versions) {
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof QueryStamp that)) return false;
+        return Arrays.equals(tables, that.tables) && Arrays.equals(versions, that.versions);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(tables) + Arrays.hashCode(versions);
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStamp" + Arrays.toString(tables) + Arrays.toString(versions);
+    }
+}
@@ -0,0 +1,14 @@
+package org.project.cache.model;
+
+public enum RemovalCause {
+
+    /** Invalidada por el usuario o por un cambio en la base */
+    EXPLICIT,
+    /** Pisada por un put sobre la misma clave */
+    REPLACED,
+    /** Desalojada del segundo nivel por peso */
+    SIZE,
+    /** Vencio su TTL */
+    EXPIRED
+
+}
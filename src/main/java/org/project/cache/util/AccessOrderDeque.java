@@ -0,0 +1,84 @@
+package org.project.cache.util;
+
+/**
+ * Lista doblemente enlazada intrusiva sobre {@link CacheEntry}.
+ * No es thread-safe: solo se usa con el lock de eviccion de {@link SmartCache}.
+ */
+final class AccessOrderDeque<K, V> {
+
+    private CacheEntry<K, V> first;
+    private CacheEntry<K, V> last;
+    private int size;
+
+    boolean contains(CacheEntry<K, V> entry) {
+        return entry.owner == this;
+    }
+
+    void addLast(CacheEntry<K, V> entry) {
+        entry.owner = this;
+        entry.prev = last;
+        entry.next = null;
+        if (last == null) first = entry;
+        else last.next = entry;
+        last = entry;
+        size++;
+    }
+
+    void moveToBack(CacheEntry<K, V> entry) {
+        if (entry == last) return;
+        unlink(entry);
+        addLast(entry);
+    }
+
+    void remove(CacheEntry<K, V> entry) {
+        if (contains(entry)) unlink(entry);
+    }
+
+    CacheEntry<K, V> peekFirst() {
+        return first;
+    }
+
+    CacheEntry<K, V> next(CacheEntry<K, V> entry) {
+        return entry.next;
+    }
+
+    CacheEntry<K, V> pollFirst() {
+        CacheEntry<K, V> entry = first;
+        if (entry != null) unlink(entry);
+        return entry;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        CacheEntry<K, V> entry = first;
+        while (entry != null) {
+            CacheEntry<K, V> next = entry.next;
+            entry.prev = null;
+            entry.next = null;
+            entry.owner = null;
+            entry = next;
+        }
+        first = null;
+        last = null;
+        size = 0;
+    }
+
+    private void unlink(CacheEntry<K, V> entry) {
+        CacheEntry<K, V> prev = entry.prev;
+        CacheEntry<K, V> next = entry.next;
+
+        if (prev == null) first = next;
+        else prev.next = next;
+
+        if (next == null) last = prev;
+        else next.prev = prev;
+
+        entry.prev = null;
+        entry.next = null;
+        entry.owner = null;
+        size--;
+    }
+}
@@ -0,0 +1,35 @@
+package org.project.cache.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de cada lectura de un {@link SmartCache}. Un hit tarda nanosegundos, asi que
+ * viene desactivado: se activa en la configuracion de la grabacion cuando hace falta.
+ */
+@Name("org.project.cache.Access")
+@Label("Cache Access")
+@Description("Lookup in a cache region")
+@Category({"Vertux ORM", "Cache"})
+@Enabled(false)
+@StackTrace(false)
+class CacheAccessEvent extends jdk.jfr.Event {
+
+    @Label("Region")
+    String region;
+
+    @Label("Outcome")
+    String outcome;
+
+    static void emit(String region, String outcome) {
+        CacheAccessEvent event = new CacheAccessEvent();
+        if (!event.isEnabled()) return;
+        event.region = region;
+        event.outcome = outcome;
+        event.commit();
+    }
+}
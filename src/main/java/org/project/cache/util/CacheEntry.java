@@ -0,0 +1,47 @@
+package org.project.cache.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entrada de {@link SmartCache}. La misma instancia se mueve entre niveles,
+ * los enlaces de las listas y del timer wheel solo se tocan con el lock de eviccion tomado.
+ */
+final class CacheEntry<K, V> {
+
+    final K key;
+    final V value;
+    final int weight;
+    final long expirationNanos;
+    final Object group;
+    private final AtomicInteger hitCount;
+
+    //Enlaces de la lista de acceso (protegidos por el lock de eviccion)
+    CacheEntry<K, V> prev;
+    CacheEntry<K, V> next;
+    AccessOrderDeque<K, V> owner;
+
+    //Enlaces del bucket del timer wheel (protegidos por el lock de eviccion)
+    CacheEntry<K, V> prevInTimer;
+    CacheEntry<K, V> nextInTimer;
+
+    CacheEntry(K key, V value, int weight, long expirationNanos, Object group) {
+        this.key = key;
+        this.value = value;
+        this.weight = weight;
+        this.expirationNanos = expirationNanos;
+        this.group = group;
+        this.hitCount = new AtomicInteger();
+    }
+
+    boolean isExpired(long now) {
+        return now >= expirationNanos;
+    }
+
+    int incrementHitCount() {
+        return hitCount.incrementAndGet();
+    }
+
+    int getHitCount() {
+        return hitCount.get();
+    }
+}
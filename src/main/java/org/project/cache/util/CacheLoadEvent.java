@@ -0,0 +1,35 @@
+package org.project.cache.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de una carga por miss en {@link SmartCache#get}, con lo que tardo el loader
+ */
+@Name("org.project.cache.Load")
+@Label("Cache Load")
+@Description("Value loaded into a cache region after a miss")
+@Category({"Vertux ORM", "Cache"})
+class CacheLoadEvent extends jdk.jfr.Event {
+
+    @Label("Region")
+    String region;
+
+    @Label("Found")
+    @Description("The loader returned a value")
+    boolean found;
+
+    @Label("Failed")
+    boolean failed;
+
+    void finish(String region, boolean found, boolean failed) {
+        this.end();
+        if (!this.shouldCommit()) return;
+        this.region = region;
+        this.found = found;
+        this.failed = failed;
+        this.commit();
+    }
+}
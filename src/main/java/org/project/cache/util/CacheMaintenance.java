@@ -0,0 +1,41 @@
+package org.project.cache.util;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hilo daemon compartido que corre el mantenimiento de cada {@link SmartCache}
+ * periodicamente, para que lo vencido se libere aunque el cache no reciba escrituras.
+ * Los caches se referencian debilmente: si uno deja de usarse, su tarea se cancela sola.
+ */
+final class CacheMaintenance {
+
+    private static final long PERIOD_MILLIS = 1000;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "smart-cache-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CacheMaintenance() {}
+
+    static void register(SmartCache<?, ?> cache) {
+        WeakReference<SmartCache<?, ?>> reference = new WeakReference<>(cache);
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+
+        task.set(scheduler.scheduleWithFixedDelay(() -> {
+            SmartCache<?, ?> target = reference.get();
+            if (target == null) {
+                ScheduledFuture<?> future = task.get();
+                if (future != null) future.cancel(false);
+                return;
+            }
+            target.cleanExpiredEntries();
+        }, PERIOD_MILLIS, PERIOD_MILLIS, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,135 @@
+package org.project.cache.util;
+
+import org.project.cache.model.RemovalCause;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de un {@link SmartCache}. Todos son {@link LongAdder}: registrar es barato
+ * bajo contencion y leer un snapshot no recorre las entradas del cache.
+ * <p>
+ * Cada hit y miss tambien se emite como {@link CacheAccessEvent} de JFR con el nombre de
+ * la region, si el evento esta activado.
+ */
+public class CacheMetrics {
+
+    private final LongAdder firstLevelHits = new LongAdder();
+    private final LongAdder secondLevelHits = new LongAdder();
+    private final LongAdder offHeapHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+    private final LongAdder[] removals;
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+    private volatile String region = "unnamed";
+
+    public CacheMetrics() {
+        this.removals = new LongAdder[RemovalCause.values().length];
+        for (int i = 0; i < removals.length; i++) {
+            removals[i] = new LongAdder();
+        }
+    }
+
+    String region() {
+        return region;
+    }
+
+    void setRegion(String region) {
+        this.region = region;
+    }
+
+    void recordFirstLevelHit() {
+        firstLevelHits.increment();
+        CacheAccessEvent.emit(region, "L1_HIT");
+    }
+
+    void recordSecondLevelHit() {
+        secondLevelHits.increment();
+        CacheAccessEvent.emit(region, "L2_HIT");
+    }
+
+    void recordOffHeapHit() {
+        offHeapHits.increment();
+        CacheAccessEvent.emit(region, "OFF_HEAP_HIT");
+    }
+
+    void recordMiss() {
+        misses.increment();
+        CacheAccessEvent.emit(region, "MISS");
+    }
+
+    void recordLoadSuccess(long nanos) {
+        loadSuccesses.increment();
+        loadLatency.record(nanos);
+    }
+
+    void recordLoadFailure(long nanos) {
+        loadFailures.increment();
+        loadLatency.record(nanos);
+    }
+
+    void recordDemotion() {
+        demotions.increment();
+    }
+
+    void recordRemoval(RemovalCause cause) {
+        removals[cause.ordinal()].increment();
+    }
+
+    long firstLevelHits() {
+        return firstLevelHits.sum();
+    }
+
+    long secondLevelHits() {
+        return secondLevelHits.sum();
+    }
+
+    public Snapshot snapshot() {
+        Map<RemovalCause, Long> removalCounts = new EnumMap<>(RemovalCause.class);
+        for (RemovalCause cause : RemovalCause.values()) {
+            removalCounts.put(cause, removals[cause.ordinal()].sum());
+        }
+        return new Snapshot(
+                firstLevelHits.sum(),
+                secondLevelHits.sum(),
+                offHeapHits.sum(),
+                misses.sum(),
+                loadSuccesses.sum(),
+                loadFailures.sum(),
+                demotions.sum(),
+                removalCounts,
+                loadLatency.snapshot()
+        );
+    }
+
+    public record Snapshot(long firstLevelHits,
+                           long secondLevelHits,
+                           long offHeapHits,
+                           long misses,
+                           long loadSuccesses,
+                           long loadFailures,
+                           long demotions,
+                           Map<RemovalCause, Long> removals,
+                           LatencyHistogram.Snapshot loadLatency) {
+
+        public long hits() {
+            return firstLevelHits + secondLevelHits + offHeapHits;
+        }
+
+        public double hitRatio() {
+            long requests = hits() + misses;
+            return requests == 0 ? 1.0 : (double) hits() / requests;
+        }
+
+        public long evictions(RemovalCause cause) {
+            return removals.getOrDefault(cause, 0L);
+        }
+
+        public double averageLoadPenaltyNanos() {
+            return loadLatency.meanNanos();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.project.cache.util;
+
+import org.project.cache.model.EntityMetadata;
+import org.project.cache.model.FieldMetadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Formato binario compacto de una entidad, derivado de su {@link EntityMetadata}.
+ * <p>
+ * Se escribe un bitmap de nulls seguido de los campos no nulos en orden de declaracion,
+ * sin nombres ni tipos: el formato solo lo puede leer el mismo codec que lo escribio.
+ * Solo se soportan campos de tipos simples (primitivos y sus wrappers, String, numeros
+ * de precision arbitraria, UUID, fechas de java.time, enums y byte[]).
+ */
+public final class EntityCodec {
+
+    private enum Kind {
+        BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE,
+        STRING, BIG_DECIMAL, BIG_INTEGER, UUID, LOCAL_DATE, LOCAL_TIME, LOCAL_DATE_TIME, INSTANT, ENUM, BYTES
+    }
+
+    private final EntityMetadata metadata;
+    private final FieldMetadata[] fields;
+    private final Kind[] kinds;
+    private final int bitmapBytes;
+
+    private EntityCodec(EntityMetadata metadata, FieldMetadata[] fields, Kind[] kinds) {
+        this.metadata = metadata;
+        this.fields = fields;
+        this.kinds = kinds;
+        this.bitmapBytes = (fields.length + 7) >>> 3;
+    }
+
+    /**
+     * @return el codec de la entidad, o null si tiene algun campo de un tipo no soportado
+     *         o no se puede instanciar
+     */
+    public static EntityCodec forMetadata(EntityMetadata metadata) {
+        if (!metadata.isInstantiable()) return null;
+
+        List<FieldMetadata> fieldList = metadata.getFields();
+        FieldMetadata[] fields = fieldList.toArray(new FieldMetadata[0]);
+        Kind[] kinds = new Kind[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            kinds[i] = kindOf(fields[i].getType());
+            if (kinds[i] == null) return null;
+        }
+        return new EntityCodec(metadata, fields, kinds);
+    }
+
+    public Class<?> getEntityClass() {
+        return metadata.getEntityClass();
+    }
+
+    public byte[] encode(Object entity) {
+        Object[] values = new Object[fields.length];
+        byte[] nulls = new byte[bitmapBytes];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = fields[i].getValue(entity);
+            if (values[i] == null) nulls[i >>> 3] |= (byte) (1 << (i & 7));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.write(nulls);
+            for (int i = 0; i < fields.length; i++) {
+                if (values[i] != null) this.write(out, kinds[i], values[i]);
+            }
+        } catch (IOException e) {
+            //ByteArrayOutputStream no lanza IOException
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Object decode(ByteBuffer in) {
+        byte[] nulls = new byte[bitmapBytes];
+        in.get(nulls);
+
+        Object entity = metadata.newInstance();
+        for (int i = 0; i < fields.length; i++) {
+            if ((nulls[i >>> 3] & (1 << (i & 7))) != 0) continue;
+            fields[i].setValue(entity, this.read(in, kinds[i], fields[i].getType()));
+        }
+        return entity;
+    }
+
+    private void write(DataOutputStream out, Kind kind, Object value) throws IOException {
+        switch (kind) {
+            case BOOLEAN -> out.writeBoolean((Boolean) value);
+            case BYTE -> out.writeByte((Byte) value);
+            case SHORT -> out.writeShort((Short) value);
+            case CHAR -> out.writeChar((Character) value);
+            case INT -> out.writeInt((Integer) value);
+            case LONG -> out.writeLong((Long) value);
+            case FLOAT -> out.writeFloat((Float) value);
+            case DOUBLE -> out.writeDouble((Double) value);
+            case STRING -> writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+            case BIG_DECIMAL -> {
+                BigDecimal decimal = (BigDecimal) value;
+                out.writeInt(decimal.scale());
+                writeBytes(out, decimal.unscaledValue().toByteArray());
+            }
+            case BIG_INTEGER -> writeBytes(out, ((BigInteger) value).toByteArray());
+            case UUID -> {
+                UUID uuid = (UUID) value;
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+            case LOCAL_DATE -> out.writeLong(((LocalDate) value).toEpochDay());
+            case LOCAL_TIME -> out.writeLong(((LocalTime) value).toNanoOfDay());
+            case LOCAL_DATE_TIME -> {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                out.writeLong(dateTime.toLocalDate().toEpochDay());
+                out.writeLong(dateTime.toLocalTime().toNanoOfDay());
+            }
+            case INSTANT -> {
+                Instant instant = (Instant) value;
+                out.writeLong(instant.getEpochSecond());
+                out.writeInt(instant.getNano());
+            }
+            //Por nombre y no por ordinal, asi reordenar las constantes no corrompe lo guardado
+            case ENUM -> writeBytes(out, ((Enum<?>) value).name().getBytes(StandardCharsets.UTF_8));
+            case BYTES -> writeBytes(out, (byte[]) value);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object read(ByteBuffer in, Kind kind, Class<?> type) {
+        return switch (kind) {
+            case BOOLEAN -> in.get() != 0;
+            case BYTE -> in.get();
+            case SHORT -> in.getShort();
+            case CHAR -> in.getChar();
+            case INT -> in.getInt();
+            case LONG -> in.getLong();
+            case FLOAT -> in.getFloat();
+            case DOUBLE -> in.getDouble();
+            case STRING -> new String(readBytes(in), StandardCharsets.UTF_8);
+            case BIG_DECIMAL -> {
+                int scale = in.getInt();
+                yield new BigDecimal(new BigInteger(readBytes(in)), scale);
+            }
+            case BIG_INTEGER -> new BigInteger(readBytes(in));
+            case UUID -> new UUID(in.getLong(), in.getLong());
+            case LOCAL_DATE -> LocalDate.ofEpochDay(in.getLong());
+            case LOCAL_TIME -> LocalTime.ofNanoOfDay(in.getLong());
+            case LOCAL_DATE_TIME -> LocalDateTime.of(LocalDate.ofEpochDay(in.getLong()), LocalTime.ofNanoOfDay(in.getLong()));
+            case INSTANT -> Instant.ofEpochSecond(in.getLong(), in.getInt());
+            case ENUM -> Enum.valueOf((Class) type, new String(readBytes(in), StandardCharsets.UTF_8));
+            case BYTES -> readBytes(in);
+        };
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static Kind kindOf(Class<?> type) {
+        if (type == boolean.class || type == Boolean.class) return Kind.BOOLEAN;
+        if (type == byte.class || type == Byte.class) return Kind.BYTE;
+        if (type == short.class || type == Short.class) return Kind.SHORT;
+        if (type == char.class || type == Character.class) return Kind.CHAR;
+        if (type == int.class || type == Integer.class) return Kind.INT;
+        if (type == long.class || type == Long.class) return Kind.LONG;
+        if (type == float.class || type == Float.class) return Kind.FLOAT;
+        if (type == double.class || type == Double.class) return Kind.DOUBLE;
+        if (type == String.class) return Kind.STRING;
+        if (type == BigDecimal.class) return Kind.BIG_DECIMAL;
+        if (type == BigInteger.class) return Kind.BIG_INTEGER;
+        if (type == UUID.class) return Kind.UUID;
+        if (type == LocalDate.class) return Kind.LOCAL_DATE;
+        if (type == LocalTime.class) return Kind.LOCAL_TIME;
+        if (type == LocalDateTime.class) return Kind.LOCAL_DATE_TIME;
+        if (type == Instant.class) return Kind.INSTANT;
+        if (type.isEnum()) return Kind.ENUM;
+        if (type == byte[].class) return Kind.BYTES;
+        return null;
+    }
+}
@@ -0,0 +1,335 @@
+package org.project.cache.util;
+
+import org.project.cache.interfaces.InvalidationTransport;
+import org.project.cache.model.InvalidationEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ByteArrayInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publica las invalidaciones locales a los demas nodos y aplica las que llegan.
+ * <p>
+ * Los eventos se juntan y se envian cada flushInterval (o antes si se acumulan muchos),
+ * coalescidos: un evento repetido va una vez, invalidar una clase absorbe las entidades de
+ * esa clase y un CLEAR_ALL absorbe todo. Cada lote se parte en mensajes que entran en el
+ * transporte. Los mensajes llevan el id del nodo, asi los propios se ignoran al volver.
+ * <p>
+ * Del lado que recibe, todos los eventos de un mensaje se aplican juntos con el applier.
+ */
+public class InvalidationBus implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(InvalidationBus.class.getName());
+
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(10);
+
+    //Con tantos eventos pendientes se envia sin esperar el intervalo
+    private static final int MAX_PENDING = 4096;
+
+    private static final byte FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 1 + 16 + 4;
+
+    private static final byte ID_NONE = 0;
+    private static final byte ID_LONG = 1;
+    private static final byte ID_STRING = 2;
+    private static final byte ID_UUID = 3;
+
+    private static final InvalidationEvent.Kind[] KINDS = InvalidationEvent.Kind.values();
+
+    private final InvalidationTransport transport;
+    private final Consumer<Collection<InvalidationEvent>> applier;
+    private final long flushIntervalNanos;
+    private final UUID nodeId;
+    private final ReentrantLock lock;
+    private final Set<InvalidationEvent> pending;
+    private final Set<String> pendingTypes;
+    private boolean pendingClear;
+    private final ScheduledExecutorService flusher;
+    private final AtomicLong publishedEvents;
+    private final AtomicLong receivedEvents;
+
+    public InvalidationBus(InvalidationTransport transport, Consumer<Collection<InvalidationEvent>> applier) {
+        this(transport, applier, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param applier aplica los eventos recibidos de otro nodo, sin volver a publicarlos
+     */
+    public InvalidationBus(InvalidationTransport transport, Consumer<Collection<InvalidationEvent>> applier,
+                           Duration flushInterval) {
+        this.transport = transport;
+        this.applier = applier;
+        this.flushIntervalNanos = Math.max(1, flushInterval.toNanos());
+        this.nodeId = UUID.randomUUID();
+        this.lock = new ReentrantLock();
+        this.pending = new LinkedHashSet<>();
+        this.pendingTypes = new HashSet<>();
+        this.publishedEvents = new AtomicLong();
+        this.receivedEvents = new AtomicLong();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() throws IOException {
+        transport.start(this::receive);
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalNanos, flushIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Encola el evento para el proximo envio
+     */
+    public void publish(InvalidationEvent event) {
+        InvalidationEvent portable = portable(event);
+        boolean full;
+        lock.lock();
+        try {
+            if (pendingClear) return;
+            switch (portable.kind()) {
+                case CLEAR_ALL -> {
+                    pending.clear();
+                    pendingTypes.clear();
+                    pendingClear = true;
+                    pending.add(portable);
+                }
+                case ENTITY_TYPE -> {
+                    if (pendingTypes.add(portable.name())) {
+                        pending.removeIf(e -> e.kind() == InvalidationEvent.Kind.ENTITY && e.name().equals(portable.name()));
+                        pending.add(portable);
+                    }
+                }
+                case ENTITY -> {
+                    if (!pendingTypes.contains(portable.name())) pending.add(portable);
+                }
+                default -> pending.add(portable);
+            }
+            full = pending.size() >= MAX_PENDING;
+        } finally {
+            lock.unlock();
+        }
+
+        if (full) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException ignored) {
+                //Cerrando: close() hace el ultimo envio
+            }
+        }
+    }
+
+    /**
+     * Envia ya lo pendiente. Un envio fallido se reporta y se descarta: los otros nodos
+     * conservan esas entradas hasta su TTL.
+     */
+    public void flush() {
+        List<InvalidationEvent> batch;
+        lock.lock();
+        try {
+            if (pending.isEmpty()) return;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            pendingTypes.clear();
+            pendingClear = false;
+        } finally {
+            lock.unlock();
+        }
+
+        for (byte[] message : this.encode(batch)) {
+            try {
+                transport.send(message);
+            } catch (IOException | RuntimeException e) {
+                log.log(Level.WARNING, "Failed to send cache invalidations", e);
+            }
+        }
+        publishedEvents.addAndGet(batch.size());
+    }
+
+    /**
+     * Para el flusher programado: una excepcion que escapa cancela las ejecuciones
+     * siguientes del ScheduledExecutorService, asi que se reporta y se sigue.
+     */
+    private void flushQuietly() {
+        try {
+            this.flush();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Failed to flush cache invalidations", e);
+        }
+    }
+
+    public long getPublishedEvents() {
+        return publishedEvents.get();
+    }
+
+    public long getReceivedEvents() {
+        return receivedEvents.get();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        this.flush();
+        transport.close();
+    }
+
+    private void receive(byte[] message) {
+        List<InvalidationEvent> events;
+        try {
+            events = this.decode(message);
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Discarding malformed cache invalidation message", e);
+            return;
+        }
+        if (events == null || events.isEmpty()) return;
+
+        receivedEvents.addAndGet(events.size());
+        try {
+            applier.accept(events);
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Failed to apply cache invalidations", e);
+        }
+    }
+
+    /**
+     * Un id que no se puede transmitir se reemplaza por la invalidacion de toda la clase
+     */
+    private static InvalidationEvent portable(InvalidationEvent event) {
+        if (event.kind() != InvalidationEvent.Kind.ENTITY) return event;
+        Object id = event.id();
+        boolean integral = id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte;
+        if (integral || id instanceof String || id instanceof UUID) return event;
+        return new InvalidationEvent(InvalidationEvent.Kind.ENTITY_TYPE, event.name(), null);
+    }
+
+    // Formato: version, nodo, cantidad de eventos y cada evento (tipo, nombre, id)
+
+    private List<byte[]> encode(List<InvalidationEvent> batch) {
+        int maxBytes = transport.maxMessageBytes();
+        List<byte[]> messages = new ArrayList<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int count = 0;
+
+        for (InvalidationEvent event : batch) {
+            byte[] encoded = encodeEvent(event);
+            if (HEADER_BYTES + encoded.length > maxBytes) {
+                log.warning("Cache invalidation too large to send: " + event.kind() + " " + event.name());
+                continue;
+            }
+            if (HEADER_BYTES + body.size() + encoded.length > maxBytes) {
+                messages.add(this.message(count, body));
+                body.reset();
+                count = 0;
+            }
+            body.writeBytes(encoded);
+            count++;
+        }
+        if (count > 0) messages.add(this.message(count, body));
+        return messages;
+    }
+
+    private byte[] message(int count, ByteArrayOutputStream body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES + body.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(nodeId.getMostSignificantBits());
+            out.writeLong(nodeId.getLeastSignificantBits());
+            out.writeInt(count);
+            body.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeEvent(InvalidationEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(event.kind().ordinal());
+            out.writeBoolean(event.name() != null);
+            if (event.name() != null) writeString(out, event.name());
+
+            Object id = event.id();
+            if (id == null) {
+                out.writeByte(ID_NONE);
+            } else if (id instanceof String string) {
+                out.writeByte(ID_STRING);
+                writeString(out, string);
+            } else if (id instanceof UUID uuid) {
+                out.writeByte(ID_UUID);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            } else {
+                //Enteros: las claves de entidad los normalizan a long
+                out.writeByte(ID_LONG);
+                out.writeLong(((Number) id).longValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Largo en bytes y UTF-8: writeUTF no admite mas de 65535 bytes ni codifica como UTF-8 estandar
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) throw new IOException("Bad string length " + length);
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return los eventos, o null si el mensaje es de este nodo o de otra version
+     */
+    private List<InvalidationEvent> decode(byte[] message) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+        if (in.readByte() != FORMAT_VERSION) return null;
+        if (in.readLong() == nodeId.getMostSignificantBits() & in.readLong() == nodeId.getLeastSignificantBits()) {
+            return null;
+        }
+
+        int count = in.readInt();
+        List<InvalidationEvent> events = new ArrayList<>(Math.min(count, MAX_PENDING));
+        for (int i = 0; i < count; i++) {
+            InvalidationEvent.Kind kind = KINDS[in.readUnsignedByte()];
+            String name = in.readBoolean() ? readString(in) : null;
+            Object id = switch (in.readByte()) {
+                case ID_NONE -> null;
+                case ID_LONG -> in.readLong();
+                case ID_STRING -> readString(in);
+                case ID_UUID -> new UUID(in.readLong(), in.readLong());
+                default -> throw new IOException("Unknown id tag");
+            };
+            events.add(new InvalidationEvent(kind, name, id));
+        }
+        return events;
+    }
+}
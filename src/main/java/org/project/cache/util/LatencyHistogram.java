@@ -0,0 +1,80 @@
+package org.project.cache.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias con buckets en potencias de dos. Registrar un valor es un
+ * incremento de {@link LongAdder}, sin locks ni allocations, asi puede quedar siempre activo.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] counts;
+    private final LongAdder totalNanos;
+
+    public LatencyHistogram() {
+        this.counts = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+        this.totalNanos = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        int bucket = nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+        counts[bucket].increment();
+        totalNanos.add(nanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+        }
+        return new Snapshot(snapshot, totalNanos.sum());
+    }
+
+    public void reset() {
+        for (LongAdder count : counts) {
+            count.reset();
+        }
+        totalNanos.reset();
+    }
+
+    /**
+     * @param counts cantidad de muestras por bucket; el bucket i cubre [2^i, 2^(i+1)) nanos
+     */
+    public record Snapshot(long[] counts, long totalNanos) {
+
+        public long count() {
+            long total = 0;
+            for (long count : counts) total += count;
+            return total;
+        }
+
+        public double meanNanos() {
+            long count = count();
+            return count == 0 ? 0.0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Cota superior del bucket donde cae el percentil pedido (entre 0 y 1).
+         */
+        public long percentileNanos(double percentile) {
+            long count = count();
+            if (count == 0) return 0;
+
+            long threshold = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(threshold, 1)) {
+                    return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
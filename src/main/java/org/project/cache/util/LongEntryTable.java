@@ -0,0 +1,136 @@
+package org.project.cache.util;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Tabla hash de direccionamiento abierto de long a {@link CacheEntry}, sin boxing.
+ * Las lecturas son optimistas (StampedLock) y no alocan; las escrituras toman el lock
+ * exclusivo. Las bajas usan borrado por desplazamiento, sin tombstones.
+ */
+final class LongEntryTable<K, V> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    LongEntryTable() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+    }
+
+    CacheEntry<K, V> get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        CacheEntry<K, V> entry = find(keys, values, key);
+        if (lock.validate(stamp)) return entry;
+
+        stamp = lock.readLock();
+        try {
+            return find(keys, values, key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void put(long key, CacheEntry<K, V> entry) {
+        long stamp = lock.writeLock();
+        try {
+            if ((size + 1) * 2 > keys.length) this.resize();
+            int mask = keys.length - 1;
+            int index = spread(key) & mask;
+            while (values[index] != null) {
+                if (keys[index] == key) {
+                    values[index] = entry;
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = entry;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Quita la clave solo si todavia apunta a la entrada indicada.
+     */
+    void remove(long key, CacheEntry<K, V> expected) {
+        long stamp = lock.writeLock();
+        try {
+            int mask = keys.length - 1;
+            int index = spread(key) & mask;
+            while (values[index] != null) {
+                if (keys[index] == key) {
+                    if (values[index] == expected) this.deleteAt(index);
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> CacheEntry<K, V> find(long[] keys, Object[] values, long key) {
+        //keys y values pueden ser de versiones distintas durante un resize; validate lo detecta
+        int mask = Math.min(keys.length, values.length) - 1;
+        int index = spread(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            Object value = values[index];
+            if (value == null) return null;
+            if (keys[index] == key) return (CacheEntry<K, V>) value;
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private void deleteAt(int index) {
+        int mask = keys.length - 1;
+        values[index] = null;
+        size--;
+
+        //Desplazar hacia atras las claves que quedaron despues del hueco
+        int next = (index + 1) & mask;
+        while (values[next] != null) {
+            int home = spread(keys[next]) & mask;
+            boolean shift = index <= next ? (home <= index || home > next) : (home <= index && home > next);
+            if (shift) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                values[next] = null;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        long[] newKeys = new long[oldKeys.length * 2];
+        Object[] newValues = new Object[oldValues.length * 2];
+        int mask = newKeys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+            int index = spread(oldKeys[i]) & mask;
+            while (newValues[index] != null) {
+                index = (index + 1) & mask;
+            }
+            newKeys[index] = oldKeys[i];
+            newValues[index] = oldValues[i];
+        }
+        this.keys = newKeys;
+        this.values = newValues;
+    }
+
+    private static int spread(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,118 @@
+package org.project.cache.util;
+
+import org.project.cache.interfaces.InvalidationTransport;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Transporte por UDP multicast: cada nodo se une al grupo y recibe lo que envian todos,
+ * incluido lo propio. Sin confirmaciones ni reintentos; sirve para una red local donde
+ * perder un mensaje solo deja una entrada vieja hasta su TTL.
+ */
+public class MulticastInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger log = Logger.getLogger(MulticastInvalidationTransport.class.getName());
+
+    //Debajo del maximo de un datagrama UDP (65507)
+    public static final int MAX_MESSAGE_BYTES = 60_000;
+
+    private final InetSocketAddress group;
+    private final NetworkInterface networkInterface;
+    private final int timeToLive;
+    private MulticastSocket socket;
+    private Thread receiver;
+    private volatile boolean closed;
+
+    public MulticastInvalidationTransport(String groupAddress, int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getByName(groupAddress), port), null, 1);
+    }
+
+    /**
+     * @param networkInterface interfaz por la que se une al grupo, o null para la del sistema
+     * @param timeToLive       saltos que puede dar un mensaje; 1 no sale de la red local
+     */
+    public MulticastInvalidationTransport(InetSocketAddress group, NetworkInterface networkInterface, int timeToLive) {
+        if (!group.getAddress().isMulticastAddress()) {
+            throw new IllegalArgumentException("Not a multicast address: " + group.getAddress());
+        }
+        this.group = group;
+        this.networkInterface = networkInterface;
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public synchronized void start(Consumer<byte[]> receiver) throws IOException {
+        if (socket != null) throw new IllegalStateException("Transport already started");
+
+        MulticastSocket socket = new MulticastSocket(group.getPort());
+        try {
+            socket.setTimeToLive(timeToLive);
+            if (networkInterface != null) socket.setNetworkInterface(networkInterface);
+            socket.joinGroup(group, networkInterface);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        this.socket = socket;
+
+        this.receiver = new Thread(() -> this.receive(socket, receiver), "cache-invalidation-receiver");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+
+    @Override
+    public void send(byte[] message) throws IOException {
+        MulticastSocket socket = this.socket;
+        if (socket == null) throw new IllegalStateException("Transport not started");
+        if (message.length > MAX_MESSAGE_BYTES) {
+            throw new IllegalArgumentException("Message exceeds " + MAX_MESSAGE_BYTES + " bytes: " + message.length);
+        }
+        socket.send(new DatagramPacket(message, message.length, group));
+    }
+
+    @Override
+    public int maxMessageBytes() {
+        return MAX_MESSAGE_BYTES;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        if (socket == null) return;
+        try {
+            socket.leaveGroup(group, networkInterface);
+        } catch (IOException ignored) {
+            //Se cierra igual
+        }
+        socket.close();
+    }
+
+    private void receive(MulticastSocket socket, Consumer<byte[]> receiver) {
+        byte[] buffer = new byte[65_535];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (!closed) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                receiver.accept(Arrays.copyOfRange(buffer, packet.getOffset(), packet.getOffset() + packet.getLength()));
+            } catch (SocketException e) {
+                //El socket se cerro en close()
+                if (!closed) log.log(Level.WARNING, "Cache invalidation socket failed", e);
+                return;
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to receive cache invalidations", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.project.cache.util;
+
+import org.project.cache.interfaces.ValueCodec;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Nivel de cache fuera del heap. Los valores se guardan serializados con un
+ * {@link ValueCodec} en slabs de memoria directa, asi no cuentan para el GC; en el heap
+ * solo quedan las claves y un indice con la ubicacion de cada valor.
+ * <p>
+ * Los slabs se escriben como un log circular: cuando el actual se llena se pasa al
+ * siguiente y lo que tenia se desaloja entero (FIFO por slab). Cada slab tiene una
+ * generacion que se incrementa al reciclarlo; una lectura copia los bytes y despues
+ * verifica la generacion, asi nunca decodifica un valor a medio sobrescribir. Las
+ * lecturas no toman lock; las escrituras y bajas se serializan con uno.
+ * <p>
+ * La capacidad se fija en bytes. La memoria directa se reserva por slab a medida que
+ * se usa y cuenta contra -XX:MaxDirectMemorySize.
+ */
+public class OffHeapStore<K, V> {
+
+    private static final int MIN_SLAB_SIZE = 64 * 1024;
+    private static final int MAX_SLAB_SIZE = 16 * 1024 * 1024;
+    private static final int TARGET_SLABS = 16;
+
+    private final ValueCodec<K, V> codec;
+    private final int slabSize;
+    private final ByteBuffer[] slabs;
+    private final List<K>[] slabKeys;
+    private final AtomicIntegerArray generations;
+    private final ConcurrentHashMap<K, Location> index;
+    private final ConcurrentHashMap<Object, Set<K>> groups;
+    private final ReentrantLock writeLock;
+    private final LongAdder evictions;
+    private int currentSlab;
+    private int writeOffset;
+    private long usedBytes;
+
+    /**
+     * Ubicacion de un valor. La generacion es la del slab al momento de escribirlo.
+     */
+    record Location(int slab, int offset, int length, int generation, long expirationNanos, Object group) {}
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public OffHeapStore(long capacityBytes, ValueCodec<K, V> codec) {
+        if (capacityBytes <= 0) throw new IllegalArgumentException("capacityBytes must be positive");
+        this.codec = codec;
+        this.slabSize = (int) Math.max(MIN_SLAB_SIZE, Math.min(MAX_SLAB_SIZE, capacityBytes / TARGET_SLABS));
+        int slabCount = (int) Math.max(2, (capacityBytes + slabSize - 1) / slabSize);
+        this.slabs = new ByteBuffer[slabCount];
+        this.slabKeys = new List[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            slabKeys[i] = new ArrayList<>();
+        }
+        this.generations = new AtomicIntegerArray(slabCount);
+        this.index = new ConcurrentHashMap<>();
+        this.groups = new ConcurrentHashMap<>();
+        this.writeLock = new ReentrantLock();
+        this.evictions = new LongAdder();
+        this.slabs[0] = ByteBuffer.allocateDirect(slabSize);
+    }
+
+    /**
+     * Guarda el valor serializado, reemplazando el que hubiera para la clave.
+     *
+     * @return false si el codec no soporta el valor o no entra en un slab
+     */
+    public boolean store(K key, V value, long expirationNanos, Object group) {
+        byte[] bytes = codec.encode(key, value);
+        if (bytes == null || bytes.length > slabSize) return false;
+
+        writeLock.lock();
+        try {
+            if (writeOffset + bytes.length > slabSize) this.advanceSlab();
+
+            int offset = writeOffset;
+            slabs[currentSlab].put(offset, bytes);
+            writeOffset += bytes.length;
+            slabKeys[currentSlab].add(key);
+
+            Location location = new Location(currentSlab, offset, bytes.length,
+                    generations.get(currentSlab), expirationNanos, group);
+            Location previous = index.put(key, location);
+            if (previous != null) this.released(key, previous);
+            if (group != null) groups.computeIfAbsent(group, g -> ConcurrentHashMap.newKeySet()).add(key);
+            usedBytes += bytes.length;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Ubicacion actual de la clave, o null. No toma lock.
+     */
+    Location find(K key) {
+        return index.get(key);
+    }
+
+    /**
+     * Lee y decodifica el valor de una ubicacion. Devuelve null si el slab se reciclo
+     * mientras tanto.
+     */
+    V read(K key, Location location) {
+        byte[] bytes = new byte[location.length()];
+        slabs[location.slab()].get(location.offset(), bytes);
+
+        //La copia tiene que terminar antes de leer la generacion
+        VarHandle.loadLoadFence();
+        if (generations.get(location.slab()) != location.generation()) return null;
+        return codec.decode(key, ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Quita la clave solo si sigue en esa ubicacion.
+     */
+    boolean remove(K key, Location location) {
+        if (index.get(key) != location) return false;
+        writeLock.lock();
+        try {
+            if (!index.remove(key, location)) return false;
+            this.released(key, location);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean remove(K key) {
+        if (!index.containsKey(key)) return false;
+        writeLock.lock();
+        try {
+            Location location = index.remove(key);
+            if (location == null) return false;
+            this.released(key, location);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void removeGroup(Object group) {
+        Set<K> keys = groups.get(group);
+        if (keys == null) return;
+        for (Object key : keys.toArray()) {
+            @SuppressWarnings("unchecked")
+            K typed = (K) key;
+            this.remove(typed);
+        }
+    }
+
+    /**
+     * Descarta todo. La memoria de los slabs se conserva para reusarla.
+     */
+    public void clear() {
+        writeLock.lock();
+        try {
+            index.clear();
+            groups.clear();
+            for (int i = 0; i < slabs.length; i++) {
+                slabKeys[i].clear();
+                generations.incrementAndGet(i);
+            }
+            currentSlab = 0;
+            writeOffset = 0;
+            usedBytes = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Bytes ocupados por valores vivos
+     */
+    public long getUsedBytes() {
+        writeLock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public long getCapacityBytes() {
+        return (long) slabSize * slabs.length;
+    }
+
+    /**
+     * Valores desalojados al reciclar un slab
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // Con el lock de escritura tomado
+
+    private void released(K key, Location location) {
+        usedBytes -= location.length();
+        if (location.group() == null) return;
+        Set<K> keys = groups.get(location.group());
+        if (keys != null) keys.remove(key);
+    }
+
+    private void advanceSlab() {
+        currentSlab = (currentSlab + 1) % slabs.length;
+        writeOffset = 0;
+        if (slabs[currentSlab] == null) {
+            slabs[currentSlab] = ByteBuffer.allocateDirect(slabSize);
+            return;
+        }
+
+        //Se invalida el slab antes de sobrescribirlo: un lector que copie bytes nuevos ve
+        //la generacion nueva y descarta la lectura
+        int generation = generations.getAndIncrement(currentSlab);
+        for (K key : slabKeys[currentSlab]) {
+            Location location = index.get(key);
+            if (location != null && location.slab() == currentSlab && location.generation() == generation
+                    && index.remove(key, location)) {
+                this.released(key, location);
+                evictions.increment();
+            }
+        }
+        slabKeys[currentSlab].clear();
+    }
+}
@@ -0,0 +1,81 @@
+package org.project.cache.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Buffer de lecturas con perdida, dividido en stripes por hilo. Los lectores solo
+ * hacen un CAS sobre su stripe y el orden LRU se aplica despues, en lote,
+ * por quien tenga el lock de eviccion. Si un stripe esta lleno el evento se descarta.
+ */
+final class ReadBuffer<E> {
+
+    static final int BUFFER_SIZE = 16;
+    static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+    private final Stripe<E>[] stripes;
+    private final int stripeMask;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ReadBuffer() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int count = cpus <= 1 ? 1 : Integer.highestOneBit(cpus - 1) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        this.stripeMask = count - 1;
+    }
+
+    /**
+     * Registra una lectura.
+     * @return true si el stripe acumulo suficientes eventos como para drenar
+     */
+    boolean offer(E element) {
+        Stripe<E> stripe = stripes[probe() & stripeMask];
+        long tail = stripe.writeCounter.get();
+        long size = tail - stripe.readCounter;
+
+        if (size >= BUFFER_SIZE) return true;
+
+        if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+            stripe.buffer.lazySet((int) (tail & BUFFER_MASK), element);
+            return size + 1 >= DRAIN_THRESHOLD;
+        }
+        return false;
+    }
+
+    /**
+     * Vacia todos los stripes. Solo puede llamarlo un hilo a la vez.
+     */
+    void drainTo(Consumer<E> consumer) {
+        for (Stripe<E> stripe : stripes) {
+            long head = stripe.readCounter;
+            long tail = stripe.writeCounter.get();
+
+            for (; head < tail; head++) {
+                int index = (int) (head & BUFFER_MASK);
+                E element = stripe.buffer.get(index);
+                //El productor reservo el slot pero todavia no publico el valor
+                if (element == null) break;
+                stripe.buffer.lazySet(index, null);
+                consumer.accept(element);
+            }
+            stripe.readCounter = head;
+        }
+    }
+
+    private static int probe() {
+        int h = System.identityHashCode(Thread.currentThread());
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Stripe<E> {
+        final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+        final AtomicLong writeCounter = new AtomicLong();
+        volatile long readCounter;
+    }
+}
@@ -1,58 +1,145 @@
 package org.project.cache.util;
 
+import org.project.cache.interfaces.Cache;
+import org.project.cache.interfaces.LongKeyed;
+import org.project.cache.interfaces.Ticker;
+import org.project.cache.interfaces.Weigher;
+import org.project.cache.model.EvictionPolicy;
+import org.project.cache.model.RemovalCause;
+
 import java.time.Duration;
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
-public class SmartCache<K, V> {
+/**
+ * Cache de dos niveles thread-safe.
+ * <p>
+ * Ambos niveles son {@link ConcurrentHashMap}. El orden LRU del primer nivel no se
+ * actualiza en cada lectura: los accesos se anotan en un {@link ReadBuffer} por stripes
+ * y las altas/bajas en una cola de escritura, y ambos se aplican en lote con el lock
+ * de eviccion tomado (tryLock, nunca se bloquea a un lector).
+ * <p>
+ * El segundo nivel esta acotado por peso total segun el {@link Weigher} configurado,
+ * y tiene su propia {@link EvictionPolicy}. Lo que se desaloja de L2 se descarta, o si
+ * se configuro un {@link OffHeapStore}, se guarda serializado fuera del heap; un hit en
+ * ese nivel deserializa el valor y lo devuelve a L1.
+ * <p>
+ * La expiracion usa un reloj monotono ({@link Ticker}) y un {@link TimerWheel}: las
+ * entradas vencidas se quitan en O(vencidas) durante el mantenimiento, que corre
+ * amortizado en las escrituras y periodicamente desde {@link CacheMaintenance}.
+ * <p>
+ * Opcionalmente mantiene un indice de grupo (por ejemplo, la clase de entidad de cada
+ * clave) para invalidar o cambiar el TTL de un grupo tocando solo sus entradas. Si
+ * ademas la clave es {@link LongKeyed}, se indexa en una {@link LongEntryTable} del
+ * grupo y puede buscarse por (grupo, long) sin construir la clave ni alocar.
+ * <p>
+ * Los valores null no se cachean. Las cargas concurrentes de una misma clave se
+ * unifican: solo un hilo ejecuta el loader y el resto espera su resultado.
+ * <p>
+ * Hits, misses, cargas y desalojos se cuentan siempre en {@link CacheMetrics}, asi
+ * {@link #getStats()} y {@link #getMetrics()} no recorren las entradas.
+ */
+public class SmartCache<K, V> implements Cache<K, V> {
 
-    private final Map<K, CacheEntry<V>> firstLevelCache;
-    private final Map<K, CacheEntry<V>> secondLevelCache;
+    private final ConcurrentHashMap<K, CacheEntry<K, V>> firstLevelCache;
+    private final ConcurrentHashMap<K, CacheEntry<K, V>> secondLevelCache;
     private final Duration ttl;
+    private final Ticker ticker;
+    private final long originNanos;
+    private final int maxSize;
+    private final long maxSecondLevelWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private final EvictionPolicy secondLevelPolicy;
+    private final Function<? super K, ?> indexer;
+    private final ConcurrentHashMap<Object, Set<CacheEntry<K, V>>> groupIndex;
+    private final ConcurrentHashMap<Object, LongEntryTable<K, V>> longIndex;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlightLoads;
+    private final CacheMetrics metrics;
+    private final OffHeapStore<K, V> offHeap;
 
-    private static class CacheEntry<V> {
+    private final ReadBuffer<CacheEntry<K, V>> readBuffer;
+    private final Queue<Runnable> writeBuffer;
+    private final ReentrantLock evictionLock;
+    private final AccessOrderDeque<K, V> accessOrder;
+    private final AccessOrderDeque<K, V> secondLevelOrder;
+    private final TimerWheel<K, V> timerWheel;
+    private long secondLevelWeight;
 
-        private final V value;
-        private final Instant expirationTime;
-        private int hitCount;
+    private static final int LFU_SAMPLE_SIZE = 8;
 
-        public CacheEntry(V value, Duration ttl) {
-            this.value = value;
-            this.expirationTime = Instant.now().plus(ttl);
-            this.hitCount = 0;
-        }
+    /**
+     * L2 acotado a diez veces maxSize, contado en entradas y con LRU
+     */
+    public SmartCache(int maxSize, Duration ttl) {
+        this(maxSize, maxSize * 10L, Weigher.singleton(), EvictionPolicy.LRU, ttl);
+    }
 
-        public boolean isExpired() {
-            return Instant.now().isAfter(expirationTime);
-        }
+    public SmartCache(int maxSize, long maxSecondLevelWeight, Weigher<? super K, ? super V> weigher,
+                      EvictionPolicy secondLevelPolicy, Duration ttl) {
+        this(maxSize, maxSecondLevelWeight, weigher, secondLevelPolicy, ttl, Ticker.system(), null);
+    }
 
-        public void incrementHitCount() {
-            hitCount++;
-        }
+    /**
+     * @param indexer devuelve el grupo de cada clave (o null si no pertenece a ninguno);
+     *                si es null no se mantiene indice de grupos
+     */
+    public SmartCache(int maxSize, long maxSecondLevelWeight, Weigher<? super K, ? super V> weigher,
+                      EvictionPolicy secondLevelPolicy, Duration ttl, Ticker ticker,
+                      Function<? super K, ?> indexer) {
+        this(maxSize, maxSecondLevelWeight, weigher, secondLevelPolicy, ttl, ticker, indexer, null);
     }
 
-    public SmartCache(int maxSize, Duration ttl) {
+    /**
+     * @param offHeap nivel fuera del heap para lo que se desaloja de L2, o null para descartarlo
+     */
+    public SmartCache(int maxSize, long maxSecondLevelWeight, Weigher<? super K, ? super V> weigher,
+                      EvictionPolicy secondLevelPolicy, Duration ttl, Ticker ticker,
+                      Function<? super K, ?> indexer, OffHeapStore<K, V> offHeap) {
         this.ttl = ttl;
-
-        this.firstLevelCache = new LinkedHashMap<>(maxSize, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
-                //Eviccion: mover a segundo nivel si esta lleno
-                if (size() > maxSize) {
-                    secondLevelCache.put(eldest.getKey(), eldest.getValue());
-                    return true;
-                }
-                return false;
-            }
-        };
-
+        this.ticker = ticker;
+        this.originNanos = ticker.read();
+        this.maxSize = maxSize;
+        this.maxSecondLevelWeight = maxSecondLevelWeight;
+        this.weigher = weigher;
+        this.secondLevelPolicy = secondLevelPolicy;
+        this.indexer = indexer;
+        this.groupIndex = new ConcurrentHashMap<>();
+        this.longIndex = new ConcurrentHashMap<>();
+        this.inFlightLoads = new ConcurrentHashMap<>();
+        this.metrics = new CacheMetrics();
+        this.offHeap = offHeap;
+        this.firstLevelCache = new ConcurrentHashMap<>(maxSize);
         this.secondLevelCache = new ConcurrentHashMap<>();
+        this.readBuffer = new ReadBuffer<>();
+        this.writeBuffer = new ConcurrentLinkedQueue<>();
+        this.evictionLock = new ReentrantLock();
+        this.accessOrder = new AccessOrderDeque<>();
+        this.secondLevelOrder = new AccessOrderDeque<>();
+        this.timerWheel = new TimerWheel<>(0L);
+        CacheMaintenance.register(this);
+    }
 
+    /**
+     * Nombre con el que la region aparece en los eventos JFR
+     */
+    public void setName(String name) {
+        metrics.setRegion(name);
+    }
+
+    public String getName() {
+        return metrics.region();
     }
 
     public Set<K> getKeys() {
@@ -62,80 +149,604 @@ public class SmartCache<K, V> {
         return allKeys;
     }
 
-    public V get(K key, Function<K, V> loader) {
-        CacheEntry<V> entry = firstLevelCache.get(key);
+    /**
+     * Devuelve el valor cacheado o null, sin insertar nada en el cache.
+     */
+    @Override
+    public V getIfPresent(K key) {
+        return this.lookup(key, true);
+    }
 
-        if (entry != null) {
-            if (!entry.isExpired()) {
-                entry.incrementHitCount();
-                return entry.value;
-            } else firstLevelCache.remove(key);
+    /**
+     * Busqueda por clave primitiva dentro de un grupo. En un hit no aloca nada; si la
+     * tabla no tiene la clave (o quedo desactualizada por una carrera) devuelve null y
+     * el llamador debe caer al camino normal con la clave completa.
+     */
+    public V getIfPresent(Object group, long key) {
+        LongEntryTable<K, V> table = longIndex.get(group);
+        if (table == null) return null;
+
+        CacheEntry<K, V> entry = table.get(key);
+        if (entry == null || entry.isExpired(this.now())) return null;
+
+        if (firstLevelCache.get(entry.key) == entry) {
+            entry.incrementHitCount();
+            this.afterRead(entry);
+            metrics.recordFirstLevelHit();
+            return entry.value;
         }
+        //Se movio de nivel o fue reemplazada: la clave de la entrada sirve para el camino normal
+        return this.lookup(entry.key, true);
+    }
 
-        entry = secondLevelCache.get(key);
+    /**
+     * Devuelve el valor cacheado o lo carga. Si varios hilos fallan sobre la misma clave
+     * a la vez, solo uno ejecuta el loader. Un resultado null no se guarda.
+     */
+    @Override
+    public V get(K key, Function<K, V> loader) {
+        V cached = this.lookup(key, true);
+        if (cached != null) return cached;
 
-        if (entry != null) {
-            if (!entry.isExpired()) {
-                if (entry.hitCount > 5) {
-                    firstLevelCache.put(key, entry);
-                    secondLevelCache.remove(key);
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlightLoads.putIfAbsent(key, load);
+        if (existing != null) return this.awaitLoad(existing);
+
+        try {
+            //Otro hilo pudo haber terminado de cargar justo antes de registrarnos
+            V value = this.lookup(key, false);
+            if (value == null) {
+                CacheLoadEvent event = new CacheLoadEvent();
+                event.begin();
+                long start = ticker.read();
+                try {
+                    value = loader.apply(key);
+                } catch (RuntimeException | Error e) {
+                    metrics.recordLoadFailure(ticker.read() - start);
+                    event.finish(metrics.region(), false, true);
+                    throw e;
                 }
-                entry.incrementHitCount();
-                return entry.value;
-            } else secondLevelCache.remove(key);
+                metrics.recordLoadSuccess(ticker.read() - start);
+                event.finish(metrics.region(), value != null, false);
+                if (value != null) this.put(key, value);
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(key, load);
         }
+    }
 
-        //Cargar valor si no esta en ningun nivel
+    @Override
+    public void put(K key, V value) {
+        this.put(key, value, ttl);
+    }
 
-        V value = loader.apply(key);
-        CacheEntry<V> newEntry = new CacheEntry<>(value, ttl);
-        firstLevelCache.put(key, newEntry);
-        return value;
+    public void put(K key, V value, Duration entryTtl) {
+        CacheEntry<K, V> entry = this.newEntry(key, value, entryTtl, this.now());
+        if (this.putFirstLevel(entry) != null) metrics.recordRemoval(RemovalCause.REPLACED);
+
+        //La version anterior pudo haber quedado en L2
+        CacheEntry<K, V> stale = secondLevelCache.get(key);
+        if (stale != null && stale != entry && this.removeSecondLevel(stale)) {
+            metrics.recordRemoval(RemovalCause.REPLACED);
+        }
+        if (offHeap != null && offHeap.remove(key)) metrics.recordRemoval(RemovalCause.REPLACED);
     }
 
     public void setTTL(K key, Duration newTtl) {
-        CacheEntry<V> entry = firstLevelCache.get(key);
+        long now = this.now();
+        CacheEntry<K, V> entry = firstLevelCache.get(key);
         if (entry != null) {
-            V value = entry.value;
-            firstLevelCache.put(key, new CacheEntry<>(value, newTtl));
+            this.putFirstLevel(this.newEntry(key, entry.value, newTtl, now));
             return;
         }
 
-        entry = secondLevelCache.get(key);
-        if (entry != null) {
-            V value = entry.value;
-            secondLevelCache.put(key, new CacheEntry<>(value, newTtl));
+        CacheEntry<K, V> current = secondLevelCache.get(key);
+        if (current != null) {
+            CacheEntry<K, V> replacement = this.newEntry(key, current.value, newTtl, now);
+            this.index(replacement);
+            if (secondLevelCache.replace(key, current, replacement)) {
+                this.afterWrite(() -> {
+                    this.onRemoved(current);
+                    if (secondLevelCache.get(key) == replacement) {
+                        this.linkSecondLevel(replacement);
+                        timerWheel.schedule(replacement);
+                    }
+                });
+            } else {
+                this.afterWrite(() -> this.unindex(replacement));
+            }
+            return;
+        }
+
+        //Fuera del heap: se trae de vuelta a L1 y se le cambia el TTL ahi
+        if (offHeap != null && this.lookupOffHeap(key, now) != null && firstLevelCache.containsKey(key)) {
+            this.setTTL(key, newTtl);
+        }
+    }
+
+    /**
+     * Invalida todas las claves del grupo. Solo recorre las entradas del grupo.
+     */
+    public void invalidateGroup(Object group) {
+        if (offHeap != null) offHeap.removeGroup(group);
+        Set<CacheEntry<K, V>> entries = groupIndex.get(group);
+        if (entries == null) return;
+        for (CacheEntry<K, V> entry : entries) {
+            this.invalidate(entry.key);
+        }
+    }
+
+    /**
+     * Cambia el TTL de todas las claves del grupo que estan en el heap. Las que estan
+     * fuera del heap conservan su vencimiento.
+     */
+    public void setGroupTTL(Object group, Duration newTtl) {
+        Set<CacheEntry<K, V>> entries = groupIndex.get(group);
+        if (entries == null) return;
+        //Copia: setTTL agrega entradas nuevas al mismo grupo
+        for (Object entry : entries.toArray()) {
+            @SuppressWarnings("unchecked")
+            K key = ((CacheEntry<K, V>) entry).key;
+            this.setTTL(key, newTtl);
         }
     }
 
+    public Set<K> getGroupKeys(Object group) {
+        Set<CacheEntry<K, V>> entries = groupIndex.get(group);
+        if (entries == null) return Collections.emptySet();
+        Set<K> keys = new HashSet<>();
+        entries.forEach(entry -> keys.add(entry.key));
+        return keys;
+    }
+
+    /**
+     * Claves vigentes del grupo ordenadas de mas a menos hits, hasta limit
+     *
+     * @param filter solo las entradas cuyo valor lo cumple
+     */
+    public List<K> getHottestKeys(Object group, int limit, Predicate<? super V> filter) {
+        Set<CacheEntry<K, V>> entries = groupIndex.get(group);
+        if (entries == null || limit <= 0) return List.of();
+
+        long now = this.now();
+        List<CacheEntry<K, V>> live = new ArrayList<>();
+        for (CacheEntry<K, V> entry : entries) {
+            if (!entry.isExpired(now) && filter.test(entry.value)) live.add(entry);
+        }
+        live.sort(Comparator.comparingInt((CacheEntry<K, V> entry) -> entry.getHitCount()).reversed());
+
+        List<K> keys = new ArrayList<>(Math.min(limit, live.size()));
+        for (int i = 0; i < live.size() && i < limit; i++) {
+            keys.add(live.get(i).key);
+        }
+        return keys;
+    }
+
+    /**
+     * Corre el mantenimiento pendiente y expira lo vencido. Solo recorre los buckets
+     * del timer wheel que ya pasaron, no el cache completo.
+     */
     public void cleanExpiredEntries() {
-        firstLevelCache.entrySet().removeIf(e -> e.getValue().isExpired());
-        secondLevelCache.entrySet().removeIf(e -> e.getValue().isExpired());
+        evictionLock.lock();
+        try {
+            this.maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
     }
 
 
+    @Override
     public void invalidate(K key) {
-        firstLevelCache.remove(key);
-        secondLevelCache.remove(key);
+        this.invalidated(firstLevelCache.remove(key));
+        this.invalidated(secondLevelCache.remove(key));
+        if (offHeap != null && offHeap.remove(key)) metrics.recordRemoval(RemovalCause.EXPLICIT);
+
+        //Una promocion o una lectura fuera del heap concurrente pudo haber movido la entrada de L2 a L1 entre medio
+        this.invalidated(firstLevelCache.remove(key));
     }
 
+    @Override
     public void invalidateAll() {
-        firstLevelCache.clear();
-        secondLevelCache.clear();
+        evictionLock.lock();
+        try {
+            int removed = firstLevelCache.size() + secondLevelCache.size();
+            if (offHeap != null) {
+                removed += offHeap.size();
+                offHeap.clear();
+            }
+            for (int i = removed; i > 0; i--) {
+                metrics.recordRemoval(RemovalCause.EXPLICIT);
+            }
+            firstLevelCache.clear();
+            secondLevelCache.clear();
+            writeBuffer.clear();
+            readBuffer.drainTo(entry -> {});
+            accessOrder.clear();
+            secondLevelOrder.clear();
+            timerWheel.clear();
+            groupIndex.clear();
+            longIndex.clear();
+            secondLevelWeight = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public CacheStats getCacheStats() {
+        return this.getStats();
     }
 
     public CacheStats getStats() {
         return new CacheStats(
                 firstLevelCache.size(),
                 secondLevelCache.size(),
-                firstLevelCache.values().stream()
-                        .mapToInt(entry -> entry.hitCount).sum(),
-                secondLevelCache.values().stream()
-                        .mapToInt(entry -> entry.hitCount).sum()
+                metrics.firstLevelHits(),
+                metrics.secondLevelHits()
         );
     }
 
-    public record CacheStats(int firstLevelSize, int secondLevelSize, int firstLevelHits, int secondLevelHits) {}
+    public CacheMetrics.Snapshot getMetrics() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * Nivel fuera del heap, o null si la cache no tiene
+     */
+    public OffHeapStore<K, V> getOffHeapStore() {
+        return offHeap;
+    }
+
+    public long getSecondLevelWeight() {
+        evictionLock.lock();
+        try {
+            return secondLevelWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public record CacheStats(int firstLevelSize, int secondLevelSize, long firstLevelHits, long secondLevelHits) {
+
+        public CacheStats plus(CacheStats other) {
+            return new CacheStats(
+                    firstLevelSize + other.firstLevelSize,
+                    secondLevelSize + other.secondLevelSize,
+                    firstLevelHits + other.firstLevelHits,
+                    secondLevelHits + other.secondLevelHits
+            );
+        }
+    }
+
+    private V awaitLoad(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw e;
+        }
+    }
+
+    private V lookup(K key, boolean recordStats) {
+        long now = this.now();
+        CacheEntry<K, V> entry = firstLevelCache.get(key);
+
+        if (entry != null) {
+            if (!entry.isExpired(now)) {
+                entry.incrementHitCount();
+                this.afterRead(entry);
+                if (recordStats) metrics.recordFirstLevelHit();
+                return entry.value;
+            } else if (this.removeFirstLevel(entry)) metrics.recordRemoval(RemovalCause.EXPIRED);
+        }
+
+        entry = secondLevelCache.get(key);
+
+        if (entry != null) {
+            if (!entry.isExpired(now)) {
+                if (entry.incrementHitCount() > 6) this.promote(entry);
+                else this.afterRead(entry);
+                if (recordStats) metrics.recordSecondLevelHit();
+                return entry.value;
+            } else if (this.removeSecondLevel(entry)) metrics.recordRemoval(RemovalCause.EXPIRED);
+        }
+
+        if (offHeap != null) {
+            V value = this.lookupOffHeap(key, now);
+            if (value != null) {
+                if (recordStats) metrics.recordOffHeapHit();
+                return value;
+            }
+        }
+
+        if (recordStats) metrics.recordMiss();
+        return null;
+    }
+
+    /**
+     * Deserializa el valor y lo vuelve a poner en L1 con su vencimiento original. Se
+     * inserta en L1 antes de quitarlo de fuera del heap: si una invalidacion lo quito
+     * primero, la entrada recien insertada se descarta y no revive un valor borrado.
+     */
+    private V lookupOffHeap(K key, long now) {
+        OffHeapStore.Location location = offHeap.find(key);
+        if (location == null) return null;
+        if (location.expirationNanos() <= now) {
+            if (offHeap.remove(key, location)) metrics.recordRemoval(RemovalCause.EXPIRED);
+            return null;
+        }
+
+        V value = offHeap.read(key, location);
+        if (value == null) return null;
+
+        CacheEntry<K, V> entry = new CacheEntry<>(key, value, weigher.weigh(key, value),
+                location.expirationNanos(), location.group());
+        CacheEntry<K, V> existing = this.putFirstLevelIfAbsent(entry);
+        boolean owned = offHeap.remove(key, location);
+        if (existing != null) return existing.value;
+        if (!owned) {
+            this.removeFirstLevel(entry);
+            return null;
+        }
+        return value;
+    }
+
+    private void invalidated(CacheEntry<K, V> removed) {
+        if (removed == null) return;
+        metrics.recordRemoval(RemovalCause.EXPLICIT);
+        this.afterWrite(() -> this.onRemoved(removed));
+    }
+
+    // Manejo de niveles
+
+    private long now() {
+        return ticker.read() - originNanos;
+    }
+
+    private CacheEntry<K, V> newEntry(K key, V value, Duration entryTtl, long now) {
+        long ttlNanos;
+        try {
+            ttlNanos = entryTtl.toNanos();
+        } catch (ArithmeticException e) {
+            ttlNanos = Long.MAX_VALUE;
+        }
+        long expiration = ttlNanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttlNanos;
+        Object group = indexer != null ? indexer.apply(key) : null;
+        return new CacheEntry<>(key, value, weigher.weigh(key, value), expiration, group);
+    }
+
+    /**
+     * Se indexa en el grupo antes de publicar la entrada en un mapa, asi una invalidacion
+     * de grupo concurrente nunca se pierde una clave ya visible.
+     */
+    private void index(CacheEntry<K, V> entry) {
+        if (entry.group == null) return;
+        groupIndex.computeIfAbsent(entry.group, g -> ConcurrentHashMap.newKeySet()).add(entry);
+    }
+
+    /**
+     * La tabla primitiva se actualiza recien despues de publicar: si la insercion pierde
+     * una carrera, el slot no queda apuntando a la entrada perdedora. Si otra escritura la
+     * reemplazo entre medio, se saca el slot y las lecturas usan el camino normal.
+     */
+    private void indexLong(CacheEntry<K, V> entry) {
+        if (entry.group == null || !(entry.key instanceof LongKeyed longKeyed) || !longKeyed.hasLongKey()) return;
+        LongEntryTable<K, V> table = longIndex.computeIfAbsent(entry.group, g -> new LongEntryTable<>());
+        table.put(longKeyed.longKey(), entry);
+        if (firstLevelCache.get(entry.key) != entry) table.remove(longKeyed.longKey(), entry);
+    }
+
+    private void unindex(CacheEntry<K, V> entry) {
+        if (entry.group == null) return;
+        Set<CacheEntry<K, V>> entries = groupIndex.get(entry.group);
+        if (entries != null) entries.remove(entry);
+        if (entry.key instanceof LongKeyed longKeyed && longKeyed.hasLongKey()) {
+            LongEntryTable<K, V> table = longIndex.get(entry.group);
+            if (table != null) table.remove(longKeyed.longKey(), entry);
+        }
+    }
+
+    private CacheEntry<K, V> putFirstLevel(CacheEntry<K, V> entry) {
+        this.index(entry);
+        CacheEntry<K, V> previous = firstLevelCache.put(entry.key, entry);
+        this.indexLong(entry);
+        this.afterWrite(() -> {
+            if (previous != null) this.onRemoved(previous);
+            this.linkFirstLevel(entry);
+        });
+        return previous;
+    }
+
+    /**
+     * @return la entrada que ya estaba (y entonces no se inserta nada), o null
+     */
+    private CacheEntry<K, V> putFirstLevelIfAbsent(CacheEntry<K, V> entry) {
+        this.index(entry);
+        CacheEntry<K, V> existing = firstLevelCache.putIfAbsent(entry.key, entry);
+        if (existing != null) {
+            this.afterWrite(() -> this.unindex(entry));
+            return existing;
+        }
+        this.indexLong(entry);
+        this.afterWrite(() -> this.linkFirstLevel(entry));
+        return null;
+    }
+
+    private void linkFirstLevel(CacheEntry<K, V> entry) {
+        //Puede haber sido reemplazada o invalidada antes de drenar la cola
+        if (firstLevelCache.get(entry.key) == entry && !accessOrder.contains(entry)) {
+            accessOrder.addLast(entry);
+            timerWheel.schedule(entry);
+        } else if (!accessOrder.contains(entry)) {
+            this.unindex(entry);
+        }
+    }
+
+    private boolean removeFirstLevel(CacheEntry<K, V> entry) {
+        if (!firstLevelCache.remove(entry.key, entry)) return false;
+        this.afterWrite(() -> this.onRemoved(entry));
+        return true;
+    }
+
+    private boolean removeSecondLevel(CacheEntry<K, V> entry) {
+        if (!secondLevelCache.remove(entry.key, entry)) return false;
+        this.afterWrite(() -> this.onRemoved(entry));
+        return true;
+    }
+
+    /**
+     * Sube la entrada de L2 a L1 sin anidar computes: demote toma L1 y despues L2, y el
+     * orden inverso podia trabarse. Se publica en L1 primero y se saca de L2 despues; si
+     * una invalidacion la saco de L2 entre medio, se deshace la copia en L1.
+     */
+    private void promote(CacheEntry<K, V> entry) {
+        if (secondLevelCache.get(entry.key) != entry) return;
+        boolean inserted = firstLevelCache.putIfAbsent(entry.key, entry) == null;
+        if (!secondLevelCache.remove(entry.key, entry)) {
+            if (inserted) firstLevelCache.remove(entry.key, entry);
+            return;
+        }
+        if (inserted) this.indexLong(entry);
+        this.afterWrite(() -> {
+            this.unlinkSecondLevel(entry);
+            if (firstLevelCache.get(entry.key) == entry && !accessOrder.contains(entry)) {
+                accessOrder.addLast(entry);
+            } else {
+                this.onRemoved(entry);
+            }
+        });
+    }
+
+    /**
+     * Eviccion: mover a segundo nivel. Se hace dentro del compute de L1 para que una
+     * invalidacion concurrente no pueda dejar la entrada vieja en L2.
+     */
+    private void demote(CacheEntry<K, V> entry) {
+        boolean[] moved = new boolean[1];
+        firstLevelCache.computeIfPresent(entry.key, (k, current) -> {
+            if (current != entry) return current;
+            CacheEntry<K, V> replaced = secondLevelCache.put(k, entry);
+            if (replaced != null) this.onRemoved(replaced);
+            moved[0] = true;
+            return null;
+        });
+        if (moved[0]) {
+            this.linkSecondLevel(entry);
+            metrics.recordDemotion();
+        }
+    }
+
+    // Segundo nivel y expiracion (siempre con el lock de eviccion tomado)
+
+    private void onRemoved(CacheEntry<K, V> entry) {
+        accessOrder.remove(entry);
+        this.unlinkSecondLevel(entry);
+        timerWheel.deschedule(entry);
+        this.unindex(entry);
+    }
+
+    private void expire(CacheEntry<K, V> entry) {
+        if (firstLevelCache.remove(entry.key, entry)) {
+            accessOrder.remove(entry);
+            metrics.recordRemoval(RemovalCause.EXPIRED);
+        } else if (secondLevelCache.remove(entry.key, entry)) {
+            this.unlinkSecondLevel(entry);
+            metrics.recordRemoval(RemovalCause.EXPIRED);
+        }
+        this.unindex(entry);
+    }
+
+    private void linkSecondLevel(CacheEntry<K, V> entry) {
+        if (secondLevelOrder.contains(entry)) return;
+        secondLevelOrder.addLast(entry);
+        secondLevelWeight += entry.weight;
+    }
+
+    private void unlinkSecondLevel(CacheEntry<K, V> entry) {
+        if (!secondLevelOrder.contains(entry)) return;
+        secondLevelOrder.remove(entry);
+        secondLevelWeight -= entry.weight;
+    }
+
+    private void evictSecondLevel() {
+        while (secondLevelWeight > maxSecondLevelWeight) {
+            CacheEntry<K, V> victim = this.selectSecondLevelVictim();
+            this.onRemoved(victim);
+            if (!secondLevelCache.remove(victim.key, victim)) continue;
+            if (offHeap == null || !this.spill(victim)) metrics.recordRemoval(RemovalCause.SIZE);
+        }
+    }
+
+    private boolean spill(CacheEntry<K, V> victim) {
+        if (!offHeap.store(victim.key, victim.value, victim.expirationNanos, victim.group)) return false;
+        //Un put concurrente pudo haber limpiado fuera del heap antes de que guardaramos
+        if (firstLevelCache.containsKey(victim.key)) offHeap.remove(victim.key);
+        return true;
+    }
+
+    private CacheEntry<K, V> selectSecondLevelVictim() {
+        CacheEntry<K, V> victim = secondLevelOrder.peekFirst();
+        if (secondLevelPolicy != EvictionPolicy.LFU) return victim;
+
+        //LFU aproximado: el de menos hits entre los mas viejos
+        CacheEntry<K, V> candidate = secondLevelOrder.next(victim);
+        for (int i = 1; i < LFU_SAMPLE_SIZE && candidate != null; i++) {
+            if (candidate.getHitCount() < victim.getHitCount()) victim = candidate;
+            candidate = secondLevelOrder.next(candidate);
+        }
+        return victim;
+    }
+
+    // Mantenimiento amortizado
+
+    private void afterRead(CacheEntry<K, V> entry) {
+        if (readBuffer.offer(entry)) this.scheduleDrain();
+    }
+
+    private void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        this.scheduleDrain();
+    }
 
+    private void scheduleDrain() {
+        do {
+            //Si otro hilo tiene el lock, el volvera a mirar la cola al soltarlo
+            if (!evictionLock.tryLock()) return;
+            try {
+                this.maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        } while (!writeBuffer.isEmpty());
+    }
+
+    private void maintenance() {
+        timerWheel.advance(this.now(), this::expire);
+
+        readBuffer.drainTo(entry -> {
+            if (accessOrder.contains(entry)) accessOrder.moveToBack(entry);
+            else if (secondLevelPolicy == EvictionPolicy.LRU && secondLevelOrder.contains(entry)) {
+                secondLevelOrder.moveToBack(entry);
+            }
+        });
+
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            task.run();
+        }
+
+        while (accessOrder.size() > maxSize) {
+            this.demote(accessOrder.pollFirst());
+        }
+        this.evictSecondLevel();
+    }
 
 }
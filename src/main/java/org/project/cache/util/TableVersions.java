@@ -0,0 +1,43 @@
+package org.project.cache.util;
+
+import org.project.cache.model.QueryStamp;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contador de version por tabla. Una escritura solo incrementa la version de su tabla;
+ * los resultados de consultas estampados con una version anterior quedan obsoletos.
+ */
+public class TableVersions {
+
+    private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public long current(String table) {
+        AtomicLong version = versions.get(table);
+        return version != null ? version.get() : 0L;
+    }
+
+    public long bump(String table) {
+        return versions.computeIfAbsent(table, t -> new AtomicLong()).incrementAndGet();
+    }
+
+    public QueryStamp stamp(Collection<String> tables) {
+        String[] names = tables.toArray(new String[0]);
+        long[] stamped = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            stamped[i] = current(names[i]);
+        }
+        return new QueryStamp(names, stamped);
+    }
+
+    public boolean isCurrent(QueryStamp stamp) {
+        String[] tables = stamp.tables();
+        long[] stamped = stamp.versions();
+        for (int i = 0; i < tables.length; i++) {
+            if (current(tables[i]) != stamped[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,135 @@
+package org.project.cache.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Timer wheel jerarquico para la expiracion de {@link SmartCache}.
+ * <p>
+ * Cada nivel agrupa las entradas en buckets de distinta granularidad (~1s, ~1m, ~1h, ~1d y
+ * un bucket de desborde). Avanzar el reloj solo recorre los buckets cuyo tiempo ya paso,
+ * de modo que expirar cuesta O(expiradas) y no O(total). Las entradas de un bucket grueso
+ * que todavia no vencen se recolocan en un nivel mas fino.
+ * <p>
+ * No es thread-safe: solo se usa con el lock de eviccion tomado.
+ */
+final class TimerWheel<K, V> {
+
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+            1L << 30, // 1.07s
+            1L << 36, // 1.14m
+            1L << 42, // 1.22h
+            1L << 47, // 1.63d
+            (1L << 47) * 4, // 6.5d
+            (1L << 47) * 4
+    };
+    private static final int[] SHIFT = {30, 36, 42, 47, 49};
+
+    private final CacheEntry<K, V>[][] wheel;
+    private long nanos;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(long now) {
+        this.nanos = now;
+        this.wheel = new CacheEntry[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new CacheEntry[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                CacheEntry<K, V> sentinel = new CacheEntry<>(null, null, 0, Long.MAX_VALUE, null);
+                sentinel.prevInTimer = sentinel;
+                sentinel.nextInTimer = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    void schedule(CacheEntry<K, V> entry) {
+        if (entry.nextInTimer != null) this.deschedule(entry);
+        CacheEntry<K, V> sentinel = this.findBucket(entry.expirationNanos);
+        this.link(sentinel, entry);
+    }
+
+    void deschedule(CacheEntry<K, V> entry) {
+        if (entry.nextInTimer == null) return;
+        entry.prevInTimer.nextInTimer = entry.nextInTimer;
+        entry.nextInTimer.prevInTimer = entry.prevInTimer;
+        entry.prevInTimer = null;
+        entry.nextInTimer = null;
+    }
+
+    /**
+     * Avanza el reloj y entrega al consumer las entradas vencidas, ya desenganchadas.
+     */
+    void advance(long now, Consumer<CacheEntry<K, V>> onExpired) {
+        long previousTime = nanos;
+        nanos = now;
+
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousTime >>> SHIFT[i];
+            long currentTicks = now >>> SHIFT[i];
+            if (currentTicks - previousTicks <= 0L) break;
+            this.expire(i, previousTicks, currentTicks - previousTicks, onExpired);
+        }
+    }
+
+    void clear() {
+        for (CacheEntry<K, V>[] buckets : wheel) {
+            for (CacheEntry<K, V> sentinel : buckets) {
+                CacheEntry<K, V> entry = sentinel.nextInTimer;
+                while (entry != sentinel) {
+                    CacheEntry<K, V> next = entry.nextInTimer;
+                    entry.prevInTimer = null;
+                    entry.nextInTimer = null;
+                    entry = next;
+                }
+                sentinel.prevInTimer = sentinel;
+                sentinel.nextInTimer = sentinel;
+            }
+        }
+    }
+
+    private void expire(int index, long previousTicks, long delta, Consumer<CacheEntry<K, V>> onExpired) {
+        CacheEntry<K, V>[] buckets = wheel[index];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(delta + 1, buckets.length);
+        int start = (int) (previousTicks & mask);
+
+        for (int i = 0; i < steps; i++) {
+            CacheEntry<K, V> sentinel = buckets[(start + i) & mask];
+            CacheEntry<K, V> entry = sentinel.nextInTimer;
+            sentinel.prevInTimer = sentinel;
+            sentinel.nextInTimer = sentinel;
+
+            while (entry != sentinel) {
+                CacheEntry<K, V> next = entry.nextInTimer;
+                entry.prevInTimer = null;
+                entry.nextInTimer = null;
+
+                if (entry.isExpired(nanos)) onExpired.accept(entry);
+                else this.link(this.findBucket(entry.expirationNanos), entry);
+
+                entry = next;
+            }
+        }
+    }
+
+    private CacheEntry<K, V> findBucket(long time) {
+        long duration = time - nanos;
+        int last = wheel.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = time >>> SHIFT[i];
+                int index = (int) (ticks & (wheel[i].length - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    private void link(CacheEntry<K, V> sentinel, CacheEntry<K, V> entry) {
+        entry.prevInTimer = sentinel.prevInTimer;
+        entry.nextInTimer = sentinel;
+        sentinel.prevInTimer.nextInTimer = entry;
+        sentinel.prevInTimer = entry;
+    }
+}
@@ -1,41 +1,112 @@
 package org.project.cache.util;
 
+import org.project.cache.interfaces.LongKeyed;
 import org.project.cache.model.CacheType;
 import org.project.cache.model.EntityMetadata;
+import org.project.cache.model.QueryKey;
 
 import java.util.List;
 import java.util.Objects;
 
-public class TypedCacheKey<T>  {
+/**
+ * Clave del cache del ORM. Guarda sus componentes por separado (sin concatenar strings)
+ * y precalcula el hash, asi construir y comparar una clave cuesta una sola allocation.
+ */
+public class TypedCacheKey<T> implements LongKeyed {
+
+    private static final Object[] NO_PARAMETERS = new Object[0];
 
     private final CacheType type;
-    private final String key;
+    private final Class<?> owner;
+    private final Object key;
     private final Class<T> valueType;
+    private final Object group;
+    private final int hash;
 
     public TypedCacheKey(CacheType type, String key, Class<T> valueType) {
+        this(type, key, valueType, null);
+    }
+
+    /**
+     * @param group grupo al que pertenece la clave en el indice del cache (ej. la clase de entidad)
+     */
+    public TypedCacheKey(CacheType type, String key, Class<T> valueType, Object group) {
+        this(type, null, key, valueType, group);
+    }
+
+    private TypedCacheKey(CacheType type, Class<?> owner, Object key, Class<T> valueType, Object group) {
         this.type = type;
+        this.owner = owner;
         this.key = key;
         this.valueType = valueType;
+        this.group = group;
+
+        int h = type.hashCode();
+        h = 31 * h + Objects.hashCode(owner);
+        h = 31 * h + Objects.hashCode(key);
+        h = 31 * h + valueType.hashCode();
+        this.hash = h;
+    }
+
+    public CacheType getType() {
+        return type;
+    }
+
+    public Class<?> getOwner() {
+        return owner;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    public Class<T> getValueType() {
+        return valueType;
+    }
+
+    public Object getGroup() {
+        return group;
+    }
+
+    @Override
+    public boolean hasLongKey() {
+        return type == CacheType.ENTITY && key instanceof Long;
+    }
+
+    @Override
+    public long longKey() {
+        return (Long) key;
     }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof TypedCacheKey<?> that)) return false;
-        return type == that.type
-                && key.equals(that.key) &&
-                valueType.equals(that.valueType);
+        return hash == that.hash
+                && type == that.type
+                && owner == that.owner
+                && valueType == that.valueType
+                && Objects.equals(key, that.key);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(type, key, valueType);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return owner != null
+                ? type + ":" + owner.getName() + ":" + key
+                : type + ":" + key;
     }
 
     public static <T> TypedCacheKey<T> createEntityKey(Class<T> entityClass, Object id) {
         return new TypedCacheKey<>(
                 CacheType.ENTITY,
-                entityClass.getName() + ":" + id,
+                entityClass,
+                normalizeId(id),
+                entityClass,
                 entityClass
         );
     }
@@ -43,18 +114,42 @@ public class TypedCacheKey<T>  {
     public static TypedCacheKey<EntityMetadata> createMetadataKey(Class<?> entityClass) {
         return new TypedCacheKey<>(
                 CacheType.METADATA,
-                entityClass.getName(),
-                EntityMetadata.class
+                entityClass,
+                null,
+                EntityMetadata.class,
+                null
         );
     }
 
-    @SuppressWarnings("unchecked")
     public static <T> TypedCacheKey<List<T>> createQueryKey(String query, Class<?> entityClass) {
+        return createQueryKey(query, NO_PARAMETERS, entityClass);
+    }
+
+    /**
+     * Clave del resultado de la consulta con esos parametros, que se copian. Todas las
+     * claves del mismo SQL comparten grupo, asi invalidar la consulta descarta todos sus
+     * resultados.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TypedCacheKey<List<T>> createQueryKey(String query, Object[] parameters, Class<?> entityClass) {
         return new TypedCacheKey<>(
                 CacheType.QUERY,
-                entityClass.getName() + ":" + query,
-                (Class<List<T>>) (Class<?>) List.class
+                entityClass,
+                new QueryKey(query, parameters.length == 0 ? NO_PARAMETERS : parameters.clone()),
+                (Class<List<T>>) (Class<?>) List.class,
+                query
         );
     }
 
+    /**
+     * Ids enteros de cualquier ancho se guardan como Long, para que find(X, 1) y
+     * find(X, 1L) resuelvan a la misma entrada. Un Long se usa tal cual, sin copiar.
+     */
+    public static Object normalizeId(Object id) {
+        if (id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            return ((Number) id).longValue();
+        }
+        return id;
+    }
+
 }
@@ -0,0 +1,17 @@
+package org.project.entityManager.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Tabla de la entidad. Sin esta anotacion se usa el nombre simple de la clase en minusculas.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Table {
+
+    String name();
+
+}
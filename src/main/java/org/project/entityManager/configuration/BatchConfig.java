@@ -0,0 +1,35 @@
+package org.project.entityManager.configuration;
+
+/**
+ * Como se agrupan las escrituras de una transaccion al hacer commit.
+ *
+ * @param batchSize                operaciones por executeBatch
+ * @param rewriteInserts           reescribir INSERTs consecutivos iguales en un solo
+ *                                 INSERT ... VALUES (...), (...)
+ * @param maxStatementParameters   parametros como maximo en un INSERT reescrito; depende del driver
+ */
+public record BatchConfig(int batchSize, boolean rewriteInserts, int maxStatementParameters) {
+
+    public BatchConfig {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        if (maxStatementParameters <= 0) {
+            throw new IllegalArgumentException("maxStatementParameters must be positive: " + maxStatementParameters);
+        }
+    }
+
+    public static BatchConfig defaults() {
+        return new BatchConfig(500, false, 32_767);
+    }
+
+    public BatchConfig withBatchSize(int batchSize) {
+        return new BatchConfig(batchSize, rewriteInserts, maxStatementParameters);
+    }
+
+    public BatchConfig withRewriteInserts(boolean rewriteInserts) {
+        return new BatchConfig(batchSize, rewriteInserts, maxStatementParameters);
+    }
+
+    public BatchConfig withMaxStatementParameters(int maxStatementParameters) {
+        return new BatchConfig(batchSize, rewriteInserts, maxStatementParameters);
+    }
+}
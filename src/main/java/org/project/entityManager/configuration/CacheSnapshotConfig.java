@@ -0,0 +1,41 @@
+package org.project.entityManager.configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Foto de las claves calientes del cache para arrancar con el cache tibio. Se guarda al
+ * cerrar (y cada saveInterval si no es null) y al arrancar se restaura, cargando esas
+ * entidades de la base en segundo plano.
+ *
+ * @param file               archivo de la foto; null desactiva todo
+ * @param saveInterval       cada cuanto se guarda ademas de al cerrar, o null
+ * @param maxAge             una foto mas vieja se ignora al arrancar; null para aceptar cualquiera
+ * @param maxEntriesPerClass ids guardados por clase de entidad, los mas leidos
+ */
+public record CacheSnapshotConfig(Path file, Duration saveInterval, Duration maxAge, int maxEntriesPerClass) {
+
+    public static CacheSnapshotConfig disabled() {
+        return new CacheSnapshotConfig(null, null, null, 0);
+    }
+
+    public static CacheSnapshotConfig of(Path file) {
+        return new CacheSnapshotConfig(file, null, Duration.ofHours(1), 10_000);
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    public CacheSnapshotConfig withSaveInterval(Duration saveInterval) {
+        return new CacheSnapshotConfig(file, saveInterval, maxAge, maxEntriesPerClass);
+    }
+
+    public CacheSnapshotConfig withMaxAge(Duration maxAge) {
+        return new CacheSnapshotConfig(file, saveInterval, maxAge, maxEntriesPerClass);
+    }
+
+    public CacheSnapshotConfig withMaxEntriesPerClass(int maxEntriesPerClass) {
+        return new CacheSnapshotConfig(file, saveInterval, maxAge, maxEntriesPerClass);
+    }
+}
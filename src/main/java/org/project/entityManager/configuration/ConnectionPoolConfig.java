@@ -0,0 +1,70 @@
+package org.project.entityManager.configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuracion del {@link org.project.entityManager.entity.ConnectionPool}.
+ *
+ * @param maxSize                 conexiones abiertas como maximo
+ * @param minIdle                 conexiones libres que el pool intenta mantener
+ * @param connectionTimeout       espera maxima para obtener una conexion
+ * @param idleTimeout             una conexion libre por mas tiempo se cierra (sin bajar de minIdle); cero lo desactiva
+ * @param maxLifetime             edad maxima de una conexion; se retira al quedar libre. Cero lo desactiva
+ * @param validationTimeout       espera maxima de Connection.isValid al validar en el prestamo
+ * @param leakDetectionThreshold  prestamo mas largo que esto se reporta como posible fuga; cero lo desactiva
+ * @param statementCacheSize      PreparedStatements cacheados por conexion
+ */
+public record ConnectionPoolConfig(int maxSize,
+                                   int minIdle,
+                                   Duration connectionTimeout,
+                                   Duration idleTimeout,
+                                   Duration maxLifetime,
+                                   Duration validationTimeout,
+                                   Duration leakDetectionThreshold,
+                                   int statementCacheSize) {
+
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    public static ConnectionPoolConfig defaults() {
+        return new ConnectionPoolConfig(
+                10,
+                2,
+                Duration.ofSeconds(30),
+                Duration.ofMinutes(10),
+                Duration.ofMinutes(30),
+                Duration.ofSeconds(5),
+                Duration.ZERO,
+                DEFAULT_STATEMENT_CACHE_SIZE
+        );
+    }
+
+    public ConnectionPoolConfig withSize(int maxSize, int minIdle) {
+        return new ConnectionPoolConfig(maxSize, minIdle, connectionTimeout, idleTimeout, maxLifetime,
+                validationTimeout, leakDetectionThreshold, statementCacheSize);
+    }
+
+    public ConnectionPoolConfig withConnectionTimeout(Duration connectionTimeout) {
+        return new ConnectionPoolConfig(maxSize, minIdle, connectionTimeout, idleTimeout, maxLifetime,
+                validationTimeout, leakDetectionThreshold, statementCacheSize);
+    }
+
+    public ConnectionPoolConfig withLifetimes(Duration idleTimeout, Duration maxLifetime) {
+        return new ConnectionPoolConfig(maxSize, minIdle, connectionTimeout, idleTimeout, maxLifetime,
+                validationTimeout, leakDetectionThreshold, statementCacheSize);
+    }
+
+    public ConnectionPoolConfig withValidationTimeout(Duration validationTimeout) {
+        return new ConnectionPoolConfig(maxSize, minIdle, connectionTimeout, idleTimeout, maxLifetime,
+                validationTimeout, leakDetectionThreshold, statementCacheSize);
+    }
+
+    public ConnectionPoolConfig withLeakDetectionThreshold(Duration leakDetectionThreshold) {
+        return new ConnectionPoolConfig(maxSize, minIdle, connectionTimeout, idleTimeout, maxLifetime,
+                validationTimeout, leakDetectionThreshold, statementCacheSize);
+    }
+
+    public ConnectionPoolConfig withStatementCacheSize(int statementCacheSize) {
+        return new ConnectionPoolConfig(maxSize, minIdle, connectionTimeout, idleTimeout, maxLifetime,
+                validationTimeout, leakDetectionThreshold, statementCacheSize);
+    }
+}
@@ -1,10 +1,67 @@
 package org.project.entityManager.configuration;
 
+import org.project.cache.interfaces.InvalidationTransport;
+import org.project.cache.model.CacheRegionConfig;
+import org.project.cache.model.CacheType;
+import org.project.cache.util.InvalidationBus;
+
 import javax.sql.DataSource;
 import java.time.Duration;
+import java.util.Map;
 
 public interface EntityManagerConfig {
 
     DataSource getDataSource();
     Duration getDefaultCacheTtl();
+
+    /**
+     * Configuracion de cada region del cache. Por defecto usa los valores de
+     * {@link CacheType}, con getDefaultCacheTtl() como TTL comun si no es null.
+     */
+    default Map<CacheType, CacheRegionConfig> getCacheRegions() {
+        return CacheRegionConfig.defaults(getDefaultCacheTtl());
+    }
+
+    /**
+     * Tamano, tiempos y deteccion de fugas del pool de conexiones
+     */
+    default ConnectionPoolConfig getConnectionPoolConfig() {
+        return ConnectionPoolConfig.defaults();
+    }
+
+    /**
+     * Agrupacion de las escrituras al hacer commit de una transaccion
+     */
+    default BatchConfig getBatchConfig() {
+        return BatchConfig.defaults();
+    }
+
+    /**
+     * Replicas a las que van las lecturas fuera de transaccion; por defecto ninguna
+     */
+    default ReadReplicaConfig getReadReplicaConfig() {
+        return ReadReplicaConfig.none();
+    }
+
+    /**
+     * Foto del cache para arrancar tibio (ver SmartORM); por defecto desactivada
+     */
+    default CacheSnapshotConfig getCacheSnapshotConfig() {
+        return CacheSnapshotConfig.disabled();
+    }
+
+    /**
+     * Transporte para publicar las invalidaciones del cache a otros nodos; por defecto
+     * null, el cache es solo local
+     */
+    default InvalidationTransport getInvalidationTransport() {
+        return null;
+    }
+
+    /**
+     * Cada cuanto se envian las invalidaciones acumuladas
+     */
+    default Duration getInvalidationFlushInterval() {
+        return InvalidationBus.DEFAULT_FLUSH_INTERVAL;
+    }
 }
@@ -0,0 +1,36 @@
+package org.project.entityManager.configuration;
+
+import org.project.entityManager.entity.ReplicaSelector;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Replicas de lectura. Las lecturas fuera de una transaccion van a una replica elegida por
+ * el selector; las escrituras, y las lecturas dentro de una transaccion, van al primario.
+ *
+ * @param dataSources       una por replica; vacia para leer siempre del primario
+ * @param selector          reparte las lecturas entre las replicas
+ * @param primaryAfterWrite despues de escribir, la sesion sigue leyendo del primario este
+ *                          tiempo para ver sus propios cambios aunque la replica atrase; null
+ *                          hasta que se cierra la sesion
+ */
+public record ReadReplicaConfig(List<DataSource> dataSources, ReplicaSelector selector, Duration primaryAfterWrite) {
+
+    public static ReadReplicaConfig none() {
+        return of(List.of());
+    }
+
+    public static ReadReplicaConfig of(List<DataSource> dataSources) {
+        return new ReadReplicaConfig(List.copyOf(dataSources), ReplicaSelector.roundRobin(), null);
+    }
+
+    public ReadReplicaConfig withSelector(ReplicaSelector selector) {
+        return new ReadReplicaConfig(dataSources, selector, primaryAfterWrite);
+    }
+
+    public ReadReplicaConfig withPrimaryAfterWrite(Duration primaryAfterWrite) {
+        return new ReadReplicaConfig(dataSources, selector, primaryAfterWrite);
+    }
+}
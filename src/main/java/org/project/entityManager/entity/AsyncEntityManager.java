@@ -0,0 +1,42 @@
+package org.project.entityManager.entity;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Operaciones del {@link EntityManager} que devuelven un CompletableFuture. Cada llamada
+ * corre en su propio hilo virtual con un EntityManager nuevo, asi llamadas independientes
+ * se pueden lanzar en paralelo y combinar. Las entidades devueltas no quedan administradas.
+ * <p>
+ * La cantidad de operaciones contra la base al mismo tiempo esta limitada al tamano del
+ * pool al que van: findAsync y findAllAsync pueden leer de las replicas, las demas usan el
+ * primario. Las que no tienen lugar esperan su turno en su hilo virtual. Una operacion no
+ * debe esperar el resultado de otra operacion asincrona: si todos los lugares estan
+ * ocupados se bloquean entre si.
+ */
+public interface AsyncEntityManager extends AutoCloseable {
+
+    <T> CompletableFuture<T> findAsync(Class<T> entityClass, Object id);
+    <T> CompletableFuture<List<T>> findAllAsync(Class<T> entityClass, Collection<?> ids);
+
+    /**
+     * Se completa con la misma entidad, ya con su id
+     */
+    <T> CompletableFuture<T> persistAsync(T entity);
+    <T> CompletableFuture<T> mergeAsync(T entity);
+    CompletableFuture<Void> removeAsync(Object entity);
+
+    /**
+     * Corre work con un EntityManager propio, para varias operaciones que van juntas. Lee y
+     * escribe en el primario, asi lo que carga llena el cache compartido
+     */
+    <R> CompletableFuture<R> executeAsync(Function<EntityManager, R> work);
+
+    /**
+     * Deja de aceptar operaciones; las que ya empezaron terminan
+     */
+    @Override
+    void close();
+}
@@ -1,13 +1,334 @@
 package org.project.entityManager.entity;
 
 
+import org.project.entityManager.configuration.ConnectionPoolConfig;
+import org.project.entityManager.monitoring.ConnectionBorrowEvent;
+
 import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Pool de conexiones sin locks en el camino rapido.
+ * <p>
+ * Cada conexion tiene un estado que se toma con CAS. Al pedir una conexion se prueba
+ * primero la ultima que uso el hilo (sus statements estan calientes), despues se
+ * recorre la lista, y si el pool no esta lleno se abre una nueva. Si no hay ninguna se
+ * espera en una {@link SynchronousQueue} justa: quien devuelve una conexion se la pasa
+ * directo al que espera hace mas tiempo. Ninguna espera usa synchronized, asi un hilo
+ * virtual bloqueado en el pool no fija su carrier; los hilos virtuales tampoco guardan la
+ * pista en un ThreadLocal, porque son muchos y de vida corta.
+ * <p>
+ * Un housekeeper en segundo plano retira las conexiones libres que pasaron idleTimeout o
+ * maxLifetime, mantiene minIdle, y reporta los prestamos que superan el umbral de fuga
+ * junto con el stack de donde se pidio la conexion.
+ */
 public class ConnectionPool {
 
+    private static final Logger log = Logger.getLogger(ConnectionPool.class.getName());
+
+    //Una conexion usada hace menos que esto se presta sin validar
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long HOUSEKEEPING_PERIOD_SECONDS = 30;
+
     private final DataSource dataSource;
+    private final ConnectionPoolConfig config;
+    private final CopyOnWriteArrayList<PooledConnection> connections;
+    private final ThreadLocal<PooledConnection> lastUsed;
+    private final SynchronousQueue<PooledConnection> handoff;
+    private final AtomicInteger waiters;
+    private final AtomicInteger totalConnections;
+    private final ScheduledExecutorService housekeeper;
+    private final long maxLifetimeNanos;
+    private final long idleTimeoutNanos;
+    private final int validationTimeoutSeconds;
+    private volatile boolean closed;
 
     public ConnectionPool(DataSource dataSource) {
+        this(dataSource, ConnectionPoolConfig.defaults());
+    }
+
+    public ConnectionPool(DataSource dataSource, ConnectionPoolConfig config) {
         this.dataSource = dataSource;
+        this.config = config;
+        this.connections = new CopyOnWriteArrayList<>();
+        this.lastUsed = new ThreadLocal<>();
+        this.handoff = new SynchronousQueue<>(true);
+        this.waiters = new AtomicInteger();
+        this.totalConnections = new AtomicInteger();
+        this.maxLifetimeNanos = nanosOrMax(config.maxLifetime());
+        this.idleTimeoutNanos = nanosOrMax(config.idleTimeout());
+        this.validationTimeoutSeconds = (int) Math.max(1, config.validationTimeout().toSeconds());
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, HOUSEKEEPING_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Presta una conexion esperando como mucho connectionTimeout; se devuelve cerrando
+     * el {@link PooledConnection}
+     */
+    public PooledConnection getConnection() throws SQLException {
+        return this.getConnection(config.connectionTimeout());
+    }
+
+    public PooledConnection getConnection(Duration timeout) throws SQLException {
+        ConnectionBorrowEvent event = ConnectionBorrowEvent.start();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        boolean acquired = false;
+        try {
+            while (true) {
+                if (closed) throw new SQLException("Connection pool is closed");
+
+                PooledConnection connection = this.borrow(deadline);
+                if (connection == null) {
+                    throw new SQLTransientConnectionException("Connection is not available, request timed out after "
+                            + timeout.toMillis() + "ms (total=" + totalConnections.get() + ", waiting=" + waiters.get() + ")");
+                }
+                if (this.isUsable(connection)) {
+                    acquired = true;
+                    return this.borrowed(connection);
+                }
+                this.retire(connection);
+            }
+        } finally {
+            event.finish(acquired, waiters.get(), totalConnections.get());
+        }
+    }
+
+    void release(PooledConnection connection) {
+        if (connection.getState() != PooledConnection.IN_USE) return;
+        connection.cancelLeakTask();
+
+        long now = System.nanoTime();
+        if (closed || connection.isBroken() || now - connection.getCreatedNanos() >= maxLifetimeNanos) {
+            this.retire(connection);
+            return;
+        }
+
+        connection.setLastAccessedNanos(now);
+        if (!Thread.currentThread().isVirtual()) lastUsed.set(connection);
+        if (!connection.compareAndSetState(PooledConnection.IN_USE, PooledConnection.NOT_IN_USE)) return;
+
+        //Mientras haya alguien esperando se le pasa directo, salvo que otro la tome antes.
+        //waiters solo cuenta hilos que ya recorrieron la lista y van a estacionarse, asi
+        //que la vuelta dura lo que tardan en llegar al poll
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (connection.getState() != PooledConnection.NOT_IN_USE || handoff.offer(connection)) return;
+            if ((i & 0xff) == 0xff) LockSupport.parkNanos(10_000);
+            else Thread.yield();
+        }
+    }
+
+    public int getMaxSize() {
+        return config.maxSize();
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getActiveConnections() {
+        return this.countInState(PooledConnection.IN_USE);
+    }
+
+    public int getIdleConnections() {
+        return this.countInState(PooledConnection.NOT_IN_USE);
+    }
+
+    public int getThreadsAwaitingConnection() {
+        return waiters.get();
+    }
+
+    /**
+     * Cierra las conexiones libres; las prestadas se cierran al devolverse
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        for (PooledConnection connection : connections) {
+            if (connection.compareAndSetState(PooledConnection.NOT_IN_USE, PooledConnection.IN_USE)) {
+                this.retire(connection);
+            }
+        }
+    }
+
+    // Prestamo
+
+    private PooledConnection borrow(long deadline) throws SQLException {
+        if (!Thread.currentThread().isVirtual()) {
+            PooledConnection hint = lastUsed.get();
+            if (hint != null && hint.compareAndSetState(PooledConnection.NOT_IN_USE, PooledConnection.IN_USE)) {
+                return hint;
+            }
+        }
+
+        PooledConnection free = this.takeFree();
+        if (free != null) return free;
+
+        PooledConnection created = this.tryCreate();
+        if (created != null) return created;
+
+        //Se anota como esperando y recien despues se recorre otra vez: una conexion
+        //devuelta despues de ese recorrido se le pasa por la cola y no queda libre sin
+        //que nadie la vea. Solo cuenta quien va a estacionarse, asi release no espera
+        //por hilos que todavia recorren o abren una conexion
+        waiters.incrementAndGet();
+        try {
+            free = this.takeFree();
+            if (free != null) return free;
+
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                PooledConnection connection = handoff.poll(remaining, TimeUnit.NANOSECONDS);
+                if (connection == null) return null;
+                if (connection.compareAndSetState(PooledConnection.NOT_IN_USE, PooledConnection.IN_USE)) {
+                    return connection;
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private PooledConnection takeFree() {
+        for (PooledConnection connection : connections) {
+            if (connection.compareAndSetState(PooledConnection.NOT_IN_USE, PooledConnection.IN_USE)) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Abre una conexion si hay lugar. La devuelve ya tomada (IN_USE), o null si el pool esta lleno.
+     */
+    private PooledConnection tryCreate() throws SQLException {
+        int total;
+        do {
+            total = totalConnections.get();
+            if (total >= config.maxSize()) return null;
+        } while (!totalConnections.compareAndSet(total, total + 1));
+
+        try {
+            PooledConnection connection = new PooledConnection(dataSource.getConnection(), this,
+                    config.statementCacheSize(), System.nanoTime());
+            connection.compareAndSetState(PooledConnection.NOT_IN_USE, PooledConnection.IN_USE);
+            connections.add(connection);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        long now = System.nanoTime();
+        if (now - connection.getCreatedNanos() >= maxLifetimeNanos) return false;
+        if (now - connection.getLastAccessedNanos() < VALIDATION_BYPASS_NANOS) return true;
+        try {
+            return connection.getConnection().isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection borrowed(PooledConnection connection) {
+        Duration threshold = config.leakDetectionThreshold();
+        if (threshold != null && !threshold.isZero()) {
+            //El stack se captura solo si la deteccion esta activa
+            Exception trace = new Exception("Apparent connection leak detected");
+            String thread = Thread.currentThread().getName();
+            try {
+                connection.setLeakTask(housekeeper.schedule(() -> log.log(Level.WARNING,
+                        "Connection held for more than " + threshold.toMillis() + "ms by thread '" + thread + "'",
+                        trace), threshold.toNanos(), TimeUnit.NANOSECONDS));
+            } catch (RejectedExecutionException ignored) {
+                //Pool cerrandose
+            }
+        }
+        return connection;
+    }
+
+    // Retiro y mantenimiento
+
+    /**
+     * Cierra una conexion que el llamador tiene tomada (IN_USE)
+     */
+    private void retire(PooledConnection connection) {
+        if (!connection.compareAndSetState(PooledConnection.IN_USE, PooledConnection.REMOVED)) return;
+        connections.remove(connection);
+        totalConnections.decrementAndGet();
+        connection.closePhysically();
+
+        //Quedo un lugar libre: alguien que espera en la cola no lo va a ver por si solo
+        if (!closed && waiters.get() > 0) {
+            try {
+                housekeeper.execute(this::addConnection);
+            } catch (RejectedExecutionException ignored) {
+                //Pool cerrandose
+            }
+        }
+    }
+
+    private void housekeep() {
+        long now = System.nanoTime();
+        int idle = this.getIdleConnections();
+        for (PooledConnection connection : connections) {
+            if (connection.getState() != PooledConnection.NOT_IN_USE) continue;
+            boolean expired = now - connection.getCreatedNanos() >= maxLifetimeNanos;
+            boolean idleTooLong = idle > config.minIdle() && now - connection.getLastAccessedNanos() >= idleTimeoutNanos;
+            if ((expired || idleTooLong)
+                    && connection.compareAndSetState(PooledConnection.NOT_IN_USE, PooledConnection.IN_USE)) {
+                this.retire(connection);
+                idle--;
+            }
+        }
+
+        while (!closed && this.getIdleConnections() < config.minIdle() && totalConnections.get() < config.maxSize()) {
+            if (!this.addConnection()) break;
+        }
+    }
+
+    private boolean addConnection() {
+        try {
+            PooledConnection connection = this.tryCreate();
+            if (connection == null) return false;
+            this.release(connection);
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            log.log(Level.WARNING, "Failed to add a connection to the pool", e);
+            return false;
+        }
+    }
+
+    private int countInState(int state) {
+        int count = 0;
+        for (PooledConnection connection : connections) {
+            if (connection.getState() == state) count++;
+        }
+        return count;
+    }
+
+    private static long nanosOrMax(Duration duration) {
+        return duration == null || duration.isZero() ? Long.MAX_VALUE : duration.toNanos();
     }
 }
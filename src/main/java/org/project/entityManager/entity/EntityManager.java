@@ -1,5 +1,9 @@
 package org.project.entityManager.entity;
 
+import org.project.entityManager.transaction.Transaction;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface EntityManager extends AutoCloseable {
 
@@ -7,17 +11,42 @@ public interface EntityManager extends AutoCloseable {
      * CRUD BASICO
      */
     <T> T find(Class<T> entityClass, Object id);
+
+    /**
+     * Igual que find(Class, Object) para ids numericos. El cache compartido se busca por el
+     * id primitivo, sin construir la clave ni alocar; aun asi un hit aloca la copia que
+     * administra la sesion (con su foto y su entrada en el contexto), y el id se boxea si la
+     * sesion ya administra entidades o hay una transaccion activa.
+     */
+    <T> T find(Class<T> entityClass, long id);
     <T> void persist(T entity);
     <T> T merge(T entity);
     void remove(Object entity);
 
+    /**
+     * Entidades encontradas, en el orden de ids y sin las que no existen. Los ids que no
+     * estan en cache se consultan juntos.
+     */
+    <T> List<T> findAll(Class<T> entityClass, Collection<?> ids);
+    <T> void persistAll(Collection<? extends T> entities);
+    <T> List<T> mergeAll(Collection<? extends T> entities);
+
     /**
      * Manejo de queries
      */
-    //<T> Query<T> createQuery(String jpql, Class<T> resultClass);
+    /**
+     * Consulta SQL nativa cuyas filas se mapean a la entidad resultClass
+     */
+    <T> Query<T> createQuery(String sql, Class<T> resultClass);
     //<T> TypedQuery<T> createNamedQuery(String name, Class<T> resultClass);
 
 
+    /**
+     * Transaccion de la sesion: mientras esta activa todas las operaciones van por la
+     * misma conexion del primario
+     */
+    Transaction getTransaction();
+
     /**
      * Gestion de estado
      */
@@ -0,0 +1,111 @@
+package org.project.entityManager.entity;
+
+import org.project.cache.model.EntityMetadata;
+import org.project.cache.model.FieldMetadata;
+
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Mapper de filas de una entidad para un SQL concreto. La primera fila resuelve, con el
+ * ResultSetMetaData, que campo corresponde a cada posicion y con que getter se lee;
+ * despues cada fila solo instancia la entidad y lee por indice. Los campos primitivos se
+ * leen con getLong/getInt/... y se asignan con los setters tipados, sin boxing.
+ * <p>
+ * Las columnas sin campo se ignoran y los campos sin columna quedan en su valor inicial.
+ */
+public class EntityRowMapper<T> implements RowMapper<T> {
+
+    private enum Kind {
+        LONG, INT, SHORT, BYTE, DOUBLE, FLOAT, BOOLEAN, STRING, BIG_DECIMAL, BYTES, ENUM, OBJECT
+    }
+
+    private record Binding(int index, FieldMetadata field, Kind kind, Class<?> type) {}
+
+    private final Class<T> entityClass;
+    private final EntityMetadata metadata;
+    private volatile Binding[] bindings;
+
+    public EntityRowMapper(Class<T> entityClass, EntityMetadata metadata) {
+        this.entityClass = entityClass;
+        this.metadata = metadata;
+    }
+
+    @Override
+    public T mapRow(ResultSet resultSet) throws SQLException {
+        Binding[] resolved = bindings;
+        //Si dos hilos resuelven a la vez, ambos llegan al mismo resultado
+        if (resolved == null) bindings = resolved = this.resolve(resultSet.getMetaData());
+
+        Object entity = metadata.newInstance();
+        for (Binding binding : resolved) {
+            this.read(resultSet, binding, entity);
+        }
+        return entityClass.cast(entity);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void read(ResultSet rs, Binding binding, Object entity) throws SQLException {
+        int i = binding.index();
+        FieldMetadata field = binding.field();
+        switch (binding.kind()) {
+            case LONG -> field.setLong(entity, rs.getLong(i));
+            case INT -> field.setInt(entity, rs.getInt(i));
+            case SHORT -> field.setShort(entity, rs.getShort(i));
+            case BYTE -> field.setByte(entity, rs.getByte(i));
+            case DOUBLE -> field.setDouble(entity, rs.getDouble(i));
+            case FLOAT -> field.setFloat(entity, rs.getFloat(i));
+            case BOOLEAN -> field.setBoolean(entity, rs.getBoolean(i));
+            case STRING -> field.setValue(entity, rs.getString(i));
+            case BIG_DECIMAL -> field.setValue(entity, rs.getBigDecimal(i));
+            case BYTES -> field.setValue(entity, rs.getBytes(i));
+            case ENUM -> {
+                String name = rs.getString(i);
+                field.setValue(entity, name != null ? Enum.valueOf((Class) binding.type(), name) : null);
+            }
+            case OBJECT -> field.setValue(entity, rs.getObject(i, binding.type()));
+        }
+    }
+
+    private Binding[] resolve(ResultSetMetaData resultMetadata) throws SQLException {
+        Map<String, FieldMetadata> byColumn = new HashMap<>();
+        for (FieldMetadata field : metadata.getFields()) {
+            byColumn.put(field.getColumnName().toLowerCase(Locale.ROOT), field);
+        }
+
+        int columnCount = resultMetadata.getColumnCount();
+        Binding[] resolved = new Binding[columnCount];
+        int count = 0;
+        for (int i = 1; i <= columnCount; i++) {
+            FieldMetadata field = byColumn.remove(resultMetadata.getColumnLabel(i).toLowerCase(Locale.ROOT));
+            if (field == null) continue;
+            Class<?> type = field.getType();
+            resolved[count++] = new Binding(i, field, kindOf(type), MethodType.methodType(type).wrap().returnType());
+        }
+
+        Binding[] trimmed = new Binding[count];
+        System.arraycopy(resolved, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    private static Kind kindOf(Class<?> type) {
+        if (type == long.class) return Kind.LONG;
+        if (type == int.class) return Kind.INT;
+        if (type == short.class) return Kind.SHORT;
+        if (type == byte.class) return Kind.BYTE;
+        if (type == double.class) return Kind.DOUBLE;
+        if (type == float.class) return Kind.FLOAT;
+        if (type == boolean.class) return Kind.BOOLEAN;
+        if (type == String.class) return Kind.STRING;
+        if (type == BigDecimal.class) return Kind.BIG_DECIMAL;
+        if (type == byte[].class) return Kind.BYTES;
+        if (type.isEnum()) return Kind.ENUM;
+        return Kind.OBJECT;
+    }
+}
@@ -1,10 +1,108 @@
 package org.project.entityManager.entity;
 
 import org.project.cache.model.EntityMetadata;
+import org.project.cache.model.FieldMetadata;
+import org.project.entityManager.annotation.Column;
+import org.project.entityManager.annotation.Id;
+import org.project.entityManager.annotation.Table;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Construye la metadata de cada clase de entidad una sola vez, leyendo sus campos con
+ * reflection y resolviendo los accesos a MethodHandles. Despues solo se consulta.
+ * <p>
+ * Se mapean los campos declarados que no son static, transient ni final: un campo final no
+ * se puede asignar al leer una fila. La tabla, el id y las columnas salen de {@link Table},
+ * {@link Id} y {@link Column}; sin anotaciones se usa el nombre simple de la clase en
+ * minusculas, el campo "id" y el nombre de cada campo.
+ */
 public class MetadataManager {
 
+    //SQL distintos con mapper guardado por clase; un SQL armado concatenando valores no
+    //hace crecer el mapa sin limite
+    private static final int MAX_ROW_MAPPERS_PER_CLASS = 512;
+
+    private final ConcurrentHashMap<Class<?>, EntityMetadata> metadata = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, SqlTemplates> sqlTemplates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, EntityRowMapper<?>>> rowMappers = new ConcurrentHashMap<>();
+    private final Consumer<EntityMetadata> onBuilt;
+
+    public MetadataManager() {
+        this(metadata -> {});
+    }
+
+    /**
+     * @param onBuilt se llama una vez por clase, al construir su metadata
+     */
+    public MetadataManager(Consumer<EntityMetadata> onBuilt) {
+        this.onBuilt = onBuilt;
+    }
+
     public EntityMetadata getEntityMetadata(Class<?> entityClass) {
-        return null;
+        EntityMetadata cached = metadata.get(entityClass);
+        if (cached != null) return cached;
+        return metadata.computeIfAbsent(entityClass, c -> {
+            EntityMetadata built = this.build(c);
+            onBuilt.accept(built);
+            return built;
+        });
+    }
+
+    /**
+     * SQL CRUD de la entidad, generado la primera vez que se pide
+     */
+    public SqlTemplates getSqlTemplates(Class<?> entityClass) {
+        SqlTemplates cached = sqlTemplates.get(entityClass);
+        if (cached != null) return cached;
+        return sqlTemplates.computeIfAbsent(entityClass, c -> SqlTemplates.of(this.getEntityMetadata(c)));
+    }
+
+    /**
+     * Mapper de filas de la entidad para ese SQL. Se crea una vez por (clase, SQL) y
+     * resuelve las posiciones de sus columnas con la primera fila que lee. Pasados
+     * MAX_ROW_MAPPERS_PER_CLASS SQL distintos, los nuevos reciben un mapper sin guardar,
+     * que resuelve las columnas en cada consulta.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> RowMapper<T> getRowMapper(Class<T> entityClass, String sql) {
+        ConcurrentHashMap<String, EntityRowMapper<?>> bySql = rowMappers.get(entityClass);
+        if (bySql == null) bySql = rowMappers.computeIfAbsent(entityClass, c -> new ConcurrentHashMap<>());
+
+        EntityRowMapper<?> mapper = bySql.get(sql);
+        if (mapper != null) return (RowMapper<T>) mapper;
+        if (bySql.size() >= MAX_ROW_MAPPERS_PER_CLASS) {
+            return new EntityRowMapper<>(entityClass, this.getEntityMetadata(entityClass));
+        }
+        mapper = bySql.computeIfAbsent(sql, s -> new EntityRowMapper<>(entityClass, this.getEntityMetadata(entityClass)));
+        return (RowMapper<T>) mapper;
+    }
+
+    private EntityMetadata build(Class<?> entityClass) {
+        Table table = entityClass.getAnnotation(Table.class);
+        String tableName = table != null ? table.name() : entityClass.getSimpleName().toLowerCase();
+
+        List<Field> persistent = new ArrayList<>();
+        boolean annotatedId = false;
+        for (Field field : entityClass.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || Modifier.isFinal(modifiers)
+                    || field.isSynthetic()) continue;
+            persistent.add(field);
+            annotatedId |= field.isAnnotationPresent(Id.class);
+        }
+
+        List<FieldMetadata> fields = new ArrayList<>(persistent.size());
+        for (Field field : persistent) {
+            Column column = field.getAnnotation(Column.class);
+            boolean id = annotatedId ? field.isAnnotationPresent(Id.class) : field.getName().equals("id");
+            fields.add(new FieldMetadata(field, column != null ? column.name() : field.getName(), id));
+        }
+        return new EntityMetadata(entityClass, tableName, fields);
     }
 }
@@ -0,0 +1,131 @@
+package org.project.entityManager.entity;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Conexion prestada por el {@link ConnectionPool}, con su cache de PreparedStatements.
+ * Cerrarla la devuelve al pool; si se marco como rota, el pool la cierra de verdad.
+ * <p>
+ * El estado (libre, prestada, retirada) se cambia con CAS: es lo que usa el pool para
+ * prestarla sin locks.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    static final int NOT_IN_USE = 0;
+    static final int IN_USE = 1;
+    static final int REMOVED = 2;
+
+    private final Connection connection;
+    private final ConnectionPool pool;
+    private final StatementCache statementCache;
+    private final AtomicInteger state;
+    private final long createdNanos;
+    private volatile long lastAccessedNanos;
+    private volatile ScheduledFuture<?> leakTask;
+    private boolean broken;
+    private boolean pinned;
+
+    PooledConnection(Connection connection, ConnectionPool pool, int statementCacheSize, long now) {
+        this.connection = connection;
+        this.pool = pool;
+        this.statementCache = new StatementCache(connection, statementCacheSize);
+        this.state = new AtomicInteger(NOT_IN_USE);
+        this.createdNanos = now;
+        this.lastAccessedNanos = now;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Devuelve el PreparedStatement cacheado para el SQL, o lo prepara. No hay que
+     * cerrarlo: vive mientras la conexion siga en el pool.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return statementCache.prepare(sql, false);
+    }
+
+    /**
+     * Como {@link #prepare(String)}, pidiendo las claves generadas. Un mismo SQL debe
+     * prepararse siempre de la misma forma.
+     */
+    public PreparedStatement prepareWithGeneratedKeys(String sql) throws SQLException {
+        return statementCache.prepare(sql, true);
+    }
+
+    /**
+     * La conexion fallo y no debe volver al pool
+     */
+    public void markBroken() {
+        this.broken = true;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * Devuelve la conexion al pool, salvo que este fijada a una transaccion
+     */
+    @Override
+    public void close() {
+        if (!pinned) pool.release(this);
+    }
+
+    /**
+     * Mientras esta fijada, close() no la devuelve al pool; la usa {@link QueryExecutor}
+     * para que todas las operaciones de una transaccion vayan por la misma conexion
+     */
+    void setPinned(boolean pinned) {
+        this.pinned = pinned;
+    }
+
+    // Estado manejado por el pool
+
+    boolean compareAndSetState(int expected, int newState) {
+        return state.compareAndSet(expected, newState);
+    }
+
+    int getState() {
+        return state.get();
+    }
+
+    long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    long getLastAccessedNanos() {
+        return lastAccessedNanos;
+    }
+
+    void setLastAccessedNanos(long lastAccessedNanos) {
+        this.lastAccessedNanos = lastAccessedNanos;
+    }
+
+    void setLeakTask(ScheduledFuture<?> leakTask) {
+        this.leakTask = leakTask;
+    }
+
+    void cancelLeakTask() {
+        ScheduledFuture<?> task = leakTask;
+        if (task != null) {
+            task.cancel(false);
+            leakTask = null;
+        }
+    }
+
+    void closePhysically() {
+        this.cancelLeakTask();
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            //Se esta descartando
+        }
+    }
+}
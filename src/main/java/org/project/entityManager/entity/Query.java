@@ -0,0 +1,52 @@
+package org.project.entityManager.entity;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Consulta SQL con parametros posicionales ({@code ?}), creada con
+ * {@link EntityManager#createQuery}.
+ */
+public interface Query<T> {
+
+    /**
+     * @param position posicion del parametro, desde 1 como en JDBC
+     */
+    Query<T> setParameter(int position, Object value);
+
+    /**
+     * Filas que el driver trae por viaje al leer con {@link #getResultStream()}; 0 deja el
+     * valor del driver
+     */
+    Query<T> setFetchSize(int fetchSize);
+
+    /**
+     * Guarda el resultado de {@link #getResultList()} en el cache de queries, invalidado al
+     * escribir en la tabla de la entidad o en las agregadas con {@link #addTable}. Un SQL con
+     * joins, subconsultas o UNION sin tablas agregadas no se cachea: no se sabe que leyo.
+     */
+    Query<T> setCacheable(boolean cacheable);
+
+    /**
+     * Otra tabla que lee la consulta (por un join o una subconsulta); escribir en ella
+     * invalida el resultado cacheado
+     */
+    Query<T> addTable(String tableName);
+
+    /**
+     * Resultado completo en memoria
+     */
+    List<T> getResultList();
+
+    /**
+     * Resultado perezoso sobre un cursor abierto, en memoria constante. Nunca pasa por el
+     * cache de queries y las entidades que devuelve no quedan administradas. Retiene una
+     * conexion hasta agotarse o cerrarse: usar con try-with-resources.
+     */
+    Stream<T> getResultStream();
+
+    /**
+     * Primer resultado, o null si no hay
+     */
+    T getSingleResult();
+}
@@ -1,4 +1,446 @@
 package org.project.entityManager.entity;
 
+import org.project.entityManager.monitoring.OrmMetrics;
+import org.project.entityManager.monitoring.StatementEvent;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Ejecuta SQL con conexiones del {@link ConnectionPool}. Los PreparedStatements quedan
+ * cacheados en cada conexion, asi un SQL que se repite no se vuelve a preparar.
+ * <p>
+ * Con una conexion fijada (ver {@link #pin}) todas las operaciones usan esa conexion en
+ * vez de pedir una al pool; en ese estado el executor pertenece a un solo hilo.
+ * <p>
+ * Cada ejecucion se registra como {@link StatementEvent} de JFR y en {@link OrmMetrics}.
+ */
 public class QueryExecutor {
+
+    private final ConnectionPool connectionPool;
+    private PooledConnection pinned;
+    private Runnable beforePinnedStatement;
+    private int pinnedOperations;
+
+    public QueryExecutor(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Fija una conexion ya prestada: las operaciones la usan y no la devuelven al pool
+     * hasta {@link #unpin()}
+     */
+    public void pin(PooledConnection connection) {
+        this.pin(connection, null);
+    }
+
+    /**
+     * Como {@link #pin(PooledConnection)}; beforeStatement corre antes de cada sentencia con
+     * la conexion fijada, por ejemplo para ejecutar escrituras encoladas que la sentencia
+     * tiene que ver
+     */
+    public void pin(PooledConnection connection, Runnable beforeStatement) {
+        if (pinned != null) throw new IllegalStateException("A connection is already pinned");
+        connection.setPinned(true);
+        this.pinned = connection;
+        this.beforePinnedStatement = beforeStatement;
+        this.pinnedOperations = 0;
+    }
+
+    /**
+     * @return la conexion que estaba fijada, que el llamador tiene que cerrar, o null
+     */
+    public PooledConnection unpin() {
+        PooledConnection connection = pinned;
+        if (connection != null) connection.setPinned(false);
+        pinned = null;
+        beforePinnedStatement = null;
+        return connection;
+    }
+
+    public boolean isPinned() {
+        return pinned != null;
+    }
+
+    /**
+     * Escrituras ejecutadas con la conexion fijada desde {@link #pin}, una por fila en los
+     * lotes; las lecturas no cuentan
+     */
+    public int getPinnedOperations() {
+        return pinnedOperations;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    private PooledConnection connection() throws SQLException {
+        if (pinned == null) return connectionPool.getConnection();
+        if (beforePinnedStatement != null) beforePinnedStatement.run();
+        return pinned;
+    }
+
+    /**
+     * Como {@link #connection()} para una escritura de rows filas, que se cuentan si la
+     * conexion esta fijada
+     */
+    private PooledConnection writeConnection(int rows) throws SQLException {
+        PooledConnection connection = this.connection();
+        if (connection == pinned) pinnedOperations += rows;
+        return connection;
+    }
+
+    public <T> List<T> query(String sql, Object[] params, RowMapper<T> mapper) {
+        try (PooledConnection connection = this.connection()) {
+            try {
+                StatementEvent event = StatementEvent.start();
+                PreparedStatement statement = connection.prepare(sql);
+                this.bind(statement, params);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    List<T> results = new ArrayList<>();
+                    while (resultSet.next()) {
+                        results.add(mapper.mapRow(resultSet));
+                    }
+                    event.finish(OrmMetrics.Timer.QUERY, sql, results.size());
+                    return results;
+                }
+            } catch (SQLException e) {
+                this.checkBroken(connection, e);
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to execute query: " + sql, e);
+        }
+    }
+
+    /**
+     * Resultado como Stream perezoso sobre un cursor abierto: cada fila se mapea al
+     * consumirla y el driver trae de a fetchSize filas, asi la memoria no depende del
+     * tamano del resultado. Mientras el Stream este abierto retiene una conexion; hay que
+     * cerrarlo (try-with-resources). Al agotarse libera todo por si solo.
+     * <p>
+     * No usa el cache de statements: el cursor necesita su propio statement con el
+     * fetchSize, y algunos drivers (PostgreSQL) solo lo respetan fuera de autocommit,
+     * que se apaga mientras dure la lectura.
+     */
+    public <T> Stream<T> stream(String sql, Object[] params, int fetchSize, RowMapper<T> mapper) {
+        PooledConnection connection;
+        try {
+            connection = this.connection();
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to execute query: " + sql, e);
+        }
+
+        Cursor<T> cursor = new Cursor<>(connection, sql, mapper);
+        try {
+            cursor.open(params, fetchSize);
+        } catch (SQLException e) {
+            this.checkBroken(connection, e);
+            cursor.close();
+            throw new PersistenceException("Failed to execute query: " + sql, e);
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    /**
+     * Primera fila del resultado, o null si no hay ninguna
+     */
+    public <T> T queryForObject(String sql, Object[] params, RowMapper<T> mapper) {
+        try (PooledConnection connection = this.connection()) {
+            try {
+                StatementEvent event = StatementEvent.start();
+                PreparedStatement statement = connection.prepare(sql);
+                this.bind(statement, params);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    T result = resultSet.next() ? mapper.mapRow(resultSet) : null;
+                    event.finish(OrmMetrics.Timer.QUERY, sql, result != null ? 1 : 0);
+                    return result;
+                }
+            } catch (SQLException e) {
+                this.checkBroken(connection, e);
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to execute query: " + sql, e);
+        }
+    }
+
+    /**
+     * @return filas afectadas
+     */
+    public int update(String sql, Object[] params) {
+        try (PooledConnection connection = this.writeConnection(1)) {
+            try {
+                StatementEvent event = StatementEvent.start();
+                PreparedStatement statement = connection.prepare(sql);
+                this.bind(statement, params);
+                int rows = statement.executeUpdate();
+                event.finish(OrmMetrics.Timer.UPDATE, sql, rows);
+                return rows;
+            } catch (SQLException e) {
+                this.checkBroken(connection, e);
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to execute update: " + sql, e);
+        }
+    }
+
+    /**
+     * Ejecuta un INSERT y devuelve la primera clave generada convertida a keyType, o null
+     * si no hubo
+     */
+    public <K> K insert(String sql, Object[] params, Class<K> keyType) {
+        try (PooledConnection connection = this.writeConnection(1)) {
+            try {
+                StatementEvent event = StatementEvent.start();
+                PreparedStatement statement = connection.prepareWithGeneratedKeys(sql);
+                this.bind(statement, params);
+                int rows = statement.executeUpdate();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    K key = keys.next() ? keys.getObject(1, keyType) : null;
+                    event.finish(OrmMetrics.Timer.UPDATE, sql, rows);
+                    return key;
+                }
+            } catch (SQLException e) {
+                this.checkBroken(connection, e);
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to execute insert: " + sql, e);
+        }
+    }
+
+    /**
+     * Ejecuta el mismo SQL con cada arreglo de parametros usando addBatch/executeBatch cada
+     * batchSize filas, en una sola transaccion de la conexion: o se escriben todas o ninguna.
+     *
+     * @return filas afectadas por cada arreglo de parametros
+     */
+    public int[] batchUpdate(String sql, List<Object[]> params, int batchSize) {
+        try (PooledConnection connection = this.writeConnection(params.size())) {
+            try {
+                PreparedStatement statement = connection.prepare(sql);
+                int[] counts = new int[params.size()];
+                this.inTransaction(connection, () -> {
+                    int done = 0;
+                    StatementEvent event = StatementEvent.start();
+                    try {
+                        for (int i = 0; i < params.size(); i++) {
+                            this.bind(statement, params.get(i));
+                            statement.addBatch();
+                            if (i + 1 - done == batchSize || i == params.size() - 1) {
+                                int[] result = statement.executeBatch();
+                                System.arraycopy(result, 0, counts, done, result.length);
+                                event.finish(OrmMetrics.Timer.BATCH, sql, affectedRows(result), result.length);
+                                event = StatementEvent.start();
+                                done = i + 1;
+                            }
+                        }
+                    } finally {
+                        //El statement vuelve al cache de la conexion: si fallo, las filas que
+                        //quedaron en el batch saldrian con el proximo batch del mismo SQL
+                        statement.clearBatch();
+                    }
+                });
+                return counts;
+            } catch (SQLException e) {
+                this.checkBroken(connection, e);
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to execute batch: " + sql, e);
+        }
+    }
+
+    /**
+     * Como {@link #batchUpdate} para INSERTs con clave generada. Devuelve las claves en el
+     * orden de los parametros; depende de que el driver las informe despues de executeBatch.
+     */
+    public <K> List<K> batchInsert(String sql, List<Object[]> params, int batchSize, Class<K> keyType) {
+        try (PooledConnection connection = this.writeConnection(params.size())) {
+            try {
+                PreparedStatement statement = connection.prepareWithGeneratedKeys(sql);
+                List<K> keys = new ArrayList<>(params.size());
+                this.inTransaction(connection, () -> {
+                    int done = 0;
+                    StatementEvent event = StatementEvent.start();
+                    try {
+                        for (int i = 0; i < params.size(); i++) {
+                            this.bind(statement, params.get(i));
+                            statement.addBatch();
+                            if (i + 1 - done == batchSize || i == params.size() - 1) {
+                                int[] result = statement.executeBatch();
+                                try (ResultSet generated = statement.getGeneratedKeys()) {
+                                    while (generated.next()) keys.add(generated.getObject(1, keyType));
+                                }
+                                event.finish(OrmMetrics.Timer.BATCH, sql, affectedRows(result), result.length);
+                                event = StatementEvent.start();
+                                done = i + 1;
+                            }
+                        }
+                    } finally {
+                        //Igual que en batchUpdate
+                        statement.clearBatch();
+                    }
+                    //Sin una clave por fila no se puede asignar el id a cada entidad
+                    if (keys.size() != params.size()) {
+                        throw new PersistenceException("Driver returned " + keys.size() + " generated keys for "
+                                + params.size() + " rows: " + sql);
+                    }
+                });
+                return keys;
+            } catch (SQLException e) {
+                this.checkBroken(connection, e);
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to execute batch insert: " + sql, e);
+        }
+    }
+
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Corre work con autocommit apagado y hace commit, o rollback si falla. Si la conexion
+     * ya no estaba en autocommit la transaccion es de otro y no se toca.
+     */
+    private void inTransaction(PooledConnection connection, SqlWork work) throws SQLException {
+        Connection jdbc = connection.getConnection();
+        if (!jdbc.getAutoCommit()) {
+            work.run();
+            return;
+        }
+
+        jdbc.setAutoCommit(false);
+        try {
+            work.run();
+            jdbc.commit();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                jdbc.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        } finally {
+            jdbc.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Cursor de {@link #stream}; se cierra una sola vez, al agotarse o al cerrar el Stream
+     */
+    private final class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final PooledConnection connection;
+        private final String sql;
+        private final RowMapper<T> mapper;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private boolean restoreAutoCommit;
+        private boolean closed;
+        private StatementEvent event;
+        private long rows;
+
+        Cursor(PooledConnection connection, String sql, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.connection = connection;
+            this.sql = sql;
+            this.mapper = mapper;
+        }
+
+        void open(Object[] params, int fetchSize) throws SQLException {
+            Connection jdbc = connection.getConnection();
+            if (jdbc.getAutoCommit()) {
+                jdbc.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            event = StatementEvent.start();
+            statement = jdbc.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0) statement.setFetchSize(fetchSize);
+            QueryExecutor.this.bind(statement, params);
+            resultSet = statement.executeQuery();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) return false;
+            try {
+                if (!resultSet.next()) {
+                    this.close();
+                    return false;
+                }
+                rows++;
+                action.accept(mapper.mapRow(resultSet));
+                return true;
+            } catch (SQLException e) {
+                checkBroken(connection, e);
+                this.close();
+                throw new PersistenceException("Failed to read query results: " + sql, e);
+            } catch (RuntimeException e) {
+                this.close();
+                throw e;
+            }
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            //Incluye el tiempo que el consumidor tardo entre filas
+            if (event != null) event.finish(OrmMetrics.Timer.QUERY, sql, rows);
+            try {
+                if (resultSet != null) resultSet.close();
+                if (statement != null) statement.close();
+                if (restoreAutoCommit) {
+                    //Solo se leyo: se termina la transaccion de lectura y se vuelve a autocommit
+                    Connection jdbc = connection.getConnection();
+                    jdbc.rollback();
+                    jdbc.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                //Una conexion que no se pudo dejar limpia no vuelve al pool
+                connection.markBroken();
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    private static long affectedRows(int[] counts) {
+        long rows = 0;
+        for (int count : counts) {
+            //SUCCESS_NO_INFO (-2): el driver no informa cuantas
+            if (count > 0) rows += count;
+        }
+        return rows;
+    }
+
+    private void bind(PreparedStatement statement, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            statement.setObject(i + 1, params[i]);
+        }
+    }
+
+    /**
+     * SQLState 08: error de conexion, la conexion no vuelve al pool
+     */
+    private void checkBroken(PooledConnection connection, SQLException e) {
+        String state = e.getSQLState();
+        if (state == null || state.startsWith("08")) connection.markBroken();
+    }
 }
@@ -0,0 +1,45 @@
+package org.project.entityManager.entity;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Elige a que replica va cada lectura. Se llama una vez por lectura y desde varios hilos.
+ */
+@FunctionalInterface
+public interface ReplicaSelector {
+
+    /**
+     * @param replicas pools de las replicas, nunca vacio
+     * @return posicion de la replica elegida
+     */
+    int select(List<ConnectionPool> replicas);
+
+    /**
+     * Una replica tras otra
+     */
+    static ReplicaSelector roundRobin() {
+        AtomicInteger next = new AtomicInteger();
+        return replicas -> Math.floorMod(next.getAndIncrement(), replicas.size());
+    }
+
+    /**
+     * La replica con menos conexiones prestadas mas hilos esperando una; los empates van
+     * a la primera
+     */
+    static ReplicaSelector leastInFlight() {
+        return replicas -> {
+            int best = 0;
+            int bestInFlight = Integer.MAX_VALUE;
+            for (int i = 0; i < replicas.size(); i++) {
+                ConnectionPool pool = replicas.get(i);
+                int inFlight = pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+                if (inFlight < bestInFlight) {
+                    best = i;
+                    bestInFlight = inFlight;
+                }
+            }
+            return best;
+        };
+    }
+}
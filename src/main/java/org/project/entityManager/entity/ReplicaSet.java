@@ -0,0 +1,60 @@
+package org.project.entityManager.entity;
+
+import org.project.entityManager.configuration.ConnectionPoolConfig;
+import org.project.entityManager.configuration.ReadReplicaConfig;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pools de las replicas de lectura, con un {@link QueryExecutor} por replica. Es
+ * thread-safe y lo comparten los EntityManager.
+ */
+public class ReplicaSet implements AutoCloseable {
+
+    private final List<ConnectionPool> pools;
+    private final QueryExecutor[] executors;
+    private final ReplicaSelector selector;
+    private final long primaryAfterWriteNanos;
+
+    public ReplicaSet(ReadReplicaConfig config, ConnectionPoolConfig poolConfig) {
+        List<ConnectionPool> replicas = new ArrayList<>(config.dataSources().size());
+        for (DataSource dataSource : config.dataSources()) {
+            replicas.add(new ConnectionPool(dataSource, poolConfig));
+        }
+        this.pools = List.copyOf(replicas);
+        this.executors = pools.stream().map(QueryExecutor::new).toArray(QueryExecutor[]::new);
+        this.selector = config.selector();
+        Duration primaryAfterWrite = config.primaryAfterWrite();
+        this.primaryAfterWriteNanos = primaryAfterWrite == null ? Long.MAX_VALUE : primaryAfterWrite.toNanos();
+    }
+
+    public boolean isEmpty() {
+        return pools.isEmpty();
+    }
+
+    /**
+     * Executor de la replica que elige el selector; no llamar si {@link #isEmpty()}
+     */
+    public QueryExecutor select() {
+        return executors.length == 1 ? executors[0] : executors[selector.select(pools)];
+    }
+
+    /**
+     * Si una sesion que escribio hace elapsedNanos todavia tiene que leer del primario
+     */
+    public boolean readsFromPrimaryAfterWrite(long elapsedNanos) {
+        return elapsedNanos < primaryAfterWriteNanos;
+    }
+
+    public List<ConnectionPool> getPools() {
+        return pools;
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(ConnectionPool::close);
+    }
+}
@@ -0,0 +1,147 @@
+package org.project.entityManager.entity;
+
+import org.project.cache.model.EntityMetadata;
+import org.project.cache.model.FieldMetadata;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * SQL de las operaciones CRUD de una entidad, generado una vez a partir de su metadata.
+ * Los parametros van en el orden de los campos de la metadata, sin el id; en update el
+ * id va al final y en insertWithId al principio.
+ */
+public final class SqlTemplates {
+
+    //Los UPDATE parciales se indexan por una mascara de bits de las columnas
+    public static final int MAX_PARTIAL_UPDATE_COLUMNS = Long.SIZE;
+
+    private final String table;
+    private final String idColumn;
+    private final List<String> columns;
+    private final ConcurrentHashMap<Long, String> partialUpdates;
+    private final ConcurrentHashMap<Integer, String> selectByIds;
+    private final String selectById;
+    private final String insert;
+    private final String insertWithId;
+    private final String update;
+    private final String deleteById;
+
+    private SqlTemplates(String table, String idColumn, List<String> columns,
+                         String selectById, String insert, String insertWithId, String update, String deleteById) {
+        this.table = table;
+        this.idColumn = idColumn;
+        this.columns = columns;
+        this.partialUpdates = new ConcurrentHashMap<>();
+        this.selectByIds = new ConcurrentHashMap<>();
+        this.selectById = selectById;
+        this.insert = insert;
+        this.insertWithId = insertWithId;
+        this.update = update;
+        this.deleteById = deleteById;
+    }
+
+    public static SqlTemplates of(EntityMetadata metadata) {
+        String table = metadata.getTableName();
+        String idColumn = metadata.getIdColumn();
+        List<String> columns = metadata.getFields().stream()
+                .filter(field -> !field.isId())
+                .map(FieldMetadata::getColumnName)
+                .toList();
+
+        String insert = String.format("INSERT INTO %s (%s) VALUES (%s)",
+                table, String.join(", ", columns), placeholders(columns.size()));
+        if (idColumn == null) return new SqlTemplates(table, null, columns, null, insert, null, null, null);
+
+        String insertWithId = String.format("INSERT INTO %s (%s%s) VALUES (%s)",
+                table, idColumn, columns.isEmpty() ? "" : ", " + String.join(", ", columns),
+                placeholders(columns.size() + 1));
+        String update = String.format("UPDATE %s SET %s WHERE %s = ?",
+                table, columns.stream().map(column -> column + " = ?").collect(Collectors.joining(", ")), idColumn);
+
+        return new SqlTemplates(table, idColumn, columns,
+                String.format("SELECT * FROM %s WHERE %s = ?", table, idColumn),
+                insert,
+                insertWithId,
+                columns.isEmpty() ? null : update,
+                String.format("DELETE FROM %s WHERE %s = ?", table, idColumn)
+        );
+    }
+
+    public String selectById() {
+        return require(selectById, "select by id");
+    }
+
+    /**
+     * SELECT con {@code WHERE id IN (?, ...)} de count parametros. Para reusar statements
+     * conviene pedir solo tamanos de {@link #inListShape}.
+     */
+    public String selectByIds(int count) {
+        String cached = selectByIds.get(count);
+        if (cached != null) return cached;
+        require(selectById, "select by ids");
+        return selectByIds.computeIfAbsent(count, n ->
+                String.format("SELECT * FROM %s WHERE %s IN (%s)", table, idColumn, placeholders(n)));
+    }
+
+    /**
+     * Tamano de IN-list a usar para count ids: la menor potencia de dos que los contiene,
+     * hasta max. Los lugares sobrantes se rellenan repitiendo un id, asi una entidad usa
+     * pocos SQL distintos y sus statements quedan cacheados.
+     */
+    public static int inListShape(int count, int max) {
+        if (count >= max) return max;
+        if (count <= 1) return 1;
+        return Math.min(max, Integer.highestOneBit(count - 1) << 1);
+    }
+
+    public String insert() {
+        return insert;
+    }
+
+    public String insertWithId() {
+        return require(insertWithId, "insert with id");
+    }
+
+    public String update() {
+        return require(update, "update");
+    }
+
+    /**
+     * UPDATE que solo escribe las columnas marcadas en la mascara (bit i = columna i de la
+     * metadata), con los valores en ese orden y el id al final. Se genera una vez por mascara.
+     * Solo cubre las primeras {@link #MAX_PARTIAL_UPDATE_COLUMNS} columnas.
+     */
+    public String update(long dirtyColumns) {
+        if (dirtyColumns == 0) throw new IllegalArgumentException("No columns to update");
+        require(update, "update");
+        String cached = partialUpdates.get(dirtyColumns);
+        if (cached != null) return cached;
+        return partialUpdates.computeIfAbsent(dirtyColumns, this::buildUpdate);
+    }
+
+    public String deleteById() {
+        return require(deleteById, "delete by id");
+    }
+
+    private String buildUpdate(long dirtyColumns) {
+        StringBuilder set = new StringBuilder();
+        for (int i = 0; i < Math.min(columns.size(), MAX_PARTIAL_UPDATE_COLUMNS); i++) {
+            if ((dirtyColumns & (1L << i)) == 0) continue;
+            if (!set.isEmpty()) set.append(", ");
+            set.append(columns.get(i)).append(" = ?");
+        }
+        return String.format("UPDATE %s SET %s WHERE %s = ?", table, set, idColumn);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static String require(String sql, String operation) {
+        if (sql == null) throw new IllegalStateException("Entity has no " + operation + " statement");
+        return sql;
+    }
+}
@@ -0,0 +1,139 @@
+package org.project.entityManager.entity.impl;
+
+import org.project.entityManager.entity.AsyncEntityManager;
+import org.project.entityManager.entity.EntityManager;
+import org.project.entityManager.entity.PersistenceException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Corre cada operacion en un hilo virtual. Un hilo virtual bloqueado en JDBC o en el
+ * semaforo no ocupa un hilo de plataforma, asi se pueden tener miles de operaciones
+ * pendientes.
+ * <p>
+ * Hay un semaforo por destino: findAsync y findAllAsync van a las replicas si las hay, y
+ * pasan tantas como conexiones suman sus pools; el resto va al primario, y pasan tantas
+ * como conexiones tiene su pool. Asi las lecturas no le quitan lugar a las escrituras.
+ */
+public class DefaultAsyncEntityManager implements AsyncEntityManager {
+
+    private final Lane primary;
+    private final Lane reads;
+    private final ExecutorService executor;
+
+    /**
+     * Todas las operaciones con los mismos EntityManager y el mismo limite
+     *
+     * @param entityManagers crea un EntityManager por operacion; deben compartir el pool
+     * @param maxConcurrency operaciones contra la base al mismo tiempo, normalmente el
+     *                       tamano del pool
+     */
+    public DefaultAsyncEntityManager(Supplier<EntityManager> entityManagers, int maxConcurrency) {
+        this(entityManagers, maxConcurrency, null, 0);
+    }
+
+    /**
+     * @param primaryEntityManagers crea los EntityManager que leen y escriben en el primario
+     * @param primaryConcurrency    tamano del pool del primario
+     * @param replicaEntityManagers crea los EntityManager de findAsync y findAllAsync, que
+     *                              leen de las replicas; null para usar los del primario
+     * @param replicaConcurrency    conexiones que suman los pools de las replicas
+     */
+    public DefaultAsyncEntityManager(Supplier<EntityManager> primaryEntityManagers, int primaryConcurrency,
+                                     Supplier<EntityManager> replicaEntityManagers, int replicaConcurrency) {
+        this.primary = new Lane(primaryEntityManagers, primaryConcurrency);
+        this.reads = replicaEntityManagers == null ? primary : new Lane(replicaEntityManagers, replicaConcurrency);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> findAsync(Class<T> entityClass, Object id) {
+        return this.submit(reads, em -> em.find(entityClass, id));
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> findAllAsync(Class<T> entityClass, Collection<?> ids) {
+        return this.submit(reads, em -> em.findAll(entityClass, ids));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> persistAsync(T entity) {
+        return this.executeAsync(em -> {
+            em.persist(entity);
+            return entity;
+        });
+    }
+
+    @Override
+    public <T> CompletableFuture<T> mergeAsync(T entity) {
+        return this.executeAsync(em -> em.merge(entity));
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAsync(Object entity) {
+        return this.executeAsync(em -> {
+            em.remove(entity);
+            return null;
+        });
+    }
+
+    @Override
+    public <R> CompletableFuture<R> executeAsync(Function<EntityManager, R> work) {
+        return this.submit(primary, work);
+    }
+
+    private <R> CompletableFuture<R> submit(Lane lane, Function<EntityManager, R> work) {
+        try {
+            return CompletableFuture.supplyAsync(() -> lane.run(work), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new IllegalStateException("AsyncEntityManager is closed", e));
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * EntityManager de un destino y el semaforo de su pool
+     */
+    private record Lane(Supplier<EntityManager> entityManagers, Semaphore permits) {
+
+        Lane(Supplier<EntityManager> entityManagers, int maxConcurrency) {
+            this(entityManagers, new Semaphore(checkConcurrency(maxConcurrency)));
+        }
+
+        private static int checkConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+            return maxConcurrency;
+        }
+
+        <R> R run(Function<EntityManager, R> work) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PersistenceException("Interrupted while waiting to run", e);
+            }
+            try (EntityManager entityManager = entityManagers.get()) {
+                return work.apply(entityManager);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                //Solo puede venir de close()
+                throw new PersistenceException("Failed to close EntityManager", e);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
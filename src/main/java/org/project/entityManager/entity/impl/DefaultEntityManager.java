@@ -2,137 +2,667 @@ package org.project.entityManager.entity.impl;
 
 import org.project.cache.core.OrmCacheManager;
 import org.project.cache.model.EntityMetadata;
+import org.project.cache.util.TypedCacheKey;
+import org.project.entityManager.configuration.BatchConfig;
 import org.project.entityManager.configuration.EntityManagerConfig;
 import org.project.entityManager.entity.ConnectionPool;
 import org.project.entityManager.entity.EntityManager;
 import org.project.entityManager.entity.MetadataManager;
+import org.project.entityManager.entity.Query;
 import org.project.entityManager.entity.QueryExecutor;
+import org.project.entityManager.entity.ReplicaSet;
+import org.project.entityManager.entity.RowMapper;
+import org.project.entityManager.entity.SqlTemplates;
+import org.project.entityManager.transaction.EntityOperation;
 import org.project.entityManager.transaction.Transaction;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class DefaultEntityManager implements EntityManager {
 
+    //Mayor IN-list de findAll; los tamanos menores son potencias de dos
+    private static final int MAX_IN_LIST = 256;
+
     private final ConnectionPool connectionPool;
+    private final ReplicaSet replicas;
     private final MetadataManager metadataManager;
     private final QueryExecutor queryExecutor;
     private final OrmCacheManager cacheManager;
-    private Transaction currentTransaction;
+    private final PersistenceContext persistenceContext;
+    private final BatchConfig batchConfig;
+    private final boolean ownsConnectionPools;
+    private EntityTransaction currentTransaction;
+    private long lastWriteNanos;
+    private boolean hasWritten;
     private boolean isOpen;
 
+    /**
+     * EntityManager con pools y cache propios, que se cierran con el
+     */
     public DefaultEntityManager(EntityManagerConfig config) {
-        this.connectionPool = new ConnectionPool(config.getDataSource());
-        this.metadataManager = new MetadataManager();
-        this.queryExecutor = new QueryExecutor();
-        this.cacheManager = new OrmCacheManager(config.getDefaultCacheTtl());
-        this.isOpen = true;
+        this(config, new OrmCacheManager(config.getCacheRegions()));
+        if (config.getInvalidationTransport() != null) {
+            cacheManager.startInvalidationBus(config.getInvalidationTransport(), config.getInvalidationFlushInterval());
+        }
     }
 
+    private DefaultEntityManager(EntityManagerConfig config, OrmCacheManager cacheManager) {
+        //La metadata se registra en el cache al construirse (tablas de cada clase, codec fuera del heap)
+        this(new ConnectionPool(config.getDataSource(), config.getConnectionPoolConfig()),
+                new ReplicaSet(config.getReadReplicaConfig(), config.getConnectionPoolConfig()),
+                new MetadataManager(metadata -> cacheManager.putMetadata(metadata.getEntityClass(), metadata)),
+                cacheManager, config.getBatchConfig(), true);
+    }
 
+    /**
+     * EntityManager que comparte pools, metadata y cache con otros (ver SmartORM). Cerrarlo
+     * no cierra los pools.
+     */
+    public DefaultEntityManager(ConnectionPool connectionPool, ReplicaSet replicas, MetadataManager metadataManager,
+                                OrmCacheManager cacheManager, BatchConfig batchConfig) {
+        this(connectionPool, replicas, metadataManager, cacheManager, batchConfig, false);
+    }
 
+    private DefaultEntityManager(ConnectionPool connectionPool, ReplicaSet replicas, MetadataManager metadataManager,
+                                 OrmCacheManager cacheManager, BatchConfig batchConfig, boolean ownsConnectionPools) {
+        this.connectionPool = connectionPool;
+        this.replicas = replicas;
+        this.metadataManager = metadataManager;
+        this.cacheManager = cacheManager;
+        this.queryExecutor = new QueryExecutor(connectionPool);
+        this.persistenceContext = new PersistenceContext();
+        this.batchConfig = batchConfig;
+        this.ownsConnectionPools = ownsConnectionPools;
+        this.isOpen = true;
+    }
+
+    /**
+     * La instancia que ya administra la sesion, o una copia propia de la cacheada: la
+     * instancia del cache compartido nunca sale de el. Un miss se lee de una replica si
+     * {@link #reader()} la elige, y entonces lo leido queda solo en la sesion
+     */
     @Override
     public <T> T find(Class<T> entityClass, Object id) {
         this.checkOpen();
 
-        //Intentar obtener del cache
-        Optional<T> cached = cacheManager.getEntity(entityClass, id);
-        if (cached.isPresent()) return cached.get();
+        T managed = persistenceContext.find(entityClass, id);
+        if (managed != null) return managed;
 
-        //Obtener metadata de la entidad
-        EntityMetadata metadata = metadataManager.getEntityMetadata(entityClass);
-        String tableName = metadata.getTableName();
-        String idColumn = metadata.getIdColumn();
+        TransactionCache own = this.transactionCache();
+        if (own != null && own.get(entityClass, id) != null) return this.manageCopy(this.findOwn(own, entityClass, id));
+
+        QueryExecutor reader = this.reader();
+        if (reader != queryExecutor) return this.findOnReplica(reader, entityClass, id);
+
+        //Cache primero; los misses concurrentes del mismo id hacen una sola consulta
+        return this.manageCopy(cacheManager.loadEntity(entityClass, id, () -> this.loadEntity(queryExecutor, entityClass, id)));
+    }
+
+    @Override
+    public <T> T find(Class<T> entityClass, long id) {
+        this.checkOpen();
+
+        T managed = persistenceContext.find(entityClass, id);
+        if (managed != null) return managed;
+
+        TransactionCache own = this.transactionCache();
+        if (own != null && own.get(entityClass, id) != null) return this.manageCopy(this.findOwn(own, entityClass, id));
 
-        //Construir y ejecutar query
-        String sql = String.format("SELECT * FROM %s WHERE %s = ?", tableName, idColumn);
-        List<T> results = new ArrayList<>(); // ACA VA EL QUERYEXECUTOR
+        T cached = cacheManager.getEntityIfPresent(entityClass, id);
+        if (cached != null) return this.manageCopy(cached);
 
-        if (!results.isEmpty()) {
-            T entity = results.get(0);
-            cacheManager.putEntity(entityClass, id, entity);
-            return entity;
+        Object boxedId = id;
+        QueryExecutor reader = this.reader();
+        if (reader != queryExecutor) return this.findOnReplica(reader, entityClass, boxedId);
+        return this.manageCopy(cacheManager.loadEntity(entityClass, boxedId, () -> this.loadEntity(queryExecutor, entityClass, boxedId)));
+    }
+
+    /**
+     * Una replica puede estar atrasada: lo que devuelve no se guarda en el cache compartido,
+     * que lo verian todas las sesiones, y se administra sin copiar porque nadie mas lo tiene
+     */
+    private <T> T findOnReplica(QueryExecutor reader, Class<T> entityClass, Object id) {
+        T cached = cacheManager.getEntity(entityClass, id).orElse(null);
+        if (cached != null) return this.manageCopy(cached);
+        return this.manage(this.loadEntity(reader, entityClass, id));
+    }
+
+    /**
+     * Resuelve primero los ids que estan en cache; el resto se consulta en IN-lists de
+     * tamano potencia de dos (rellenadas repitiendo un id) para reusar pocos statements.
+     * Lo cargado del primario se guarda en el cache de una vez y la sesion recibe copias,
+     * como en find; lo leido de una replica queda solo en la sesion.
+     * <p>
+     * Los ids se comparan normalizados como en el cache ({@link TypedCacheKey#normalizeId}),
+     * asi 1 y 1L son el mismo id aunque el campo de la entidad sea de otro tipo.
+     */
+    @Override
+    public <T> List<T> findAll(Class<T> entityClass, Collection<?> ids) {
+        this.checkOpen();
+
+        TransactionCache own = this.transactionCache();
+        Map<Object, T> found = new HashMap<>();
+        //Por id normalizado, con el id tal como lo paso el llamador
+        Map<Object, Object> missing = new LinkedHashMap<>();
+        for (Object id : ids) {
+            Object key = TypedCacheKey.normalizeId(id);
+            if (found.containsKey(key) || missing.containsKey(key)) continue;
+            T managed = persistenceContext.find(entityClass, id);
+            if (managed != null) {
+                found.put(key, managed);
+                continue;
+            }
+            if (own != null && own.get(entityClass, id) != null) {
+                T written = this.findOwn(own, entityClass, id);
+                if (written != null) found.put(key, written);
+                continue;
+            }
+            T cached = cacheManager.getEntity(entityClass, id).orElse(null);
+            if (cached != null) found.put(key, cached);
+            else missing.put(key, id);
         }
 
-        return null;
+        if (!missing.isEmpty()) {
+            QueryExecutor reader = this.reader();
+            Map<Object, T> loaded = this.loadAll(reader, entityClass, new ArrayList<>(missing.values()));
+            if (reader == queryExecutor) cacheManager.putEntities(entityClass, loaded);
+            //Lo leido de una replica no esta compartido: se administra sin copiarlo
+            else loaded.replaceAll((id, entity) -> this.manage(entity));
+            loaded.forEach((id, entity) -> found.put(TypedCacheKey.normalizeId(id), entity));
+        }
+
+        List<T> results = new ArrayList<>(found.size());
+        for (Object id : ids) {
+            T entity = found.remove(TypedCacheKey.normalizeId(id));
+            if (entity != null) results.add(this.manageCopy(entity));
+        }
+        return results;
+    }
+
+    private <T> Map<Object, T> loadAll(QueryExecutor executor, Class<T> entityClass, List<Object> ids) {
+        EntityMetadata metadata = metadataManager.getEntityMetadata(entityClass);
+        SqlTemplates sql = metadataManager.getSqlTemplates(entityClass);
+        int maxShape = Math.max(1, Math.min(MAX_IN_LIST, batchConfig.maxStatementParameters()));
+
+        Map<Object, T> loaded = new HashMap<>();
+        int start = 0;
+        while (start < ids.size()) {
+            int count = Math.min(maxShape, ids.size() - start);
+            int shape = SqlTemplates.inListShape(count, maxShape);
+            Object[] params = new Object[shape];
+            for (int i = 0; i < shape; i++) {
+                params[i] = ids.get(start + Math.min(i, count - 1));
+            }
+
+            String select = sql.selectByIds(shape);
+            for (T entity : executor.query(select, params, metadataManager.getRowMapper(entityClass, select))) {
+                loaded.put(metadata.getId(entity), entity);
+            }
+            start += count;
+        }
+        return loaded;
+    }
+
+    /**
+     * Solo lo que se lee del primario puede ir al cache compartido: una replica atrasada
+     * dejaria ahi una fila vieja (o su ausencia) para todas las sesiones
+     */
+    private <T> T loadEntity(QueryExecutor executor, Class<T> entityClass, Object id) {
+        String sql = metadataManager.getSqlTemplates(entityClass).selectById();
+        RowMapper<T> mapper = metadataManager.getRowMapper(entityClass, sql);
+
+        return executor.queryForObject(sql, new Object[]{id}, mapper);
+    }
+
+    /**
+     * Entidad que la transaccion activa escribio, o si la invalido, leida por la conexion
+     * de la transaccion (que ve sus propias escrituras) sin pasar por el cache compartido
+     */
+    private <T> T findOwn(TransactionCache own, Class<T> entityClass, Object id) {
+        Object written = own.get(entityClass, id);
+        if (written != TransactionCache.REMOVED) return entityClass.cast(written);
+
+        T loaded = this.loadEntity(queryExecutor, entityClass, id);
+        if (loaded != null) own.put(entityClass, id, loaded);
+        return loaded;
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
     }
 
     @Override
     public <T> void persist(T entity) {
         this.checkOpen();
         EntityMetadata metadata = metadataManager.getEntityMetadata(entity.getClass());
-
-        //Extraer valores de campos
-        Map<String, Object> values = metadata.extractValues(entity);
+        SqlTemplates sql = metadataManager.getSqlTemplates(entity.getClass());
         String tableName = metadata.getTableName();
 
-        //Construir query de insercion
-        String columns = String.join(", ", values.keySet());
-        String placeHolders = String.join(", ", Collections.nCopies(values.size(), "?"));
-        String sql = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, columns, placeHolders);
+        Object id = metadata.getId(entity);
+        if (!metadata.hasAssignedId(entity)) {
+            //Id generado por la base
+            Object[] params = metadata.extractColumnValues(entity);
+            id = queryExecutor.insert(sql.insert(), params, boxed(metadata.getIdField().getType()));
+            metadata.setId(entity, id);
+            persistenceContext.manage(entity, id, params);
+        } else {
+            Object[] params = new Object[metadata.getColumnCount() + 1];
+            params[0] = id;
+            metadata.extractColumnValues(entity, params, 1);
+            this.execute(sql.insertWithId(), params, EntityOperation.OperationType.INSERT);
+            persistenceContext.manage(entity, id, Arrays.copyOfRange(params, 1, params.length));
+        }
+
+        this.wrote();
 
-        //Ejecutar insercion
-        Object id = new Object(); // ACA VA EL QUERYEXECUTOR
-        metadata.setId(entity, id);
+        //Puede haber quedado cacheada la ausencia de este id
+        this.evict(entity.getClass(), id);
 
         //Invalidar queries relacionadas
-        cacheManager.invalidateQueriesForTable(tableName);
+        this.invalidateTable(tableName);
+    }
+
+    /**
+     * Inserta las entidades en lotes, agrupando las consecutivas de la misma clase. Cada
+     * grupo va en una transaccion; los ids generados se asignan en orden.
+     */
+    @Override
+    public <T> void persistAll(Collection<? extends T> entities) {
+        this.checkOpen();
+        List<Object> group = new ArrayList<>();
+        for (T entity : entities) {
+            if (!group.isEmpty() && group.get(0).getClass() != entity.getClass()) {
+                this.persistGroup(group);
+                group.clear();
+            }
+            group.add(entity);
+        }
+        if (!group.isEmpty()) this.persistGroup(group);
+    }
+
+    private void persistGroup(List<Object> group) {
+        Class<?> entityClass = group.get(0).getClass();
+        EntityMetadata metadata = metadataManager.getEntityMetadata(entityClass);
+        SqlTemplates sql = metadataManager.getSqlTemplates(entityClass);
+
+        List<Object> generated = new ArrayList<>();
+        List<Object[]> generatedParams = new ArrayList<>();
+        List<Object> assigned = new ArrayList<>();
+        List<Object[]> assignedParams = new ArrayList<>();
+        for (Object entity : group) {
+            if (!metadata.hasAssignedId(entity)) {
+                generated.add(entity);
+                generatedParams.add(metadata.extractColumnValues(entity));
+            } else {
+                Object[] params = new Object[metadata.getColumnCount() + 1];
+                params[0] = metadata.getId(entity);
+                metadata.extractColumnValues(entity, params, 1);
+                assigned.add(entity);
+                assignedParams.add(params);
+            }
+        }
+
+        if (!assigned.isEmpty()) {
+            if (this.inTransaction()) {
+                //El OperationBatcher los reescribe en INSERTs de varias filas si esta activado
+                for (Object[] params : assignedParams) {
+                    this.enqueue(sql.insertWithId(), params, EntityOperation.OperationType.INSERT);
+                }
+            } else {
+                queryExecutor.batchUpdate(sql.insertWithId(), assignedParams, batchConfig.batchSize());
+            }
+            for (int i = 0; i < assigned.size(); i++) {
+                Object[] params = assignedParams.get(i);
+                persistenceContext.manage(assigned.get(i), params[0], Arrays.copyOfRange(params, 1, params.length));
+            }
+        }
+        if (!generated.isEmpty()) {
+            List<?> keys = queryExecutor.batchInsert(sql.insert(), generatedParams, batchConfig.batchSize(),
+                    boxed(metadata.getIdField().getType()));
+            for (int i = 0; i < generated.size(); i++) {
+                metadata.setId(generated.get(i), keys.get(i));
+                persistenceContext.manage(generated.get(i), keys.get(i), generatedParams.get(i));
+            }
+        }
+
+        this.wrote();
+        for (Object entity : group) {
+            this.evict(entityClass, metadata.getId(entity));
+        }
+        this.invalidateTable(metadata.getTableName());
     }
 
+    /**
+     * Administra la entidad y escribe solo las columnas que cambiaron. Si no estaba
+     * administrada no hay foto propia contra la que comparar y se escriben todas las columnas.
+     * Si la sesion ya administra otra instancia de la misma fila, esa recibe el estado de
+     * la entidad y es la que se devuelve, como en JPA: nunca hay dos instancias por fila.
+     */
     @Override
     public <T> T merge(T entity) {
+        this.checkOpen();
+        T target = this.mergeTarget(entity);
+        PendingUpdate update = this.pendingUpdate(target, this.mergeSnapshot(target));
+        if (update != null) this.write(List.of(update));
+        return target;
+    }
+
+    /**
+     * Como {@link #merge} para varias entidades; los UPDATE con el mismo SQL van en lote
+     */
+    @Override
+    public <T> List<T> mergeAll(Collection<? extends T> entities) {
+        this.checkOpen();
+        List<PendingUpdate> updates = new ArrayList<>();
+        List<T> merged = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            T target = this.mergeTarget(entity);
+            merged.add(target);
+            PendingUpdate update = this.pendingUpdate(target, this.mergeSnapshot(target));
+            if (update != null) updates.add(update);
+        }
+        this.write(updates);
+        return List.copyOf(merged);
+    }
+
+    @Override
+    public void remove(Object entity) {
         this.checkOpen();
         EntityMetadata metadata = metadataManager.getEntityMetadata(entity.getClass());
         Object id = metadata.getId(entity);
 
-        if (id == null) throw new IllegalStateException("Cannot merge entity without id");
+        if (id == null) throw new IllegalStateException("Cannot remove entity without id");
 
-        Map<String, Object> values = metadata.extractValues(entity);
-        String tableName = metadata.getTableName();
-        String idColumn = metadata.getIdColumn();
+        SqlTemplates sql = metadataManager.getSqlTemplates(entity.getClass());
+        this.execute(sql.deleteById(), new Object[]{id}, EntityOperation.OperationType.DELETE);
+        this.wrote();
+        persistenceContext.detach(entity, id);
 
-        //Construir query de actualizacion
-        StringBuilder sql = new StringBuilder(String.format("UPDATE %s SET ", tableName));
-        String setClause = values.keySet().stream()
-                .filter(o -> !o.equals(idColumn))
-                .map(o -> o + " = ?")
-                .collect(Collectors.joining(", "));
+        this.evict(entity.getClass(), id);
+        this.invalidateTable(metadata.getTableName());
+    }
 
-        sql.append(setClause).append(" WHERE ").append(idColumn).append(" = ?");
+    /**
+     * Escribe los cambios de las entidades administradas comparando cada una con su foto.
+     * Las que no cambiaron no generan SQL; las demas actualizan solo sus columnas sucias.
+     */
+    @Override
+    public void flush() {
+        this.checkOpen();
+        List<PendingUpdate> updates = new ArrayList<>();
+        for (Map.Entry<Object, Object[]> managed : persistenceContext.entries()) {
+            PendingUpdate update = this.pendingUpdate(managed.getKey(), managed.getValue());
+            if (update != null) updates.add(update);
+        }
+        this.write(updates);
+    }
 
-        List<Object> params = new ArrayList<>(values.values());
-        params.add(id);
-        //ACA QUERYEXECUTOR
+    @Override
+    public void clear() {
+        persistenceContext.clear();
+    }
 
-        cacheManager.putEntity(entity.getClass(), id, entity);
-        cacheManager.invalidateQueriesForTable(tableName);
+    @Override
+    public void detach(Object entity) {
+        persistenceContext.detach(entity, metadataManager.getEntityMetadata(entity.getClass()).getId(entity));
+    }
 
+    /**
+     * Administra una entidad recien leida de la base. Si la sesion ya administra otra
+     * instancia de la misma fila devuelve esa; null se devuelve tal cual.
+     */
+    <T> T manage(T entity) {
+        if (entity == null || persistenceContext.contains(entity)) return entity;
+        EntityMetadata metadata = metadataManager.getEntityMetadata(entity.getClass());
+        T managed = this.managedInstance(entity, metadata);
+        if (managed != null) return managed;
+        persistenceContext.manage(entity, metadata);
         return entity;
     }
 
-    @Override
-    public void remove(Object entity) {
+    /**
+     * Como {@link #manage} para una instancia del cache compartido: se administra una copia,
+     * asi los cambios de la sesion no se ven en otros hilos antes del commit
+     */
+    <T> T manageCopy(T shared) {
+        if (shared == null || persistenceContext.contains(shared)) return shared;
+        EntityMetadata metadata = metadataManager.getEntityMetadata(shared.getClass());
+        T managed = this.managedInstance(shared, metadata);
+        if (managed != null) return managed;
+        T copy = metadata.copy(shared);
+        persistenceContext.manage(copy, metadata);
+        return copy;
+    }
 
+    @SuppressWarnings("unchecked")
+    private <T> T managedInstance(T entity, EntityMetadata metadata) {
+        Object id = metadata.getId(entity);
+        return id == null ? null : (T) persistenceContext.find(entity.getClass(), id);
     }
 
-    @Override
-    public void flush() {
+    /**
+     * Copia para guardar en el cache compartido, desligada de la instancia de la sesion
+     */
+    Object copy(Object entity) {
+        return metadataManager.getEntityMetadata(entity.getClass()).copy(entity);
+    }
 
+    @Override
+    public <T> Query<T> createQuery(String sql, Class<T> resultClass) {
+        this.checkOpen();
+        return new DefaultQuery<>(this, sql, resultClass, metadataManager.getRowMapper(resultClass, sql), cacheManager);
     }
 
     @Override
-    public void clear() {
+    public Transaction getTransaction() {
+        this.checkOpen();
+        if (currentTransaction == null) currentTransaction = new EntityTransaction(this, queryExecutor, cacheManager, batchConfig);
+        return currentTransaction;
+    }
 
+    /**
+     * Executor para una lectura: una replica si hay, salvo dentro de una transaccion o poco
+     * despues de que esta sesion escribio, que se lee del primario. Solo lo leido del
+     * primario se guarda en los caches compartidos
+     */
+    QueryExecutor reader() {
+        if (replicas.isEmpty() || queryExecutor.isPinned()) return queryExecutor;
+        if (hasWritten && replicas.readsFromPrimaryAfterWrite(System.nanoTime() - lastWriteNanos)) return queryExecutor;
+        return replicas.select();
     }
 
-    @Override
-    public void detach(Object entity) {
+    /**
+     * Executor del primario; una lectura por {@link #reader()} puede llenar los caches
+     * compartidos solo si este es el que recibio
+     */
+    QueryExecutor primary() {
+        return queryExecutor;
+    }
+
+    private boolean inTransaction() {
+        return currentTransaction != null && currentTransaction.isActive();
+    }
+
+    /**
+     * Ejecuta una escritura, o la encola si hay una transaccion activa: la transaccion las
+     * ejecuta en lotes antes de su proxima sentencia o en el commit
+     */
+    private void execute(String sql, Object[] params, EntityOperation.OperationType type) {
+        if (this.inTransaction()) this.enqueue(sql, params, type);
+        else queryExecutor.update(sql, params);
+    }
+
+    private void enqueue(String sql, Object[] params, EntityOperation.OperationType type) {
+        currentTransaction.enqueue(new EntityOperation(sql, Arrays.asList(params), type));
+    }
 
+    private void wrote() {
+        hasWritten = true;
+        lastWriteNanos = System.nanoTime();
+    }
+
+    /**
+     * Efectos en el cache de la transaccion activa, o null fuera de una transaccion
+     */
+    private TransactionCache transactionCache() {
+        return this.inTransaction() ? currentTransaction.getCache() : null;
+    }
+
+    /**
+     * true si la transaccion activa escribio en alguna de las tablas: sus consultas no usan
+     * el cache compartido
+     */
+    boolean isModifiedInTransaction(Collection<String> tableNames) {
+        TransactionCache own = this.transactionCache();
+        if (own == null) return false;
+        for (String tableName : tableNames) {
+            if (own.isTableModified(tableName)) return true;
+        }
+        return false;
+    }
+
+    // Efectos de una escritura en el cache: dentro de una transaccion esperan al commit
+
+    private void cache(Class<?> entityClass, Object id, Object entity) {
+        TransactionCache own = this.transactionCache();
+        //La transaccion guarda la instancia de la sesion y copia al publicar
+        if (own != null) own.put(entityClass, id, entity);
+        else cacheManager.putEntity(entityClass, id, this.copy(entity));
+    }
+
+    private void evict(Class<?> entityClass, Object id) {
+        TransactionCache own = this.transactionCache();
+        if (own != null) own.invalidate(entityClass, id);
+        else cacheManager.invalidateEntity(entityClass, id);
+    }
+
+    private void invalidateTable(String tableName) {
+        TransactionCache own = this.transactionCache();
+        if (own != null) own.invalidateTable(tableName);
+        else cacheManager.invalidateQueriesForTable(tableName);
+    }
+
+    /**
+     * Foto contra la que se compara una entidad en merge, o null si no estaba administrada.
+     * Una instancia cacheada no sirve de foto: puede estar vieja respecto de la fila, y una
+     * columna que coincide con ella quedaria sin escribir.
+     */
+    /**
+     * La instancia que recibe el merge: la entidad, o la que ya administra su fila con el
+     * estado de la entidad copiado encima. Su foto se conserva, asi se escriben solo las
+     * columnas que difieren
+     */
+    private <T> T mergeTarget(T entity) {
+        if (persistenceContext.contains(entity)) return entity;
+        EntityMetadata metadata = metadataManager.getEntityMetadata(entity.getClass());
+        T managed = this.managedInstance(entity, metadata);
+        if (managed == null) return entity;
+        metadata.copyState(entity, managed);
+        return managed;
+    }
+
+    private Object[] mergeSnapshot(Object entity) {
+        Object[] snapshot = persistenceContext.getSnapshot(entity);
+        if (snapshot != null) return snapshot;
+
+        if (metadataManager.getEntityMetadata(entity.getClass()).getId(entity) == null) {
+            throw new IllegalStateException("Cannot merge entity without id");
+        }
+        return null;
+    }
+
+    /**
+     * UPDATE de una entidad con sus valores actuales y la foto que se actualiza al escribirlo
+     */
+    private record PendingUpdate(Object entity, EntityMetadata metadata, Object id, String sql, Object[] params,
+                                 Object[] snapshot, Object[] current) {}
+
+    /**
+     * UPDATE de las columnas que difieren de la foto, de todas si snapshot es null, o null
+     * si la entidad esta limpia
+     */
+    private PendingUpdate pendingUpdate(Object entity, Object[] snapshot) {
+        EntityMetadata metadata = metadataManager.getEntityMetadata(entity.getClass());
+        Object id = metadata.getId(entity);
+        if (id == null) return null;
+
+        SqlTemplates sql = metadataManager.getSqlTemplates(entity.getClass());
+        Object[] current = metadata.extractColumnValues(entity);
+        long dirty = snapshot == null ? PersistenceContext.ALL_COLUMNS : PersistenceContext.dirtyColumns(snapshot, current);
+        if (dirty == 0) return null;
+
+        if (dirty == PersistenceContext.ALL_COLUMNS) {
+            //Columnas en el orden del template y el id al final
+            Object[] params = Arrays.copyOf(current, current.length + 1);
+            params[current.length] = id;
+            return new PendingUpdate(entity, metadata, id, sql.update(), params, snapshot, current);
+        }
+
+        //Valores sucios en orden de columna y el id al final
+        Object[] params = new Object[Long.bitCount(dirty) + 1];
+        int next = 0;
+        for (long remaining = dirty; remaining != 0; remaining &= remaining - 1) {
+            params[next++] = current[Long.numberOfTrailingZeros(remaining)];
+        }
+        params[next] = id;
+        return new PendingUpdate(entity, metadata, id, sql.update(dirty), params, snapshot, current);
+    }
+
+    /**
+     * Ejecuta los UPDATE agrupados por SQL (en lote si hay mas de uno), actualiza las fotos
+     * y el cache, e invalida las queries de cada tabla una vez
+     */
+    private void write(List<PendingUpdate> updates) {
+        if (updates.isEmpty()) return;
+        if (updates.size() == 1) {
+            this.execute(updates.get(0).sql(), updates.get(0).params(), EntityOperation.OperationType.UPDATE);
+        } else {
+            Map<String, List<Object[]>> bySql = new LinkedHashMap<>();
+            for (PendingUpdate update : updates) {
+                bySql.computeIfAbsent(update.sql(), k -> new ArrayList<>()).add(update.params());
+            }
+            bySql.forEach((sql, params) -> {
+                if (params.size() == 1 || this.inTransaction()) {
+                    //En una transaccion quedan encolados juntos y van en lote igual
+                    params.forEach(values -> this.execute(sql, values, EntityOperation.OperationType.UPDATE));
+                } else {
+                    queryExecutor.batchUpdate(sql, params, batchConfig.batchSize());
+                }
+            });
+        }
+
+        this.wrote();
+
+        Set<String> tables = new HashSet<>();
+        for (PendingUpdate update : updates) {
+            if (update.snapshot() != null) PersistenceContext.refresh(update.snapshot(), update.current());
+            else persistenceContext.manage(update.entity(), update.id(), update.current());
+            this.cache(update.entity().getClass(), update.id(), update.entity());
+            tables.add(update.metadata().getTableName());
+        }
+        tables.forEach(this::invalidateTable);
     }
 
     @Override
     public void close() throws Exception {
-
+        if (!isOpen) return;
+        isOpen = false;
+        if (currentTransaction != null && currentTransaction.isActive()) currentTransaction.rollback();
+        persistenceContext.clear();
+        if (ownsConnectionPools) {
+            connectionPool.close();
+            replicas.close();
+            cacheManager.closeInvalidationBus();
+        }
     }
 
     private void checkOpen() {
@@ -0,0 +1,140 @@
+package org.project.entityManager.entity.impl;
+
+import org.project.cache.core.OrmCacheManager;
+import org.project.cache.model.QueryStamp;
+import org.project.entityManager.entity.Query;
+import org.project.entityManager.entity.QueryExecutor;
+import org.project.entityManager.entity.RowMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Query sobre una entidad. getResultList materializa (y opcionalmente cachea) el
+ * resultado y administra las entidades; getResultStream lee de un cursor sin cache ni
+ * persistence context, para recorridos de cualquier tamano.
+ */
+class DefaultQuery<T> implements Query<T> {
+
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
+    //SQL que puede leer otras tablas ademas de la de la entidad: joins, subconsultas, UNION
+    //o varias tablas en el FROM
+    private static final Pattern OTHER_TABLES = Pattern.compile(
+            "\\bJOIN\\b|\\bUNION\\b|\\(\\s*SELECT\\b|\\bFROM\\s+[\\w.\"]+(\\s+(AS\\s+)?\\w+)?\\s*,",
+            Pattern.CASE_INSENSITIVE);
+
+    private final DefaultEntityManager entityManager;
+    private final String sql;
+    private final Class<T> resultClass;
+    private final RowMapper<T> mapper;
+    private final OrmCacheManager cacheManager;
+    private Object[] parameters;
+    private final Set<String> extraTables;
+    private int fetchSize;
+    private boolean cacheable;
+
+    DefaultQuery(DefaultEntityManager entityManager, String sql, Class<T> resultClass, RowMapper<T> mapper,
+                 OrmCacheManager cacheManager) {
+        this.entityManager = entityManager;
+        this.sql = sql;
+        this.resultClass = resultClass;
+        this.mapper = mapper;
+        this.cacheManager = cacheManager;
+        this.parameters = NO_PARAMETERS;
+        this.extraTables = new LinkedHashSet<>();
+    }
+
+    @Override
+    public Query<T> setParameter(int position, Object value) {
+        if (position < 1) throw new IllegalArgumentException("Parameter positions start at 1: " + position);
+        if (position > parameters.length) parameters = Arrays.copyOf(parameters, position);
+        parameters[position - 1] = value;
+        return this;
+    }
+
+    @Override
+    public Query<T> setFetchSize(int fetchSize) {
+        if (fetchSize < 0) throw new IllegalArgumentException("Fetch size must not be negative: " + fetchSize);
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    @Override
+    public Query<T> setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+        return this;
+    }
+
+    @Override
+    public Query<T> addTable(String tableName) {
+        extraTables.add(tableName);
+        return this;
+    }
+
+    @Override
+    public List<T> getResultList() {
+        //Con escrituras propias sin confirmar en alguna tabla el cache compartido no sirve
+        List<String> tables = this.tables();
+        if (tables == null || entityManager.isModifiedInTransaction(tables)) {
+            return this.manageAll(entityManager.reader().query(sql, parameters, mapper));
+        }
+
+        Optional<List<T>> cached = cacheManager.getQueryResult(sql, parameters, resultClass);
+        if (cached.isPresent()) return this.manageCopies(cached.get());
+
+        //El resultado lo comparten todas las sesiones: el de una replica atrasada no se guarda
+        QueryExecutor reader = entityManager.reader();
+        if (reader != entityManager.primary()) return this.manageAll(reader.query(sql, parameters, mapper));
+
+        //Estampado antes de consultar: una escritura concurrente deja el resultado obsoleto
+        QueryStamp stamp = cacheManager.stampTables(tables);
+        List<T> results = List.copyOf(reader.query(sql, parameters, mapper));
+        cacheManager.putQueryResult(sql, parameters, resultClass, results, stamp);
+        return this.manageCopies(results);
+    }
+
+    @Override
+    public Stream<T> getResultStream() {
+        return entityManager.reader().stream(sql, parameters.clone(), fetchSize, mapper);
+    }
+
+    @Override
+    public T getSingleResult() {
+        return entityManager.manage(entityManager.reader().queryForObject(sql, parameters, mapper));
+    }
+
+    private List<T> manageAll(List<T> results) {
+        List<T> managed = new ArrayList<>(results.size());
+        for (T entity : results) managed.add(entityManager.manage(entity));
+        return managed;
+    }
+
+    /**
+     * Las entidades de un resultado cacheado se comparten: la sesion recibe copias
+     */
+    private List<T> manageCopies(List<T> results) {
+        List<T> managed = new ArrayList<>(results.size());
+        for (T entity : results) managed.add(entityManager.manageCopy(entity));
+        return managed;
+    }
+
+    /**
+     * Tablas que invalidan el resultado cacheado, o null si no se cachea: no es cacheable,
+     * o lee otras tablas que no se agregaron con addTable
+     */
+    private List<String> tables() {
+        if (!cacheable) return null;
+        if (extraTables.isEmpty() && OTHER_TABLES.matcher(sql).find()) return null;
+        Set<String> tables = new LinkedHashSet<>();
+        tables.add(cacheManager.tableOf(resultClass));
+        tables.addAll(extraTables);
+        return List.copyOf(tables);
+    }
+}
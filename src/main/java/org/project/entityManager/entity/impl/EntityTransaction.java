@@ -0,0 +1,138 @@
+package org.project.entityManager.entity.impl;
+
+import org.project.cache.core.OrmCacheManager;
+import org.project.entityManager.configuration.BatchConfig;
+import org.project.entityManager.entity.PooledConnection;
+import org.project.entityManager.entity.QueryExecutor;
+import org.project.entityManager.transaction.EntityOperation;
+import org.project.entityManager.transaction.Transaction;
+import org.project.entityManager.transaction.TransactionException;
+import org.project.entityManager.transaction.TransactionStatus;
+import org.project.entityManager.transaction.impl.DefaultTransaction;
+
+import java.sql.SQLException;
+
+/**
+ * Transaccion de un EntityManager. Al empezar toma una conexion del primario y la fija en
+ * el executor de la sesion, asi todas sus lecturas y escrituras van por esa conexion; al
+ * terminar la devuelve. El commit escribe antes los cambios pendientes (flush).
+ * <p>
+ * Las escrituras que no necesitan una clave generada se encolan en el {@link DefaultTransaction}
+ * y su OperationBatcher las ejecuta en lotes: en el commit, o antes de la proxima sentencia
+ * de la sesion, que asi ve sus propias escrituras.
+ * <p>
+ * Los efectos de sus escrituras en el cache quedan en un {@link TransactionCache} que se
+ * publica en el cache compartido despues del commit y se descarta en el rollback.
+ */
+class EntityTransaction implements Transaction {
+
+    private final DefaultEntityManager entityManager;
+    private final QueryExecutor queryExecutor;
+    private final OrmCacheManager cacheManager;
+    private final BatchConfig batchConfig;
+    private final TransactionCache cache;
+    private DefaultTransaction transaction;
+
+    EntityTransaction(DefaultEntityManager entityManager, QueryExecutor queryExecutor, OrmCacheManager cacheManager,
+                      BatchConfig batchConfig) {
+        this.entityManager = entityManager;
+        this.queryExecutor = queryExecutor;
+        this.cacheManager = cacheManager;
+        this.batchConfig = batchConfig;
+        this.cache = new TransactionCache();
+    }
+
+    TransactionCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void begin() {
+        if (this.isActive()) throw new IllegalStateException("Transaction is already active");
+
+        PooledConnection connection;
+        try {
+            connection = queryExecutor.getConnectionPool().getConnection();
+        } catch (SQLException e) {
+            throw new TransactionException("Failed to obtain a connection for the transaction", e);
+        }
+        transaction = new DefaultTransaction(connection.getConnection(), batchConfig);
+        queryExecutor.pin(connection, transaction::flushOperations);
+        try {
+            transaction.begin();
+        } catch (RuntimeException e) {
+            this.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void commit() {
+        if (!this.isActive()) throw new IllegalStateException("Transaction is not active");
+
+        try {
+            entityManager.flush();
+        } catch (RuntimeException e) {
+            this.rollback();
+            throw new TransactionException("Failed to flush before commit", e);
+        }
+
+        try {
+            transaction.recordOperations(queryExecutor.getPinnedOperations());
+            transaction.commit();
+        } catch (RuntimeException e) {
+            //El commit fallido ya hizo rollback
+            cache.discard();
+            entityManager.clear();
+            throw e;
+        } finally {
+            this.release();
+        }
+        cache.publish(cacheManager, entityManager::copy);
+    }
+
+    @Override
+    public void rollback() {
+        if (transaction == null || (!transaction.isActive() && transaction.getStatus() != TransactionStatus.FAILED)) {
+            throw new IllegalStateException("Transaction is not active or failed");
+        }
+        try {
+            transaction.recordOperations(queryExecutor.getPinnedOperations());
+            transaction.rollback();
+        } finally {
+            //Las fotos y lo escrito en el cache tienen valores que ya no estan en la base
+            cache.discard();
+            entityManager.clear();
+            this.release();
+        }
+    }
+
+    /**
+     * Encola una escritura para ejecutarla en lote con las demas
+     */
+    void enqueue(EntityOperation operation) {
+        transaction.addOperation(operation);
+    }
+
+    @Override
+    public boolean isActive() {
+        return transaction != null && transaction.isActive();
+    }
+
+    @Override
+    public TransactionStatus getStatus() {
+        return transaction != null ? transaction.getStatus() : TransactionStatus.NOT_STARTED;
+    }
+
+    private void release() {
+        PooledConnection connection = queryExecutor.unpin();
+        if (connection == null) return;
+        try {
+            //Tras un commit fallido la conexion queda fuera de autocommit
+            if (!connection.getConnection().getAutoCommit()) connection.getConnection().setAutoCommit(true);
+        } catch (SQLException e) {
+            connection.markBroken();
+        }
+        connection.close();
+    }
+}
@@ -0,0 +1,116 @@
+package org.project.entityManager.entity.impl;
+
+import org.project.cache.model.EntityMetadata;
+import org.project.cache.util.TypedCacheKey;
+import org.project.entityManager.entity.SqlTemplates;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Entidades administradas por un EntityManager, por identidad, con una foto de los
+ * valores de sus columnas tomada al cargarlas o escribirlas. Comparar contra la foto
+ * dice que columnas cambiaron sin volver a leer la base. Tambien se indexan por id, asi
+ * una sesion tiene una sola instancia por fila.
+ * <p>
+ * La foto es un arreglo con los mismos valores que {@link EntityMetadata#extractColumnValues};
+ * los byte[] se copian porque se pueden modificar en el lugar. No es thread-safe, como el
+ * EntityManager que lo usa.
+ */
+class PersistenceContext {
+
+    //Marca de columnas sucias cuando alguna queda fuera de la mascara de UPDATE parcial
+    static final long ALL_COLUMNS = -1L;
+
+    private final IdentityHashMap<Object, Object[]> snapshots = new IdentityHashMap<>();
+    private final Map<TypedCacheKey<?>, Object> byId = new HashMap<>();
+
+    /**
+     * Empieza a administrar la entidad si no lo estaba. Si ya lo estaba se conserva su
+     * foto, para no perder los cambios pendientes.
+     */
+    void manage(Object entity, EntityMetadata metadata) {
+        if (snapshots.containsKey(entity)) return;
+        this.manage(entity, metadata.getId(entity), metadata.extractColumnValues(entity));
+    }
+
+    /**
+     * Administra la entidad con una foto dada, por ejemplo los valores recien escritos
+     */
+    void manage(Object entity, Object id, Object[] columnValues) {
+        snapshots.put(entity, snapshot(columnValues));
+        if (id != null) byId.put(TypedCacheKey.createEntityKey(entity.getClass(), id), entity);
+    }
+
+    boolean contains(Object entity) {
+        return snapshots.containsKey(entity);
+    }
+
+    /**
+     * La instancia administrada de esa fila, o null
+     */
+    <T> T find(Class<T> entityClass, Object id) {
+        if (byId.isEmpty()) return null;
+        return entityClass.cast(byId.get(TypedCacheKey.createEntityKey(entityClass, id)));
+    }
+
+    Object[] getSnapshot(Object entity) {
+        return snapshots.get(entity);
+    }
+
+    Set<Map.Entry<Object, Object[]>> entries() {
+        return snapshots.entrySet();
+    }
+
+    void detach(Object entity, Object id) {
+        snapshots.remove(entity);
+        if (id != null) byId.remove(TypedCacheKey.createEntityKey(entity.getClass(), id), entity);
+    }
+
+    void clear() {
+        snapshots.clear();
+        byId.clear();
+    }
+
+    /**
+     * Mascara de las columnas cuyo valor actual difiere de la foto (bit i = columna i), 0
+     * si la entidad esta limpia, o {@link #ALL_COLUMNS} si cambio alguna columna que no
+     * entra en la mascara
+     */
+    static long dirtyColumns(Object[] snapshot, Object[] current) {
+        long dirty = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (sameValue(snapshot[i], current[i])) continue;
+            if (i >= SqlTemplates.MAX_PARTIAL_UPDATE_COLUMNS) return ALL_COLUMNS;
+            dirty |= 1L << i;
+        }
+        return dirty;
+    }
+
+    /**
+     * Actualiza la foto con los valores ya escritos
+     */
+    static void refresh(Object[] snapshot, Object[] current) {
+        System.arraycopy(snapshot(current), 0, snapshot, 0, current.length);
+    }
+
+    private static Object[] snapshot(Object[] columnValues) {
+        for (int i = 0; i < columnValues.length; i++) {
+            if (columnValues[i] instanceof byte[] bytes) columnValues[i] = bytes.clone();
+        }
+        return columnValues;
+    }
+
+    private static boolean sameValue(Object previous, Object current) {
+        if (previous == current) return true;
+        if (previous == null || current == null) return false;
+        if (previous instanceof byte[] a && current instanceof byte[] b) return Arrays.equals(a, b);
+        //1.0 y 1.00 son el mismo valor en la columna
+        if (previous instanceof BigDecimal a && current instanceof BigDecimal b) return a.compareTo(b) == 0;
+        return previous.equals(current);
+    }
+}
@@ -0,0 +1,76 @@
+package org.project.entityManager.entity.impl;
+
+import org.project.cache.core.OrmCacheManager;
+import org.project.cache.util.TypedCacheKey;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Efectos en el cache de una transaccion activa. Las entidades escritas, las invalidadas y
+ * las tablas modificadas quedan aca en vez de ir al {@link OrmCacheManager} compartido, asi
+ * otras sesiones no ven datos sin confirmar; la sesion propia las lee primero. El commit las
+ * publica juntas y el rollback las descarta.
+ * <p>
+ * Guarda el ultimo estado de cada clave: escribir despues de invalidar (o al reves) deja
+ * solo lo ultimo. No es thread-safe, como la sesion que lo usa.
+ */
+class TransactionCache {
+
+    //Clave invalidada en la transaccion: hay que leerla de la base, no del cache compartido
+    static final Object REMOVED = new Object();
+
+    private final Map<TypedCacheKey<?>, Object> entities = new LinkedHashMap<>();
+    private final Set<String> tables = new HashSet<>();
+
+    void put(Class<?> entityClass, Object id, Object entity) {
+        entities.put(TypedCacheKey.createEntityKey(entityClass, id), entity);
+    }
+
+    void invalidate(Class<?> entityClass, Object id) {
+        entities.put(TypedCacheKey.createEntityKey(entityClass, id), REMOVED);
+    }
+
+    void invalidateTable(String tableName) {
+        tables.add(tableName);
+    }
+
+    /**
+     * @return la entidad escrita en la transaccion, {@link #REMOVED}, o null si la
+     *         transaccion no toco esa clave
+     */
+    Object get(Class<?> entityClass, Object id) {
+        if (entities.isEmpty()) return null;
+        return entities.get(TypedCacheKey.createEntityKey(entityClass, id));
+    }
+
+    /**
+     * Las consultas sobre una tabla modificada no pueden usar ni llenar el cache compartido
+     */
+    boolean isTableModified(String tableName) {
+        return tables.contains(tableName);
+    }
+
+    /**
+     * Publica todo en el cache compartido, despues del commit en la base. Las entidades son
+     * las instancias de la sesion: se publica una copia de cada una.
+     */
+    void publish(OrmCacheManager cacheManager, UnaryOperator<Object> copier) {
+        Map<TypedCacheKey<?>, Object> written = new LinkedHashMap<>();
+        Set<TypedCacheKey<?>> invalidated = new HashSet<>();
+        entities.forEach((key, value) -> {
+            if (value == REMOVED) invalidated.add(key);
+            else written.put(key, copier.apply(value));
+        });
+        cacheManager.applyCommitted(written, invalidated, tables);
+        this.discard();
+    }
+
+    void discard() {
+        entities.clear();
+        tables.clear();
+    }
+}
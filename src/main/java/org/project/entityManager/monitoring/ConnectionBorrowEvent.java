@@ -0,0 +1,47 @@
+package org.project.entityManager.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de la espera por una conexion del pool, incluidas las validaciones y las
+ * conexiones nuevas que se abran mientras tanto
+ */
+@Name("org.project.ConnectionBorrow")
+@Label("Connection Borrow")
+@Description("Wait for a connection from the pool")
+@Category({"Vertux ORM", "JDBC"})
+@StackTrace(false)
+public final class ConnectionBorrowEvent extends jdk.jfr.Event {
+
+    @Label("Acquired")
+    boolean acquired;
+
+    @Label("Waiting Threads")
+    int waiting;
+
+    @Label("Total Connections")
+    int total;
+
+    private transient long startNanos;
+
+    public static ConnectionBorrowEvent start() {
+        ConnectionBorrowEvent event = new ConnectionBorrowEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    public void finish(boolean acquired, int waiting, int total) {
+        OrmMetrics.record(OrmMetrics.Timer.CONNECTION_WAIT, System.nanoTime() - startNanos);
+        this.end();
+        if (!this.shouldCommit()) return;
+        this.acquired = acquired;
+        this.waiting = waiting;
+        this.total = total;
+        this.commit();
+    }
+}
@@ -0,0 +1,61 @@
+package org.project.entityManager.monitoring;
+
+import org.project.cache.util.LatencyHistogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Histogramas de latencia del ORM en el proceso, con los mismos tiempos que los eventos
+ * JFR de este paquete. Registrar no toma locks ni aloca, asi quedan siempre activos. Las
+ * cargas del cache tienen su histograma por region en
+ * {@link org.project.cache.util.CacheMetrics}.
+ */
+public final class OrmMetrics {
+
+    public enum Timer {
+        /** Desde begin hasta commit o rollback */
+        TRANSACTION,
+        /** SELECTs, hasta leer la ultima fila */
+        QUERY,
+        /** INSERT, UPDATE o DELETE de una fila o sentencia */
+        UPDATE,
+        /** Un lote de addBatch/executeBatch o un INSERT de varias filas */
+        BATCH,
+        /** Espera por una conexion del pool */
+        CONNECTION_WAIT
+    }
+
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[Timer.values().length];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+    }
+
+    private OrmMetrics() {
+    }
+
+    public static void record(Timer timer, long nanos) {
+        HISTOGRAMS[timer.ordinal()].record(nanos);
+    }
+
+    public static LatencyHistogram.Snapshot snapshot(Timer timer) {
+        return HISTOGRAMS[timer.ordinal()].snapshot();
+    }
+
+    public static Map<Timer, LatencyHistogram.Snapshot> snapshot() {
+        Map<Timer, LatencyHistogram.Snapshot> snapshot = new EnumMap<>(Timer.class);
+        for (Timer timer : Timer.values()) {
+            snapshot.put(timer, snapshot(timer));
+        }
+        return snapshot;
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+}
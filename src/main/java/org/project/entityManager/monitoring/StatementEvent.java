@@ -0,0 +1,62 @@
+package org.project.entityManager.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de la ejecucion de un SQL. Se guarda el SQL con sus '?', nunca los
+ * parametros. El mismo tiempo se registra en {@link OrmMetrics}.
+ * <pre>{@code
+ * StatementEvent event = StatementEvent.start();
+ * int rows = statement.executeUpdate();
+ * event.finish(OrmMetrics.Timer.UPDATE, sql, rows);
+ * }</pre>
+ */
+@Name("org.project.Statement")
+@Label("SQL Statement")
+@Description("Execution of a SQL statement")
+@Category({"Vertux ORM", "JDBC"})
+@StackTrace(false)
+public final class StatementEvent extends jdk.jfr.Event {
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Kind")
+    String kind;
+
+    @Label("Rows")
+    @Description("Rows read or affected")
+    long rows;
+
+    @Label("Statements")
+    @Description("Parameter sets sent in the batch")
+    int batchSize;
+
+    private transient long startNanos;
+
+    public static StatementEvent start() {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    public void finish(OrmMetrics.Timer timer, String sql, long rows) {
+        this.finish(timer, sql, rows, 1);
+    }
+
+    public void finish(OrmMetrics.Timer timer, String sql, long rows, int batchSize) {
+        OrmMetrics.record(timer, System.nanoTime() - startNanos);
+        this.end();
+        if (!this.shouldCommit()) return;
+        this.sql = sql;
+        this.kind = timer.name();
+        this.rows = rows;
+        this.batchSize = batchSize;
+        this.commit();
+    }
+}
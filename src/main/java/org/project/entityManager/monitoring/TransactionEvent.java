@@ -0,0 +1,44 @@
+package org.project.entityManager.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de una transaccion, desde begin hasta commit o rollback
+ */
+@Name("org.project.Transaction")
+@Label("Transaction")
+@Description("Transaction from begin to commit or rollback")
+@Category({"Vertux ORM", "Transaction"})
+public final class TransactionEvent extends jdk.jfr.Event {
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Operations")
+    @Description("Statements executed inside the transaction")
+    int operations;
+
+    private transient long startNanos;
+
+    public static TransactionEvent start() {
+        TransactionEvent event = new TransactionEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    /**
+     * @param outcome COMMITTED, ROLLED_BACK o FAILED
+     */
+    public void finish(String outcome, int operations) {
+        OrmMetrics.record(OrmMetrics.Timer.TRANSACTION, System.nanoTime() - startNanos);
+        this.end();
+        if (!this.shouldCommit()) return;
+        this.outcome = outcome;
+        this.operations = operations;
+        this.commit();
+    }
+}
@@ -1,5 +1,8 @@
 package org.project.entityManager.transaction;
 
+import org.project.entityManager.monitoring.OrmMetrics;
+import org.project.entityManager.monitoring.StatementEvent;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -21,12 +24,26 @@ public class EntityOperation {
         this.type = type;
     }
 
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    public OperationType getType() {
+        return type;
+    }
+
     public void execute(Connection connection) throws SQLException {
+        StatementEvent event = StatementEvent.start();
         try(PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             for (int i = 0; i < parameters.size(); i++) {
                 preparedStatement.setObject(i + 1, parameters.get(i));
             }
-            preparedStatement.executeUpdate();
+            int rows = preparedStatement.executeUpdate();
+            event.finish(OrmMetrics.Timer.UPDATE, sql, rows);
         }
     }
 }
@@ -1,30 +1,40 @@
 package org.project.entityManager.transaction;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Log de las transacciones. El ciclo normal va en FINE y los mensajes con datos se arman
+ * con un Supplier, asi con el nivel apagado no se concatena nada; la duracion y las
+ * operaciones de cada transaccion quedan en el evento JFR
+ * {@link org.project.entityManager.monitoring.TransactionEvent}.
+ */
 public class TransactionLogger {
 
-    private static final Logger log = Logger.getLogger(String.valueOf(TransactionLogger.class));
+    private static final Logger log = Logger.getLogger(TransactionLogger.class.getName());
 
-    //PENSAR ESTO
     public void logTransactionStart() {
-        log.info("Transaction started");
+        log.fine("Transaction started");
     }
 
     public void logTransactionRolledBack() {
-        log.info("Transaction rolled back");
+        log.fine("Transaction rolled back");
     }
 
     public void logTransactionCommit() {
-        log.info("Transaction commited successfully");
+        log.fine("Transaction committed successfully");
+    }
+
+    public void logTransactionCommit(int operations) {
+        log.fine(() -> "Transaction committed successfully (" + operations + " operations)");
     }
 
     public void logTransactionError(Exception e) {
-        log.info("Transaction error: " + e.getMessage());
+        log.log(Level.WARNING, e, () -> "Transaction error: " + e.getMessage());
     }
 
     public void logRollbackError(Exception e) {
-        log.info("Rollback error: " + e.getMessage());
+        log.log(Level.WARNING, e, () -> "Rollback error: " + e.getMessage());
     }
 
 }
@@ -1,9 +1,12 @@
 package org.project.entityManager.transaction.impl;
 
+import org.project.entityManager.configuration.BatchConfig;
+import org.project.entityManager.monitoring.TransactionEvent;
 import org.project.entityManager.transaction.*;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -13,9 +16,20 @@ public class DefaultTransaction implements Transaction {
     private TransactionStatus status;
     private final Set<EntityOperation> pendingOperations;
     private final TransactionLogger logger;
+    private final OperationBatcher batcher;
+    private TransactionEvent event;
+    private int recordedOperations;
 
     public DefaultTransaction(Connection connection) {
+        this(connection, BatchConfig.defaults());
+    }
+
+    /**
+     * @param batchConfig como se agrupan las operaciones pendientes al hacer commit
+     */
+    public DefaultTransaction(Connection connection, BatchConfig batchConfig) {
         this.connection = connection;
+        this.batcher = new OperationBatcher(batchConfig);
         this.status = TransactionStatus.NOT_STARTED;
         this.pendingOperations = new LinkedHashSet<>();
         this.logger = new TransactionLogger();
@@ -31,6 +45,8 @@ public class DefaultTransaction implements Transaction {
         try {
             connection.setAutoCommit(false);
             status = TransactionStatus.ACTIVE;
+            event = TransactionEvent.start();
+            recordedOperations = 0;
             logger.logTransactionStart();
         } catch (SQLException e) {
             status = TransactionStatus.FAILED;
@@ -43,14 +59,14 @@ public class DefaultTransaction implements Transaction {
         this.checkActive();
 
         try {
-
-            for (EntityOperation operation : pendingOperations) {
-                operation.execute(connection);
-            }
+            //Las consecutivas con el mismo SQL van en batch, en orden
+            batcher.execute(connection, new ArrayList<>(pendingOperations));
 
             connection.commit();
             status = TransactionStatus.COMMITTED;
-            logger.logTransactionCommit();
+            int operations = this.operationCount();
+            this.finishEvent(operations);
+            logger.logTransactionCommit(operations);
 
             connection.setAutoCommit(true);
 
@@ -69,6 +85,7 @@ public class DefaultTransaction implements Transaction {
         try {
             connection.rollback();
             status = TransactionStatus.ROLLED_BACK;
+            this.finishEvent(this.operationCount());
             logger.logTransactionRolledBack();
             connection.setAutoCommit(true);
             pendingOperations.clear();
@@ -92,6 +109,44 @@ public class DefaultTransaction implements Transaction {
         pendingOperations.add(operation);
     }
 
+    /**
+     * Ejecuta ya las operaciones pendientes, en orden y en lotes, sin confirmar. Sirve antes
+     * de usar la conexion por fuera de la transaccion, para que vea sus efectos.
+     */
+    public void flushOperations() {
+        this.checkActive();
+        if (pendingOperations.isEmpty()) return;
+        try {
+            batcher.execute(connection, new ArrayList<>(pendingOperations));
+        } catch (SQLException e) {
+            throw new TransactionException("Failed to execute pending operations", e);
+        }
+        recordedOperations += pendingOperations.size();
+        pendingOperations.clear();
+    }
+
+    /**
+     * Suma al evento de la transaccion operaciones que se ejecutaron directo sobre la
+     * conexion, sin pasar por addOperation
+     */
+    public void recordOperations(int count) {
+        recordedOperations += count;
+    }
+
+    private int operationCount() {
+        return pendingOperations.size() + recordedOperations;
+    }
+
+    /**
+     * Cierra el evento con el estado actual; un rollback despues de un commit fallido no
+     * emite otro
+     */
+    private void finishEvent(int operations) {
+        if (event == null) return;
+        event.finish(status.name(), operations);
+        event = null;
+    }
+
     private void checkActive() {
         if (status != TransactionStatus.ACTIVE) {
             throw new IllegalStateException("Transaction is not active");
@@ -100,6 +155,7 @@ public class DefaultTransaction implements Transaction {
 
     private void handleCommitFailure(SQLException e) {
         status = TransactionStatus.FAILED;
+        this.finishEvent(this.operationCount());
         logger.logTransactionError(e);
         try {
             connection.rollback();
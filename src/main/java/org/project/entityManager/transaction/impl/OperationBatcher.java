@@ -0,0 +1,144 @@
+package org.project.entityManager.transaction.impl;
+
+import org.project.entityManager.configuration.BatchConfig;
+import org.project.entityManager.monitoring.OrmMetrics;
+import org.project.entityManager.monitoring.StatementEvent;
+import org.project.entityManager.transaction.EntityOperation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Ejecuta las operaciones pendientes de una transaccion agrupando las consecutivas con
+ * el mismo SQL. Cada grupo usa un solo PreparedStatement y va en lotes de batchSize con
+ * addBatch/executeBatch; el orden entre operaciones se respeta.
+ * <p>
+ * Si esta activado, un grupo de INSERTs de la forma {@code INSERT ... VALUES (?, ..., ?)}
+ * se reescribe en INSERTs de varias filas, limitados por batchSize y por la cantidad de
+ * parametros que acepta el driver.
+ */
+class OperationBatcher {
+
+    private static final Pattern VALUES_TUPLE = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+
+    private final BatchConfig config;
+
+    OperationBatcher(BatchConfig config) {
+        this.config = config;
+    }
+
+    void execute(Connection connection, List<EntityOperation> operations) throws SQLException {
+        int start = 0;
+        while (start < operations.size()) {
+            String sql = operations.get(start).getSql();
+            int end = start + 1;
+            while (end < operations.size() && operations.get(end).getSql().equals(sql)) end++;
+
+            List<EntityOperation> group = operations.subList(start, end);
+            if (group.size() == 1) {
+                group.get(0).execute(connection);
+            } else if (!this.executeMultiRow(connection, sql, group)) {
+                this.executeBatched(connection, sql, group);
+            }
+            start = end;
+        }
+    }
+
+    private void executeBatched(Connection connection, String sql, List<EntityOperation> group) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int pending = 0;
+            StatementEvent event = StatementEvent.start();
+            try {
+                for (EntityOperation operation : group) {
+                    bind(statement, operation.getParameters(), 0);
+                    statement.addBatch();
+                    if (++pending == config.batchSize()) {
+                        this.executeBatch(statement, sql, pending, event);
+                        event = StatementEvent.start();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) this.executeBatch(statement, sql, pending, event);
+            } finally {
+                //Un driver que cachea statements devuelve este mismo en el proximo
+                //prepareStatement: no tiene que arrastrar las filas de un batch que fallo
+                statement.clearBatch();
+            }
+        }
+    }
+
+    private void executeBatch(PreparedStatement statement, String sql, int size, StatementEvent event) throws SQLException {
+        long rows = 0;
+        for (int count : statement.executeBatch()) {
+            if (count > 0) rows += count;
+        }
+        event.finish(OrmMetrics.Timer.BATCH, sql, rows, size);
+    }
+
+    /**
+     * @return false si la reescritura esta desactivada o el SQL no tiene la forma
+     *         esperada, y hay que ejecutarlo en batch
+     */
+    private boolean executeMultiRow(Connection connection, String sql, List<EntityOperation> group) throws SQLException {
+        if (!config.rewriteInserts() || group.get(0).getType() != EntityOperation.OperationType.INSERT) return false;
+
+        int valuesIndex = sql.toUpperCase(Locale.ROOT).lastIndexOf("VALUES");
+        if (valuesIndex < 0) return false;
+        String tuple = sql.substring(valuesIndex + "VALUES".length()).trim();
+        if (!VALUES_TUPLE.matcher(tuple).matches()) return false;
+
+        int columns = group.get(0).getParameters().size();
+        int rowsPerStatement = Math.max(1, Math.min(config.batchSize(), config.maxStatementParameters() / Math.max(1, columns)));
+        String prefix = sql.substring(0, valuesIndex + "VALUES".length()) + " ";
+
+        //Todos los statements completos comparten SQL; solo el ultimo puede tener menos filas
+        PreparedStatement full = null;
+        try {
+            int start = 0;
+            while (start < group.size()) {
+                int rows = Math.min(rowsPerStatement, group.size() - start);
+                StatementEvent event = StatementEvent.start();
+                int affected;
+                if (rows == rowsPerStatement) {
+                    if (full == null) full = connection.prepareStatement(multiRow(prefix, tuple, rows));
+                    affected = this.executeRows(full, group, start, rows);
+                } else {
+                    try (PreparedStatement last = connection.prepareStatement(multiRow(prefix, tuple, rows))) {
+                        affected = this.executeRows(last, group, start, rows);
+                    }
+                }
+                //El SQL original: el reescrito solo cambia por la cantidad de filas
+                event.finish(OrmMetrics.Timer.BATCH, sql, affected, rows);
+                start += rows;
+            }
+        } finally {
+            if (full != null) full.close();
+        }
+        return true;
+    }
+
+    private int executeRows(PreparedStatement statement, List<EntityOperation> group, int start, int rows) throws SQLException {
+        int offset = 0;
+        for (int i = start; i < start + rows; i++) {
+            List<Object> parameters = group.get(i).getParameters();
+            bind(statement, parameters, offset);
+            offset += parameters.size();
+        }
+        return statement.executeUpdate();
+    }
+
+    private static String multiRow(String prefix, String tuple, int rows) {
+        return prefix + String.join(", ", Collections.nCopies(rows, tuple));
+    }
+
+    private static void bind(PreparedStatement statement, List<Object> parameters, int offset) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(offset + i + 1, parameters.get(i));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.project.orm;
+
+import org.project.cache.core.CacheSnapshot;
+import org.project.cache.core.OrmCacheManager;
+import org.project.cache.model.EntityMetadata;
+import org.project.entityManager.configuration.CacheSnapshotConfig;
+import org.project.entityManager.entity.AsyncEntityManager;
+import org.project.entityManager.entity.MetadataManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Guarda y restaura la {@link CacheSnapshot} de un SmartORM. Restaurar registra la
+ * metadata de cada clase y carga sus ids en tandas con el {@link AsyncEntityManager}, en
+ * paralelo y sin bloquear el arranque.
+ */
+class CacheWarmer implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(CacheWarmer.class.getName());
+
+    //Igual que el maximo de un IN-list de findAll
+    private static final int LOAD_CHUNK = 256;
+
+    private final CacheSnapshotConfig config;
+    private final OrmCacheManager cacheManager;
+    private final MetadataManager metadataManager;
+    private final AsyncEntityManager asyncEntityManager;
+    private ScheduledExecutorService scheduler;
+
+    CacheWarmer(CacheSnapshotConfig config, OrmCacheManager cacheManager, MetadataManager metadataManager,
+                AsyncEntityManager asyncEntityManager) {
+        this.config = config;
+        this.cacheManager = cacheManager;
+        this.metadataManager = metadataManager;
+        this.asyncEntityManager = asyncEntityManager;
+    }
+
+    /**
+     * Guarda la foto cada saveInterval, si esta configurado
+     */
+    void startSchedule() {
+        if (config.saveInterval() == null) return;
+        long interval = config.saveInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::saveQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    void save() throws IOException {
+        CacheSnapshot.capture(cacheManager, config.maxEntriesPerClass()).write(config.file());
+    }
+
+    /**
+     * Lee la foto y empieza a cargar sus entidades. Una foto que falta, esta rota o es
+     * mas vieja que maxAge se ignora; tambien las clases que ya no existen o cambiaron de
+     * tabla.
+     *
+     * @return cuantas entidades quedaron en el cache al terminar la carga
+     */
+    CompletableFuture<Integer> restore() {
+        if (!Files.exists(config.file())) return CompletableFuture.completedFuture(0);
+
+        CacheSnapshot snapshot;
+        try {
+            snapshot = CacheSnapshot.read(config.file());
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Ignoring unreadable cache snapshot " + config.file(), e);
+            return CompletableFuture.completedFuture(0);
+        }
+        if (config.maxAge() != null && snapshot.createdAt().plus(config.maxAge()).isBefore(Instant.now())) {
+            log.info(() -> "Ignoring cache snapshot taken at " + snapshot.createdAt());
+            return CompletableFuture.completedFuture(0);
+        }
+
+        List<CompletableFuture<Integer>> loads = new ArrayList<>();
+        for (CacheSnapshot.EntityKeys keys : snapshot.entities()) {
+            Class<?> entityClass = this.validate(keys);
+            if (entityClass == null) continue;
+            for (int start = 0; start < keys.ids().size(); start += LOAD_CHUNK) {
+                List<Object> chunk = keys.ids().subList(start, Math.min(start + LOAD_CHUNK, keys.ids().size()));
+                loads.add(this.load(entityClass, chunk));
+            }
+        }
+        return CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new))
+                .thenApply(done -> loads.stream().mapToInt(CompletableFuture::join).sum());
+    }
+
+    /**
+     * Registra la metadata de la clase
+     *
+     * @return la clase, o null si ya no existe, no es una entidad o cambio de tabla
+     */
+    private Class<?> validate(CacheSnapshot.EntityKeys keys) {
+        try {
+            Class<?> entityClass = Class.forName(keys.className(), false, CacheWarmer.class.getClassLoader());
+            EntityMetadata metadata = metadataManager.getEntityMetadata(entityClass);
+            if (!keys.tableName().equals(metadata.getTableName())) {
+                log.info(() -> "Skipping cache snapshot of " + keys.className() + ": table changed");
+                return null;
+            }
+            return entityClass;
+        } catch (ClassNotFoundException | RuntimeException e) {
+            log.log(Level.FINE, e, () -> "Skipping cache snapshot of " + keys.className());
+            return null;
+        }
+    }
+
+    private CompletableFuture<Integer> load(Class<?> entityClass, List<Object> ids) {
+        //executeAsync lee del primario: lo de las replicas no queda en el cache
+        return asyncEntityManager.executeAsync(em -> em.findAll(entityClass, ids)).handle((found, error) -> {
+            if (error != null) {
+                log.log(Level.WARNING, error, () -> "Failed to warm cache for " + entityClass.getName());
+                return 0;
+            }
+            return found.size();
+        });
+    }
+
+    private void saveQuietly() {
+        try {
+            this.save();
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Failed to save cache snapshot " + config.file(), e);
+        }
+    }
+
+    /**
+     * Deja de programar y guarda una ultima foto
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) scheduler.shutdownNow();
+        this.saveQuietly();
+    }
+}
@@ -1,9 +1,127 @@
 package org.project.orm;
 
+import org.project.cache.core.OrmCacheManager;
+import org.project.entityManager.configuration.EntityManagerConfig;
+import org.project.entityManager.configuration.ReadReplicaConfig;
+import org.project.entityManager.entity.AsyncEntityManager;
+import org.project.entityManager.entity.ConnectionPool;
 import org.project.entityManager.entity.EntityManager;
+import org.project.entityManager.entity.MetadataManager;
+import org.project.entityManager.entity.ReplicaSet;
+import org.project.entityManager.entity.impl.DefaultAsyncEntityManager;
+import org.project.entityManager.entity.impl.DefaultEntityManager;
 
-public class SmartORM {
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
-    private final EntityManager entityManager;
+/**
+ * Punto de entrada del ORM. Tiene el pool de conexiones, la metadata y el cache, que
+ * son thread-safe y se comparten; los EntityManager no lo son y se crea uno por unidad
+ * de trabajo, o se usa el {@link AsyncEntityManager}.
+ * <p>
+ * Con {@link EntityManagerConfig#getCacheSnapshotConfig()} activado, al arrancar restaura
+ * en segundo plano las entidades que estaban calientes (ver {@link #getCacheWarmup()}) y al
+ * cerrar guarda la foto para el proximo arranque.
+ */
+public class SmartORM implements AutoCloseable {
 
+    private final EntityManagerConfig config;
+    private final ConnectionPool connectionPool;
+    private final ReplicaSet replicas;
+    //Sin replicas, para los EntityManager que el asincrono manda al primario
+    private final ReplicaSet noReplicas;
+    private final OrmCacheManager cacheManager;
+    private final MetadataManager metadataManager;
+    private final AsyncEntityManager asyncEntityManager;
+    private final CacheWarmer cacheWarmer;
+    private final CompletableFuture<Integer> cacheWarmup;
+
+    public SmartORM(EntityManagerConfig config) {
+        this.config = config;
+        this.cacheManager = new OrmCacheManager(config.getCacheRegions());
+        //La metadata se registra en el cache al construirse (tablas de cada clase, codec fuera del heap)
+        this.metadataManager = new MetadataManager(metadata -> cacheManager.putMetadata(metadata.getEntityClass(), metadata));
+        this.connectionPool = new ConnectionPool(config.getDataSource(), config.getConnectionPoolConfig());
+        this.replicas = new ReplicaSet(config.getReadReplicaConfig(), config.getConnectionPoolConfig());
+        this.noReplicas = new ReplicaSet(ReadReplicaConfig.none(), config.getConnectionPoolConfig());
+        this.asyncEntityManager = this.createAsyncEntityManager();
+        if (config.getInvalidationTransport() != null) {
+            cacheManager.startInvalidationBus(config.getInvalidationTransport(), config.getInvalidationFlushInterval());
+        }
+
+        if (config.getCacheSnapshotConfig().isEnabled()) {
+            this.cacheWarmer = new CacheWarmer(config.getCacheSnapshotConfig(), cacheManager, metadataManager,
+                    asyncEntityManager);
+            this.cacheWarmup = cacheWarmer.restore();
+            cacheWarmer.startSchedule();
+        } else {
+            this.cacheWarmer = null;
+            this.cacheWarmup = CompletableFuture.completedFuture(0);
+        }
+    }
+
+    /**
+     * Las operaciones que van al primario se limitan a su pool y usan EntityManager sin
+     * replicas; findAsync y findAllAsync, si hay replicas, se limitan a lo que suman sus pools
+     */
+    private AsyncEntityManager createAsyncEntityManager() {
+        Supplier<EntityManager> primaryOnly = () -> new DefaultEntityManager(connectionPool, noReplicas,
+                metadataManager, cacheManager, config.getBatchConfig());
+        if (replicas.isEmpty()) return new DefaultAsyncEntityManager(primaryOnly, connectionPool.getMaxSize());
+
+        int replicaConnections = 0;
+        for (ConnectionPool replica : replicas.getPools()) {
+            replicaConnections += replica.getMaxSize();
+        }
+        return new DefaultAsyncEntityManager(primaryOnly, connectionPool.getMaxSize(),
+                this::createEntityManager, replicaConnections);
+    }
+
+    public EntityManager createEntityManager() {
+        return new DefaultEntityManager(connectionPool, replicas, metadataManager, cacheManager, config.getBatchConfig());
+    }
+
+    public AsyncEntityManager getAsyncEntityManager() {
+        return asyncEntityManager;
+    }
+
+    public OrmCacheManager getCacheManager() {
+        return cacheManager;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public ReplicaSet getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Carga de la foto del cache hecha al arrancar; se completa con la cantidad de
+     * entidades restauradas (0 si no habia foto valida)
+     */
+    public CompletableFuture<Integer> getCacheWarmup() {
+        return cacheWarmup;
+    }
+
+    /**
+     * Guarda ya la foto del cache en el archivo configurado
+     */
+    public void saveCacheSnapshot() throws IOException {
+        if (cacheWarmer == null) throw new IllegalStateException("Cache snapshots are not configured");
+        cacheWarmer.save();
+    }
+
+    @Override
+    public void close() {
+        //Antes de cerrar nada, con el cache todavia caliente
+        if (cacheWarmer != null) cacheWarmer.close();
+        asyncEntityManager.close();
+        connectionPool.close();
+        replicas.close();
+        noReplicas.close();
+        cacheManager.closeInvalidationBus();
+    }
 }
@@ -0,0 +1,44 @@
+package org.project.cache.core;
+
+import org.junit.jupiter.api.Test;
+import org.project.cache.model.CacheRegionConfig;
+import org.project.cache.model.CacheType;
+import org.project.cache.model.EntityMetadata;
+import org.project.entityManager.annotation.Table;
+import org.project.entityManager.entity.MetadataManager;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class OrmCacheManagerTest {
+
+    @Table(name = "notes")
+    static class Note {
+        Long id;
+        String text;
+    }
+
+    @Test
+    void metadataOutlivesItsRegionTtl() throws Exception {
+        Map<CacheType, CacheRegionConfig> configs = CacheRegionConfig.defaults(Duration.ofMillis(1));
+        OrmCacheManager cacheManager = new OrmCacheManager(configs);
+        EntityMetadata metadata = new MetadataManager(m -> cacheManager.putMetadata(m.getEntityClass(), m))
+                .getEntityMetadata(Note.class);
+
+        //MetadataManager la registra una sola vez; la region la expira enseguida
+        Thread.sleep(20);
+        assertSame(metadata, cacheManager.getMetadata(Note.class).orElseThrow());
+    }
+
+    @Test
+    void invalidatedMetadataIsNotRestored() {
+        OrmCacheManager cacheManager = new OrmCacheManager();
+        new MetadataManager(m -> cacheManager.putMetadata(m.getEntityClass(), m)).getEntityMetadata(Note.class);
+
+        cacheManager.invalidateMetadata(Note.class);
+        assertFalse(cacheManager.getMetadata(Note.class).isPresent());
+    }
+}
@@ -0,0 +1,178 @@
+package org.project.cache.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.project.cache.interfaces.InvalidationTransport;
+import org.project.cache.model.InvalidationEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvalidationBusTest {
+
+    /**
+     * Medio en memoria: entrega cada mensaje en el momento a todos los nodos, incluido
+     * el que lo envia, como el multicast
+     */
+    private static class Hub {
+        private final List<Consumer<byte[]>> receivers = new CopyOnWriteArrayList<>();
+        private final List<byte[]> sent = new CopyOnWriteArrayList<>();
+
+        InvalidationTransport transport(int maxMessageBytes) {
+            return new InvalidationTransport() {
+                @Override
+                public void start(Consumer<byte[]> receiver) {
+                    receivers.add(receiver);
+                }
+
+                @Override
+                public void send(byte[] message) {
+                    assertTrue(message.length <= maxMessageBytes, "message exceeds " + maxMessageBytes);
+                    sent.add(message);
+                    for (Consumer<byte[]> receiver : receivers) receiver.accept(message.clone());
+                }
+
+                @Override
+                public int maxMessageBytes() {
+                    return maxMessageBytes;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+
+    private final Hub hub = new Hub();
+    private final List<InvalidationEvent> receivedBySender = new CopyOnWriteArrayList<>();
+    private final List<InvalidationEvent> received = new CopyOnWriteArrayList<>();
+    private final List<InvalidationBus> buses = new ArrayList<>();
+
+    //El intervalo largo deja el envio a los flush() del test
+    private InvalidationBus bus(int maxMessageBytes, List<InvalidationEvent> sink) throws Exception {
+        InvalidationBus bus = new InvalidationBus(hub.transport(maxMessageBytes), sink::addAll, Duration.ofHours(1));
+        bus.start();
+        buses.add(bus);
+        return bus;
+    }
+
+    private InvalidationBus sender() throws Exception {
+        InvalidationBus sender = this.bus(1 << 20, receivedBySender);
+        this.bus(1 << 20, received);
+        return sender;
+    }
+
+    @AfterEach
+    void closeBuses() {
+        for (InvalidationBus bus : buses) bus.close();
+    }
+
+    @Test
+    void everyKindOfEventRoundTrips() throws Exception {
+        InvalidationBus sender = this.sender();
+        UUID uuid = UUID.randomUUID();
+        List<InvalidationEvent> events = List.of(
+                InvalidationEvent.entity(String.class, 42L),
+                InvalidationEvent.entity(Integer.class, "code-7"),
+                InvalidationEvent.entity(Long.class, uuid),
+                InvalidationEvent.entityType(UUID.class),
+                InvalidationEvent.table("users"),
+                InvalidationEvent.query("SELECT * FROM users WHERE id = ?"));
+        events.forEach(sender::publish);
+        sender.flush();
+
+        assertEquals(events, received);
+        assertEquals(events.size(), sender.getPublishedEvents());
+        assertEquals(events.size(), buses.get(1).getReceivedEvents());
+    }
+
+    @Test
+    void ownMessagesAreIgnored() throws Exception {
+        InvalidationBus sender = this.sender();
+        sender.publish(InvalidationEvent.table("users"));
+        sender.flush();
+
+        assertEquals(1, received.size());
+        assertTrue(receivedBySender.isEmpty());
+        assertEquals(0, sender.getReceivedEvents());
+    }
+
+    @Test
+    void smallIntegralIdsArriveAsLong() throws Exception {
+        InvalidationBus sender = this.sender();
+        sender.publish(InvalidationEvent.entity(String.class, 7));
+        sender.flush();
+
+        assertEquals(List.of(InvalidationEvent.entity(String.class, 7L)), received);
+    }
+
+    @Test
+    void longAndNonAsciiNamesRoundTrip() throws Exception {
+        InvalidationBus sender = this.sender();
+        //Mas de 65535 bytes en UTF-8: no entraria con writeUTF
+        String longQuery = "SELECT * FROM usuarios WHERE nombre IN ('" + "\u00f1".repeat(40_000) + "')";
+        List<InvalidationEvent> events = List.of(
+                InvalidationEvent.query(longQuery),
+                InvalidationEvent.table("tabla_a\u00f1o_\ud83d\ude00"),
+                InvalidationEvent.entity(String.class, "clave-\u0000-\u00fc"));
+        events.forEach(sender::publish);
+        sender.flush();
+
+        assertEquals(events, received);
+    }
+
+    @Test
+    void largeBatchesAreSplitToFitTheTransport() throws Exception {
+        InvalidationBus sender = this.bus(200, receivedBySender);
+        this.bus(200, received);
+
+        List<InvalidationEvent> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            events.add(InvalidationEvent.table("table_" + i));
+        }
+        events.forEach(sender::publish);
+        sender.flush();
+
+        assertTrue(hub.sent.size() > 1);
+        assertEquals(events, received);
+    }
+
+    @Test
+    void pendingEventsAreCoalesced() throws Exception {
+        InvalidationBus sender = this.sender();
+        sender.publish(InvalidationEvent.entity(String.class, 1L));
+        sender.publish(InvalidationEvent.entity(String.class, 1L));
+        sender.publish(InvalidationEvent.entity(String.class, 2L));
+        sender.publish(InvalidationEvent.entityType(String.class));
+        sender.publish(InvalidationEvent.entity(String.class, 3L));
+        sender.publish(InvalidationEvent.table("users"));
+        sender.flush();
+
+        assertEquals(List.of(InvalidationEvent.entityType(String.class), InvalidationEvent.table("users")), received);
+
+        received.clear();
+        sender.publish(InvalidationEvent.table("users"));
+        sender.publish(InvalidationEvent.clearAll());
+        sender.publish(InvalidationEvent.table("orders"));
+        sender.flush();
+
+        assertEquals(List.of(InvalidationEvent.clearAll()), received);
+    }
+
+    @Test
+    void malformedMessagesAreDiscarded() throws Exception {
+        this.sender();
+        hub.transport(1 << 20).send(new byte[]{2, 1, 2, 3});
+        hub.transport(1 << 20).send(new byte[0]);
+
+        assertTrue(received.isEmpty());
+    }
+}
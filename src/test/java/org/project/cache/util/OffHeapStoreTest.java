@@ -0,0 +1,107 @@
+package org.project.cache.util;
+
+import org.junit.jupiter.api.Test;
+import org.project.cache.interfaces.ValueCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapStoreTest {
+
+    private static final ValueCodec<String, String> UTF8 = new ValueCodec<>() {
+        @Override
+        public byte[] encode(String key, String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(String key, ByteBuffer in) {
+            return StandardCharsets.UTF_8.decode(in).toString();
+        }
+    };
+
+    //128KB quedan en dos slabs de 64KB; entran 65 valores de 1000 bytes por slab
+    private static final int CAPACITY = 128 * 1024;
+    private static final int PER_SLAB = 65;
+    private static final String VALUE = "x".repeat(1000);
+
+    private static String read(OffHeapStore<String, String> store, String key) {
+        OffHeapStore.Location location = store.find(key);
+        return location == null ? null : store.read(key, location);
+    }
+
+    @Test
+    void storedValuesRoundTrip() {
+        OffHeapStore<String, String> store = new OffHeapStore<>(CAPACITY, UTF8);
+        assertTrue(store.store("a", "value-a", Long.MAX_VALUE, null));
+        assertTrue(store.store("a", "value-b", Long.MAX_VALUE, null));
+
+        assertEquals("value-b", read(store, "a"));
+        assertEquals(1, store.size());
+        assertEquals("value-b".length(), store.getUsedBytes());
+    }
+
+    @Test
+    void valuesLargerThanASlabAreRejected() {
+        OffHeapStore<String, String> store = new OffHeapStore<>(CAPACITY, UTF8);
+        assertFalse(store.store("big", "x".repeat(64 * 1024 + 1), Long.MAX_VALUE, null));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void wrappingAroundRecyclesTheOldestSlab() {
+        OffHeapStore<String, String> store = new OffHeapStore<>(CAPACITY, UTF8);
+        for (int i = 0; i < 2 * PER_SLAB; i++) {
+            store.store("k" + i, VALUE, Long.MAX_VALUE, null);
+        }
+        assertEquals(0, store.getEvictionCount());
+        assertEquals(2 * PER_SLAB, store.size());
+
+        //El siguiente no entra: se vuelve al primer slab y se desaloja entero
+        store.store("next", VALUE, Long.MAX_VALUE, null);
+
+        assertEquals(PER_SLAB, store.getEvictionCount());
+        assertEquals(PER_SLAB + 1, store.size());
+        assertNull(read(store, "k0"));
+        assertNull(read(store, "k" + (PER_SLAB - 1)));
+        assertEquals(VALUE, read(store, "k" + PER_SLAB));
+        assertEquals(VALUE, read(store, "next"));
+    }
+
+    @Test
+    void readingARecycledLocationReturnsNull() {
+        OffHeapStore<String, String> store = new OffHeapStore<>(CAPACITY, UTF8);
+        store.store("k0", VALUE, Long.MAX_VALUE, null);
+        OffHeapStore.Location stale = store.find("k0");
+        assertNotNull(stale);
+
+        for (int i = 1; i <= 2 * PER_SLAB; i++) {
+            store.store("k" + i, VALUE, Long.MAX_VALUE, null);
+        }
+
+        //Los bytes del slab ya son de otro valor: la generacion no coincide
+        assertNull(store.read("k0", stale));
+        assertFalse(store.remove("k0", stale));
+    }
+
+    @Test
+    void groupsAreRemovedTogether() {
+        OffHeapStore<String, String> store = new OffHeapStore<>(CAPACITY, UTF8);
+        store.store("a", "1", Long.MAX_VALUE, "users");
+        store.store("b", "2", Long.MAX_VALUE, "users");
+        store.store("c", "3", Long.MAX_VALUE, "orders");
+
+        store.removeGroup("users");
+
+        assertNull(read(store, "a"));
+        assertNull(read(store, "b"));
+        assertEquals("3", read(store, "c"));
+        assertEquals(1, store.getUsedBytes());
+    }
+}
@@ -0,0 +1,165 @@
+package org.project.cache.util;
+
+import org.junit.jupiter.api.Test;
+import org.project.cache.interfaces.Weigher;
+import org.project.cache.model.EvictionPolicy;
+import org.project.cache.model.RemovalCause;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmartCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private SmartCache<String, String> cache(int maxSize, long maxSecondLevelWeight, Duration ttl) {
+        return new SmartCache<>(maxSize, maxSecondLevelWeight, Weigher.singleton(), EvictionPolicy.LRU, ttl,
+                nanos::get, null);
+    }
+
+    @Test
+    void overflowDemotesToSecondLevelAndEvictsLeastRecentlyUsed() {
+        SmartCache<String, String> cache = this.cache(2, 2, Duration.ofHours(1));
+        for (int i = 1; i <= 5; i++) {
+            cache.put("k" + i, "v" + i);
+        }
+
+        SmartCache.CacheStats stats = cache.getStats();
+        assertEquals(2, stats.firstLevelSize());
+        assertEquals(2, stats.secondLevelSize());
+        assertEquals(2, cache.getSecondLevelWeight());
+
+        //k1 salio de L2; k2 y k3 siguen en L2 y k4, k5 en L1
+        assertNull(cache.getIfPresent("k1"));
+        assertEquals("v2", cache.getIfPresent("k2"));
+        assertEquals("v5", cache.getIfPresent("k5"));
+        assertEquals(1, cache.getMetrics().evictions(RemovalCause.SIZE));
+    }
+
+    @Test
+    void secondLevelHitPromotesBackToFirstLevel() {
+        SmartCache<String, String> cache = this.cache(1, 10, Duration.ofHours(1));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals(1, cache.getStats().secondLevelSize());
+
+        //Se promueve al superar las 6 lecturas en L2
+        for (int i = 0; i < 7; i++) {
+            assertEquals("1", cache.getIfPresent("a"));
+        }
+        assertEquals(7, cache.getStats().secondLevelHits());
+        assertEquals(0, cache.getStats().firstLevelHits());
+
+        assertEquals("1", cache.getIfPresent("a"));
+        assertEquals(1, cache.getStats().firstLevelHits());
+        assertEquals("2", cache.getIfPresent("b"));
+    }
+
+    @Test
+    void entriesExpireAfterTheirTtl() {
+        SmartCache<String, String> cache = this.cache(10, 10, Duration.ofSeconds(10));
+        cache.put("a", "1");
+        cache.put("b", "2", Duration.ofSeconds(30));
+
+        nanos.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertNull(cache.getIfPresent("a"));
+        assertEquals("2", cache.getIfPresent("b"));
+
+        cache.cleanExpiredEntries();
+        assertEquals(1, cache.getStats().firstLevelSize());
+
+        nanos.addAndGet(Duration.ofSeconds(20).toNanos());
+        cache.cleanExpiredEntries();
+        assertNull(cache.getIfPresent("b"));
+        assertEquals(0, cache.getStats().firstLevelSize());
+    }
+
+    @Test
+    void setTtlShortensAnEntry() {
+        SmartCache<String, String> cache = this.cache(10, 10, Duration.ofHours(1));
+        cache.put("a", "1");
+        cache.setTTL("a", Duration.ofSeconds(1));
+
+        nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    void concurrentMissesRunTheLoaderOnce() throws Exception {
+        SmartCache<String, String> cache = new SmartCache<>(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get("key", k -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new String("value");
+                })));
+            }
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            //Da tiempo a que los demas hilos lleguen a esperar la carga en curso
+            Thread.sleep(100);
+            release.countDown();
+
+            String first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<String> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMetrics().loadSuccesses());
+    }
+
+    @Test
+    void nullLoadsAreNotCached() {
+        SmartCache<String, String> cache = this.cache(10, 10, Duration.ofHours(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.get("missing", k -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get("missing", k -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void failedLoadIsRethrownAndNotCached() {
+        SmartCache<String, String> cache = this.cache(10, 10, Duration.ofHours(1));
+
+        assertThrows(IllegalStateException.class, () -> cache.get("a", k -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals("1", cache.get("a", k -> "1"));
+        assertEquals(1, cache.getMetrics().loadFailures());
+    }
+}
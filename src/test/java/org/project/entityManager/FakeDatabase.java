@@ -0,0 +1,216 @@
+package org.project.entityManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Base en memoria para los tests, detras de proxies de JDBC. Tiene una sola tabla; un
+ * SELECT devuelve las filas cuya columna del WHERE (con = o IN) coincide con algun
+ * parametro, o todas si no tiene WHERE. Las escrituras no cambian las filas: solo quedan
+ * registradas en {@link #statements()}, como "SQL [parametros]".
+ */
+public class FakeDatabase {
+
+    private static final Pattern WHERE = Pattern.compile("\\bWHERE\\s+(\\w+)\\s*(=|IN)", Pattern.CASE_INSENSITIVE);
+
+    private final String[] columns;
+    private final List<Object[]> rows = new CopyOnWriteArrayList<>();
+    private final List<String> statements = new CopyOnWriteArrayList<>();
+    private final AtomicLong generatedKeys = new AtomicLong(1000);
+    private volatile String failNextBatch;
+
+    /**
+     * @param columns etiquetas de las columnas que devuelve un SELECT
+     */
+    public FakeDatabase(String... columns) {
+        this.columns = columns;
+    }
+
+    public FakeDatabase row(Object... values) {
+        rows.add(values);
+        return this;
+    }
+
+    /**
+     * El proximo executeBatch de sql falla con una violacion de clave y deja el batch
+     * cargado, como hacen algunos drivers
+     */
+    public FakeDatabase failNextBatch(String sql) {
+        failNextBatch = sql;
+        return this;
+    }
+
+    public List<String> statements() {
+        return statements;
+    }
+
+    /**
+     * Sentencias ejecutadas que empiezan con prefix, por ejemplo "SELECT"
+     */
+    public long count(String prefix) {
+        return statements.stream().filter(sql -> sql.startsWith(prefix)).count();
+    }
+
+    public DataSource dataSource() {
+        return proxy(DataSource.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getConnection" -> this.connection();
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private Connection connection() {
+        boolean[] autoCommit = {true};
+        return proxy(Connection.class, (proxy, method, args) -> switch (method.getName()) {
+            case "prepareStatement" -> this.statement((String) args[0]);
+            case "getAutoCommit" -> autoCommit[0];
+            case "setAutoCommit" -> {
+                autoCommit[0] = (Boolean) args[0];
+                yield null;
+            }
+            case "isValid" -> true;
+            case "isClosed" -> false;
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> null;
+        });
+    }
+
+    private PreparedStatement statement(String sql) {
+        TreeMap<Integer, Object> parameters = new TreeMap<>();
+        List<List<Object>> batch = new ArrayList<>();
+        return proxy(PreparedStatement.class, (proxy, method, args) -> switch (method.getName()) {
+            case "setObject" -> {
+                parameters.put((Integer) args[0], args[1]);
+                yield null;
+            }
+            case "executeQuery" -> {
+                List<Object> values = new ArrayList<>(parameters.values());
+                statements.add(sql + " " + values);
+                yield this.resultSet(this.select(sql, values));
+            }
+            case "executeUpdate" -> {
+                statements.add(sql + " " + parameters.values());
+                yield 1;
+            }
+            case "addBatch" -> {
+                batch.add(new ArrayList<>(parameters.values()));
+                parameters.clear();
+                yield null;
+            }
+            case "clearBatch" -> {
+                batch.clear();
+                yield null;
+            }
+            case "executeBatch" -> {
+                if (sql.equals(failNextBatch)) {
+                    failNextBatch = null;
+                    throw new SQLException("duplicate key", "23505");
+                }
+                batch.forEach(values -> statements.add(sql + " " + values));
+                int[] counts = new int[batch.size()];
+                Arrays.fill(counts, 1);
+                batch.clear();
+                yield counts;
+            }
+            case "getGeneratedKeys" -> this.resultSet(List.<Object[]>of(new Object[]{generatedKeys.incrementAndGet()}));
+            case "isClosed" -> false;
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> null;
+        });
+    }
+
+    private List<Object[]> select(String sql, List<Object> parameters) {
+        Matcher where = WHERE.matcher(sql);
+        if (!where.find()) return List.copyOf(rows);
+
+        int column = Arrays.asList(columns).indexOf(where.group(1).toLowerCase(Locale.ROOT));
+        //Una IN-list puede repetir un id de relleno: cada fila sale una vez
+        Map<Object[], Boolean> matches = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            for (Object parameter : parameters) {
+                if (sameValue(row[column], parameter)) matches.put(row, true);
+            }
+        }
+        return new ArrayList<>(matches.keySet());
+    }
+
+    /**
+     * Como compara la base: los numeros por valor, sin importar el tipo Java
+     */
+    private static boolean sameValue(Object column, Object parameter) {
+        if (column instanceof Number a && parameter instanceof Number b) {
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString())) == 0;
+        }
+        return column != null && column.equals(parameter);
+    }
+
+    private ResultSet resultSet(List<Object[]> result) {
+        Iterator<Object[]> iterator = result.iterator();
+        Object[][] current = {null};
+        boolean[] wasNull = {false};
+        ResultSetMetaData metadata = proxy(ResultSetMetaData.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getColumnCount" -> columns.length;
+            case "getColumnLabel", "getColumnName" -> columns[(Integer) args[0] - 1];
+            default -> null;
+        });
+        return proxy(ResultSet.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "next" -> {
+                    current[0] = iterator.hasNext() ? iterator.next() : null;
+                    return current[0] != null;
+                }
+                case "getMetaData" -> {
+                    return metadata;
+                }
+                case "wasNull" -> {
+                    return wasNull[0];
+                }
+                case "close" -> {
+                    return null;
+                }
+                default -> {
+                    //Los getters reciben el indice de columna
+                    Object value = current[0][(Integer) args[0] - 1];
+                    wasNull[0] = value == null;
+                    return convert(value, method.getReturnType(), args.length > 1 ? (Class<?>) args[1] : null);
+                }
+            }
+        });
+    }
+
+    private static Object convert(Object value, Class<?> returnType, Class<?> requested) {
+        Class<?> type = requested != null ? requested : returnType;
+        if (type == long.class || type == Long.class) return value == null ? (type == long.class ? 0L : null) : ((Number) value).longValue();
+        if (type == int.class || type == Integer.class) return value == null ? (type == int.class ? 0 : null) : ((Number) value).intValue();
+        if (type == boolean.class) return value != null && (Boolean) value;
+        if (type == String.class) return value == null ? null : value.toString();
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,109 @@
+package org.project.entityManager.entity;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.project.entityManager.configuration.ConnectionPoolConfig;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private ConnectionPool pool;
+
+    private ConnectionPool pool(int maxSize, Duration connectionTimeout) {
+        DataSource dataSource = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getConnection")) return this.connection();
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        pool = new ConnectionPool(dataSource, ConnectionPoolConfig.defaults()
+                .withSize(maxSize, 0)
+                .withConnectionTimeout(connectionTimeout));
+        return pool;
+    }
+
+    private Connection connection() {
+        opened.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "isValid", "getAutoCommit" -> true;
+                    case "isClosed" -> false;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+
+    @AfterEach
+    void closePool() {
+        if (pool != null) pool.close();
+    }
+
+    @Test
+    void releasedConnectionIsReusedWithoutOpeningAnother() throws Exception {
+        ConnectionPool pool = this.pool(2, Duration.ofSeconds(1));
+
+        PooledConnection first = pool.getConnection();
+        first.close();
+        PooledConnection second = pool.getConnection();
+
+        assertSame(first, second);
+        assertEquals(1, opened.get());
+        assertEquals(1, pool.getTotalConnections());
+        second.close();
+    }
+
+    @Test
+    void borrowTimesOutWhenThePoolIsExhausted() throws Exception {
+        ConnectionPool pool = this.pool(1, Duration.ofMillis(50));
+        PooledConnection held = pool.getConnection();
+
+        long start = System.nanoTime();
+        assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertEquals(0, pool.getThreadsAwaitingConnection());
+        assertEquals(1, pool.getTotalConnections());
+        held.close();
+    }
+
+    @Test
+    void releaseHandsTheConnectionToAParkedWaiter() throws Exception {
+        ConnectionPool pool = this.pool(1, Duration.ofSeconds(5));
+        PooledConnection held = pool.getConnection();
+
+        CompletableFuture<PooledConnection> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.getConnection();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.getThreadsAwaitingConnection() == 0) {
+            assertTrue(System.nanoTime() < deadline, "waiter never parked");
+            Thread.sleep(1);
+        }
+
+        held.close();
+        PooledConnection received = waiter.get(5, TimeUnit.SECONDS);
+
+        assertSame(held, received);
+        assertEquals(1, opened.get());
+        assertEquals(0, pool.getThreadsAwaitingConnection());
+        received.close();
+    }
+}
@@ -0,0 +1,48 @@
+package org.project.entityManager.entity;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.project.entityManager.FakeDatabase;
+import org.project.entityManager.configuration.ConnectionPoolConfig;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueryExecutorTest {
+
+    private static final String UPDATE = "UPDATE accounts SET name = ? WHERE id = ?";
+
+    private final FakeDatabase database = new FakeDatabase("id", "name");
+    //Una sola conexion: el segundo batch reusa el statement cacheado del primero
+    private final ConnectionPool pool = new ConnectionPool(database.dataSource(),
+            ConnectionPoolConfig.defaults().withSize(1, 0));
+    private final QueryExecutor executor = new QueryExecutor(pool);
+
+    @AfterEach
+    void close() {
+        pool.close();
+    }
+
+    @Test
+    void aFailedBatchDoesNotLeakRowsIntoTheNextOne() {
+        database.failNextBatch(UPDATE);
+        assertThrows(PersistenceException.class, () -> executor.batchUpdate(UPDATE,
+                List.of(new Object[]{"ana", 1L}, new Object[]{"bob", 2L}), 10));
+
+        executor.batchUpdate(UPDATE, List.<Object[]>of(new Object[]{"eva", 3L}), 10);
+        assertEquals(List.of(UPDATE + " [eva, 3]"), database.statements());
+    }
+
+    @Test
+    void pinnedOperationsCountWritesOnly() throws Exception {
+        executor.pin(pool.getConnection());
+        executor.query("SELECT * FROM accounts", new Object[0], resultSet -> resultSet.getLong(1));
+        executor.update(UPDATE, new Object[]{"ana", 1L});
+        executor.batchUpdate(UPDATE, List.of(new Object[]{"bob", 2L}, new Object[]{"eva", 3L}), 10);
+
+        assertEquals(3, executor.getPinnedOperations());
+        executor.unpin().close();
+    }
+}
@@ -0,0 +1,80 @@
+package org.project.entityManager.entity.impl;
+
+import org.junit.jupiter.api.Test;
+import org.project.entityManager.entity.EntityManager;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DefaultAsyncEntityManagerTest {
+
+    /**
+     * EntityManager cuyo find devuelve el nombre del destino
+     */
+    private static Supplier<EntityManager> entityManagers(String target) {
+        return () -> (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[]{EntityManager.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "find" -> target;
+                    default -> null;
+                });
+    }
+
+    @Test
+    void readsDoNotWaitForThePrimaryPool() throws Exception {
+        DefaultAsyncEntityManager async = new DefaultAsyncEntityManager(entityManagers("primary"), 1,
+                entityManagers("replica"), 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Object> busy = async.executeAsync(em -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return em.find(Object.class, 1L);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            //El primario esta lleno: la lectura va por el semaforo de las replicas
+            assertEquals("replica", async.findAsync(Object.class, 1L).get(5, TimeUnit.SECONDS));
+
+            //Una escritura espera a que el primario tenga lugar
+            CompletableFuture<Object> waiting = async.executeAsync(em -> em.find(Object.class, 2L));
+            Thread.sleep(100);
+            assertFalse(waiting.isDone());
+
+            release.countDown();
+            assertEquals("primary", busy.get(5, TimeUnit.SECONDS));
+            assertEquals("primary", waiting.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            async.close();
+        }
+    }
+
+    @Test
+    void withoutReplicasReadsShareThePrimaryLimit() throws Exception {
+        DefaultAsyncEntityManager async = new DefaultAsyncEntityManager(entityManagers("primary"), 1);
+        try {
+            assertEquals("primary", async.findAsync(Object.class, 1L).get(5, TimeUnit.SECONDS));
+        } finally {
+            async.close();
+        }
+    }
+
+    @Test
+    void rejectsAnEmptyLane() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new DefaultAsyncEntityManager(entityManagers("primary"), 4, entityManagers("replica"), 0));
+    }
+}
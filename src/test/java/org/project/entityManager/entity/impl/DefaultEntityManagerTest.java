@@ -0,0 +1,166 @@
+package org.project.entityManager.entity.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.project.cache.core.OrmCacheManager;
+import org.project.cache.model.EntityMetadata;
+import org.project.entityManager.FakeDatabase;
+import org.project.entityManager.annotation.Table;
+import org.project.entityManager.configuration.BatchConfig;
+import org.project.entityManager.configuration.ConnectionPoolConfig;
+import org.project.entityManager.configuration.ReadReplicaConfig;
+import org.project.entityManager.entity.ConnectionPool;
+import org.project.entityManager.entity.MetadataManager;
+import org.project.entityManager.entity.ReplicaSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DefaultEntityManagerTest {
+
+    @Table(name = "accounts")
+    static class Account {
+        Long id;
+        String name;
+        //No se mapea: se queda con el valor del constructor
+        final String region = "eu";
+
+        Account() {
+        }
+
+        Account(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private static final ConnectionPoolConfig POOL = ConnectionPoolConfig.defaults().withSize(2, 0);
+
+    private final FakeDatabase primary = new FakeDatabase("id", "name").row(1L, "ana").row(2L, "bob");
+    private final OrmCacheManager cacheManager = new OrmCacheManager();
+    private final MetadataManager metadataManager =
+            new MetadataManager(metadata -> cacheManager.putMetadata(metadata.getEntityClass(), metadata));
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    private DefaultEntityManager entityManager() {
+        return this.entityManager(ReadReplicaConfig.none());
+    }
+
+    private DefaultEntityManager entityManager(ReadReplicaConfig replicaConfig) {
+        ConnectionPool pool = new ConnectionPool(primary.dataSource(), POOL);
+        ReplicaSet replicas = new ReplicaSet(replicaConfig, POOL);
+        resources.add(pool::close);
+        resources.add(replicas);
+        DefaultEntityManager entityManager = new DefaultEntityManager(pool, replicas, metadataManager, cacheManager,
+                BatchConfig.defaults());
+        resources.add(entityManager);
+        return entityManager;
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        for (int i = resources.size() - 1; i >= 0; i--) resources.get(i).close();
+    }
+
+    @Test
+    void entityWithAFinalFieldLoadsWithoutMappingIt() {
+        EntityMetadata metadata = metadataManager.getEntityMetadata(Account.class);
+        assertEquals(1, metadata.getColumnCount());
+        assertEquals("name", metadata.getColumn(0).getColumnName());
+
+        DefaultEntityManager entityManager = this.entityManager();
+        Account account = entityManager.find(Account.class, 1L);
+        assertEquals("ana", account.name);
+        assertEquals("eu", account.region);
+
+        //La copia que se guarda en el cache compartido tampoco escribe el campo final
+        Account copy = (Account) entityManager.copy(account);
+        assertNotSame(account, copy);
+        assertEquals("ana", copy.name);
+    }
+
+    @Test
+    void findAllMatchesIdsOfAnotherIntegerType() {
+        DefaultEntityManager entityManager = this.entityManager();
+
+        //El campo id es Long; los ids llegan como Integer
+        List<Account> accounts = entityManager.findAll(Account.class, List.of(2, 1));
+        assertEquals(2, accounts.size());
+        assertEquals("bob", accounts.get(0).name);
+        assertEquals("ana", accounts.get(1).name);
+        assertEquals(1, primary.count("SELECT"));
+
+        //Quedaron en el cache bajo el id normalizado
+        assertEquals(2, entityManager.findAll(Account.class, List.of(1L, 2L)).size());
+        assertEquals(1, primary.count("SELECT"));
+    }
+
+    @Test
+    void findAllTreatsEqualIdsOfDifferentTypesAsOne() {
+        DefaultEntityManager entityManager = this.entityManager();
+
+        List<Account> accounts = entityManager.findAll(Account.class, List.of(1, 1L));
+        assertEquals(1, accounts.size());
+        assertEquals(List.of("SELECT * FROM accounts WHERE id IN (?) [1]"), primary.statements());
+    }
+
+    @Test
+    void findOutsideATransactionReadsAReplicaWithoutCachingIt() {
+        FakeDatabase replica = new FakeDatabase("id", "name").row(1L, "ana");
+        DefaultEntityManager entityManager = this.entityManager(ReadReplicaConfig.of(List.of(replica.dataSource())));
+
+        assertEquals("ana", entityManager.find(Account.class, 1L).name);
+        assertEquals(1, replica.count("SELECT"));
+        assertEquals(0, primary.count("SELECT"));
+
+        //Una replica atrasada no deja su fila en el cache compartido
+        assertTrue(cacheManager.getEntity(Account.class, 1L).isEmpty());
+
+        //Dentro de una transaccion se lee del primario, que si llena el cache
+        entityManager.clear();
+        entityManager.getTransaction().begin();
+        assertEquals("ana", entityManager.find(Account.class, 1L).name);
+        entityManager.getTransaction().commit();
+        assertEquals(1, primary.count("SELECT"));
+        assertTrue(cacheManager.getEntity(Account.class, 1L).isPresent());
+    }
+
+    @Test
+    void mergingADetachedCopyUpdatesTheManagedInstance() {
+        DefaultEntityManager entityManager = this.entityManager();
+        Account managed = entityManager.find(Account.class, 1L);
+
+        Account merged = entityManager.merge(new Account(1L, "ana maria"));
+        assertSame(managed, merged);
+        assertEquals("ana maria", managed.name);
+        assertSame(managed, entityManager.find(Account.class, 1L));
+
+        //Se compara contra la foto de la instancia administrada: solo cambio name
+        assertEquals(List.of("UPDATE accounts SET name = ? WHERE id = ? [ana maria, 1]"),
+                primary.statements().stream().filter(sql -> sql.startsWith("UPDATE")).toList());
+
+        //Sin cambios respecto de la foto no escribe nada
+        entityManager.merge(new Account(1L, "ana maria"));
+        assertEquals(1, primary.count("UPDATE"));
+    }
+
+    @Test
+    void findSharesTheCacheEntryAcrossIntegerIdTypes() {
+        //(Object): sin el cast el int iria a find(Class, long)
+        DefaultEntityManager first = this.entityManager();
+        assertEquals("ana", first.find(Account.class, (Object) 1).name);
+
+        //Otra sesion: la clave normalizada encuentra lo que cargo la primera
+        DefaultEntityManager second = this.entityManager();
+        Account byLong = second.find(Account.class, 1L);
+        assertEquals("ana", byLong.name);
+        assertSame(byLong, second.find(Account.class, (Object) 1L));
+        assertSame(byLong, second.find(Account.class, (Object) (short) 1));
+        assertEquals(1, primary.count("SELECT"));
+    }
+}
@@ -0,0 +1,83 @@
+package org.project.entityManager.entity.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.project.cache.core.OrmCacheManager;
+import org.project.entityManager.FakeDatabase;
+import org.project.entityManager.annotation.Table;
+import org.project.entityManager.configuration.BatchConfig;
+import org.project.entityManager.configuration.ConnectionPoolConfig;
+import org.project.entityManager.configuration.ReadReplicaConfig;
+import org.project.entityManager.entity.ConnectionPool;
+import org.project.entityManager.entity.MetadataManager;
+import org.project.entityManager.entity.ReplicaSet;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DefaultQueryTest {
+
+    @Table(name = "items")
+    static class Item {
+        Long id;
+        String name;
+    }
+
+    private static final String BY_NAMES = "SELECT * FROM items WHERE name = ? OR name = ?";
+
+    private final FakeDatabase database = new FakeDatabase("id", "name")
+            .row(1L, "a, b").row(2L, "c").row(3L, "a").row(4L, "b, c");
+    private final OrmCacheManager cacheManager = new OrmCacheManager();
+    private final ConnectionPool pool = new ConnectionPool(database.dataSource(),
+            ConnectionPoolConfig.defaults().withSize(2, 0));
+    private final ReplicaSet replicas = new ReplicaSet(ReadReplicaConfig.none(), ConnectionPoolConfig.defaults());
+    private final DefaultEntityManager entityManager = new DefaultEntityManager(pool, replicas,
+            new MetadataManager(metadata -> cacheManager.putMetadata(metadata.getEntityClass(), metadata)),
+            cacheManager, BatchConfig.defaults());
+
+    @AfterEach
+    void close() throws Exception {
+        entityManager.close();
+        pool.close();
+        replicas.close();
+    }
+
+    private List<Item> byNames(String first, String second) {
+        return entityManager.createQuery(BY_NAMES, Item.class)
+                .setCacheable(true)
+                .setParameter(1, first)
+                .setParameter(2, second)
+                .getResultList();
+    }
+
+    @Test
+    void parametersThatPrintAlikeGetTheirOwnEntries() {
+        //Con la clave armada como texto las dos quedaban "[a, b, c]"
+        assertEquals(2, this.byNames("a, b", "c").size());
+        assertEquals(2, this.byNames("a", "b, c").size());
+        assertEquals(2, database.count("SELECT"));
+
+        this.byNames("a, b", "c");
+        assertEquals(2, database.count("SELECT"));
+    }
+
+    @Test
+    void parametersOfDifferentTypesGetTheirOwnEntries() {
+        String sql = "SELECT * FROM items WHERE id = ?";
+        entityManager.createQuery(sql, Item.class).setCacheable(true).setParameter(1, 1L).getResultList();
+        entityManager.createQuery(sql, Item.class).setCacheable(true).setParameter(1, "1").getResultList();
+        assertEquals(2, database.count("SELECT"));
+    }
+
+    @Test
+    void invalidatingTheQueryDropsEveryParameterSet() {
+        this.byNames("a, b", "c");
+        this.byNames("a", "b, c");
+
+        cacheManager.invalidateQuery(BY_NAMES);
+        this.byNames("a, b", "c");
+        this.byNames("a", "b, c");
+        assertEquals(4, database.count("SELECT"));
+    }
+}
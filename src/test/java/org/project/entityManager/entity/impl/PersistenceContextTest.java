@@ -0,0 +1,78 @@
+package org.project.entityManager.entity.impl;
+
+import org.junit.jupiter.api.Test;
+import org.project.entityManager.entity.SqlTemplates;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PersistenceContextTest {
+
+    @Test
+    void unchangedColumnsAreClean() {
+        Object[] snapshot = {1L, "name", null};
+        assertEquals(0L, PersistenceContext.dirtyColumns(snapshot, new Object[]{1L, "name", null}));
+    }
+
+    @Test
+    void eachChangedColumnSetsItsBit() {
+        Object[] snapshot = {1L, "name", 10, true};
+        Object[] current = {2L, "name", 11, true};
+        assertEquals(0b101L, PersistenceContext.dirtyColumns(snapshot, current));
+    }
+
+    @Test
+    void nullAndValueDiffer() {
+        assertEquals(0b1L, PersistenceContext.dirtyColumns(new Object[]{null}, new Object[]{"x"}));
+        assertEquals(0b1L, PersistenceContext.dirtyColumns(new Object[]{"x"}, new Object[]{null}));
+    }
+
+    @Test
+    void arraysAndDecimalsCompareByValue() {
+        Object[] snapshot = {new byte[]{1, 2}, new BigDecimal("1.0")};
+        Object[] current = {new byte[]{1, 2}, new BigDecimal("1.00")};
+        assertEquals(0L, PersistenceContext.dirtyColumns(snapshot, current));
+    }
+
+    @Test
+    void changeBeyondTheMaskMarksAllColumns() {
+        int columns = SqlTemplates.MAX_PARTIAL_UPDATE_COLUMNS + 1;
+        Object[] snapshot = new Object[columns];
+        Object[] current = new Object[columns];
+        current[columns - 1] = "changed";
+        assertEquals(PersistenceContext.ALL_COLUMNS, PersistenceContext.dirtyColumns(snapshot, current));
+
+        current[columns - 1] = null;
+        current[SqlTemplates.MAX_PARTIAL_UPDATE_COLUMNS - 1] = "changed";
+        assertEquals(1L << 63, PersistenceContext.dirtyColumns(snapshot, current));
+    }
+
+    @Test
+    void snapshotKeepsItsOwnCopyOfByteArrays() {
+        PersistenceContext context = new PersistenceContext();
+        Object entity = new Object();
+        byte[] data = {1, 2, 3};
+        context.manage(entity, 1L, new Object[]{data});
+
+        //Modificar el arreglo de la entidad en el lugar no toca la foto
+        data[0] = 9;
+        assertEquals(0b1L, PersistenceContext.dirtyColumns(context.getSnapshot(entity), new Object[]{data}));
+    }
+
+    @Test
+    void managedEntitiesAreFoundById() {
+        PersistenceContext context = new PersistenceContext();
+        String entity = "entity";
+        context.manage(entity, 7L, new Object[0]);
+
+        assertSame(entity, context.find(String.class, 7L));
+        assertNull(context.find(String.class, 8L));
+
+        context.detach(entity, 7L);
+        assertNull(context.find(String.class, 7L));
+        assertNull(context.getSnapshot(entity));
+    }
+}
@@ -0,0 +1,166 @@
+package org.project.entityManager.transaction.impl;
+
+import org.junit.jupiter.api.Test;
+import org.project.entityManager.configuration.BatchConfig;
+import org.project.entityManager.transaction.EntityOperation;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OperationBatcherTest {
+
+    private static final String INSERT = "INSERT INTO users (id, name) VALUES (?, ?)";
+
+    //Lo que llega al driver, en orden: "executeUpdate <sql> <params>" o "executeBatch <sql> <filas>"
+    private final List<String> executed = new ArrayList<>();
+    //"<sql> <filas>" que quedaban en el batch en cada clearBatch
+    private final List<String> cleared = new ArrayList<>();
+    private boolean failBatches;
+
+    private Connection connection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement")) return this.statement((String) args[0]);
+                    return null;
+                });
+    }
+
+    private PreparedStatement statement(String sql) {
+        TreeMap<Integer, Object> parameters = new TreeMap<>();
+        List<Object> batch = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "setObject" -> {
+                        parameters.put((Integer) args[0], args[1]);
+                        yield null;
+                    }
+                    case "addBatch" -> {
+                        batch.add(new ArrayList<>(parameters.values()));
+                        parameters.clear();
+                        yield null;
+                    }
+                    case "executeUpdate" -> {
+                        executed.add("executeUpdate " + sql + " " + parameters.values());
+                        int rows = parameters.size();
+                        parameters.clear();
+                        yield rows;
+                    }
+                    case "clearBatch" -> {
+                        cleared.add(sql + " " + batch.size());
+                        batch.clear();
+                        yield null;
+                    }
+                    case "executeBatch" -> {
+                        //Como algunos drivers, un batch que falla queda cargado
+                        if (failBatches) throw new SQLException("duplicate key", "23505");
+                        executed.add("executeBatch " + sql + " " + batch.size());
+                        int[] counts = new int[batch.size()];
+                        Arrays.fill(counts, 1);
+                        batch.clear();
+                        yield counts;
+                    }
+                    default -> null;
+                });
+    }
+
+    private static List<EntityOperation> inserts(int count) {
+        List<EntityOperation> operations = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            operations.add(new EntityOperation(INSERT, List.of(i, "user" + i), EntityOperation.OperationType.INSERT));
+        }
+        return operations;
+    }
+
+    private static BatchConfig rewriting(int batchSize, int maxStatementParameters) {
+        return BatchConfig.defaults()
+                .withRewriteInserts(true)
+                .withBatchSize(batchSize)
+                .withMaxStatementParameters(maxStatementParameters);
+    }
+
+    @Test
+    void consecutiveInsertsAreRewrittenIntoMultiRowStatements() throws Exception {
+        new OperationBatcher(rewriting(2, 1000)).execute(this.connection(), inserts(5));
+
+        String twoRows = "INSERT INTO users (id, name) VALUES (?, ?), (?, ?)";
+        assertEquals(List.of(
+                "executeUpdate " + twoRows + " [1, user1, 2, user2]",
+                "executeUpdate " + twoRows + " [3, user3, 4, user4]",
+                "executeUpdate " + INSERT + " [5, user5]"
+        ), executed);
+    }
+
+    @Test
+    void rowsPerStatementAreBoundedByTheParameterLimit() throws Exception {
+        //Tres parametros no alcanzan para dos filas de dos columnas
+        new OperationBatcher(rewriting(100, 3)).execute(this.connection(), inserts(2));
+
+        assertEquals(List.of(
+                "executeUpdate " + INSERT + " [1, user1]",
+                "executeUpdate " + INSERT + " [2, user2]"
+        ), executed);
+    }
+
+    @Test
+    void withoutRewriteInsertsAreBatched() throws Exception {
+        BatchConfig config = BatchConfig.defaults().withBatchSize(2);
+        new OperationBatcher(config).execute(this.connection(), inserts(3));
+
+        assertEquals(List.of(
+                "executeBatch " + INSERT + " 2",
+                "executeBatch " + INSERT + " 1"
+        ), executed);
+    }
+
+    @Test
+    void insertsWithoutAPlainValuesTupleFallBackToBatch() throws Exception {
+        String sql = "INSERT INTO users (id, created) VALUES (?, now())";
+        List<EntityOperation> operations = List.of(
+                new EntityOperation(sql, List.of(1), EntityOperation.OperationType.INSERT),
+                new EntityOperation(sql, List.of(2), EntityOperation.OperationType.INSERT));
+
+        new OperationBatcher(rewriting(100, 1000)).execute(this.connection(), operations);
+
+        assertEquals(List.of("executeBatch " + sql + " 2"), executed);
+    }
+
+    @Test
+    void orderIsKeptAcrossDifferentStatements() throws Exception {
+        String update = "UPDATE users SET name = ? WHERE id = ?";
+        List<EntityOperation> operations = new ArrayList<>(inserts(2));
+        operations.add(new EntityOperation(update, List.of("renamed", 1), EntityOperation.OperationType.UPDATE));
+        operations.addAll(inserts(1));
+
+        new OperationBatcher(rewriting(100, 1000)).execute(this.connection(), operations);
+
+        assertEquals(List.of(
+                "executeUpdate INSERT INTO users (id, name) VALUES (?, ?), (?, ?) [1, user1, 2, user2]",
+                "executeUpdate " + update + " [renamed, 1]",
+                "executeUpdate " + INSERT + " [1, user1]"
+        ), executed);
+    }
+
+    @Test
+    void aFailedBatchIsClearedBeforeTheStatementIsReleased() {
+        failBatches = true;
+        BatchConfig config = BatchConfig.defaults().withBatchSize(2);
+
+        assertThrows(SQLException.class, () -> new OperationBatcher(config).execute(this.connection(), inserts(3)));
+        assertEquals(List.of(INSERT + " 2"), cleared);
+    }
+
+    @Test
+    void batchConfigRejectsNonPositiveSizes() {
+        assertThrows(IllegalArgumentException.class, () -> BatchConfig.defaults().withBatchSize(0));
+        assertThrows(IllegalArgumentException.class, () -> BatchConfig.defaults().withMaxStatementParameters(-1));
+    }
+}
@@ -0,0 +1,102 @@
+package org.project.orm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.project.cache.core.CacheSnapshot;
+import org.project.cache.core.OrmCacheManager;
+import org.project.entityManager.FakeDatabase;
+import org.project.entityManager.annotation.Table;
+import org.project.entityManager.configuration.BatchConfig;
+import org.project.entityManager.configuration.CacheSnapshotConfig;
+import org.project.entityManager.configuration.ConnectionPoolConfig;
+import org.project.entityManager.configuration.ReadReplicaConfig;
+import org.project.entityManager.entity.ConnectionPool;
+import org.project.entityManager.entity.MetadataManager;
+import org.project.entityManager.entity.ReplicaSet;
+import org.project.entityManager.entity.impl.DefaultAsyncEntityManager;
+import org.project.entityManager.entity.impl.DefaultEntityManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheWarmerTest {
+
+    @Table(name = "accounts")
+    static class Account {
+        Long id;
+        String name;
+    }
+
+    private final FakeDatabase database = new FakeDatabase("id", "name").row(1L, "ana").row(2L, "bob");
+    private final OrmCacheManager cacheManager = new OrmCacheManager();
+    private final MetadataManager metadataManager =
+            new MetadataManager(metadata -> cacheManager.putMetadata(metadata.getEntityClass(), metadata));
+    private final ConnectionPool pool = new ConnectionPool(database.dataSource(),
+            ConnectionPoolConfig.defaults().withSize(2, 0));
+    private final ReplicaSet replicas = new ReplicaSet(ReadReplicaConfig.none(), ConnectionPoolConfig.defaults());
+    private final DefaultAsyncEntityManager async = new DefaultAsyncEntityManager(
+            () -> new DefaultEntityManager(pool, replicas, metadataManager, cacheManager, BatchConfig.defaults()),
+            pool.getMaxSize());
+
+    @AfterEach
+    void close() {
+        async.close();
+        pool.close();
+        replicas.close();
+    }
+
+    private CacheWarmer warmer(Path file) {
+        return new CacheWarmer(CacheSnapshotConfig.of(file), cacheManager, metadataManager, async);
+    }
+
+    private static Path snapshotFile() throws Exception {
+        return Files.createTempDirectory("cache-warmer").resolve("snapshot.bin");
+    }
+
+    @Test
+    void snapshotRoundTripsEveryIdType() throws Exception {
+        Path file = snapshotFile();
+        UUID uuid = UUID.randomUUID();
+        CacheSnapshot written = new CacheSnapshot(Instant.ofEpochMilli(1_000),
+                List.of(new CacheSnapshot.EntityKeys("a.B", "b", List.of(7L, "x", uuid))));
+        written.write(file);
+
+        CacheSnapshot read = CacheSnapshot.read(file);
+        assertEquals(written.createdAt(), read.createdAt());
+        assertEquals(written.entities(), read.entities());
+    }
+
+    @Test
+    void restoreLoadsTheSnapshotIdsIntoTheCache() throws Exception {
+        Path file = snapshotFile();
+        new CacheSnapshot(Instant.now(), List.of(
+                new CacheSnapshot.EntityKeys(Account.class.getName(), "accounts", List.of(1L, 2L, 9L))))
+                .write(file);
+
+        //El id 9 ya no existe en la base
+        int restored = this.warmer(file).restore().get(5, TimeUnit.SECONDS);
+        assertEquals(2, restored);
+        assertEquals(1, database.count("SELECT"));
+        assertEquals("ana", cacheManager.getEntity(Account.class, 1L).orElseThrow().name);
+        assertEquals("bob", cacheManager.getEntity(Account.class, 2L).orElseThrow().name);
+    }
+
+    @Test
+    void restoreSkipsClassesThatChangedTable() throws Exception {
+        Path file = snapshotFile();
+        new CacheSnapshot(Instant.now(), List.of(
+                new CacheSnapshot.EntityKeys(Account.class.getName(), "old_accounts", List.of(1L))))
+                .write(file);
+
+        int restored = this.warmer(file).restore().get(5, TimeUnit.SECONDS);
+        assertEquals(0, restored);
+        assertTrue(database.statements().isEmpty());
+    }
+}